@@ -0,0 +1,72 @@
+package br.com.agencia;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+// Consultas do Banco sobre uma base gerada com 'contas' contas e 10 mil usuários (senhas com
+// o custo reduzido de GeradorDados; o custo real está em BenchmarkSenhas).
+// Todas as contas são carregadas do armazém antes da medição, então buscarConta
+// mede a consulta ao índice em memória.
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "-Xmx4g")
+public class BenchmarkBanco {
+    private static final int USUARIOS = 10_000;
+
+    @Param({"10000", "100000", "1000000"})
+    int contas;
+
+    private Path diretorio;
+    private Banco banco;
+    private String[] logins;
+    private String[] senhas;
+
+    @Setup(Level.Trial)
+    public void preparar() throws IOException {
+        diretorio = Files.createTempDirectory("bench-banco");
+        new GeradorDados(42).gravarBase(diretorio, contas, 10, USUARIOS);
+        banco = new Banco(diretorio);
+        banco.listarContas();
+        logins = new String[USUARIOS];
+        senhas = new String[USUARIOS];
+        for (int i = 0; i < USUARIOS; i++) {
+            logins[i] = "usuario" + i;
+            senhas[i] = "senha" + i;
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void encerrar() throws IOException {
+        GeradorDados.apagar(diretorio);
+    }
+
+    @Benchmark
+    public Conta buscarConta() {
+        return banco.buscarConta(1 + ThreadLocalRandom.current().nextInt(contas));
+    }
+
+    @Benchmark
+    public Conta buscarContaInexistente() {
+        return banco.buscarConta(contas + 1 + ThreadLocalRandom.current().nextInt(contas));
+    }
+
+    // Só a reserva do número, sem criar a conta; com -t <threads> mede a disputa entre criações
+    @Benchmark
+    public int reservarNumero() {
+        return banco.reservarNumeros(1);
+    }
+
+    @Benchmark
+    public boolean autenticarUsuario() {
+        int i = ThreadLocalRandom.current().nextInt(USUARIOS);
+        return banco.autenticarUsuario(logins[i], senhas[i]);
+    }
+}
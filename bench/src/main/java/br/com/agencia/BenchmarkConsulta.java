@@ -0,0 +1,71 @@
+package br.com.agencia;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+// Consulta de contas e totais sobre uma base recém-aberta (contas ainda só no armazém):
+// a página em ordem de número contra a lista completa que a tela montava antes, e o saldo
+// total dos agregados contra a soma percorrendo todas as contas.
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "-Xmx4g")
+public class BenchmarkConsulta {
+    private static final int POR_PAGINA = 50;
+
+    @Param({"10000", "100000", "1000000"})
+    int contas;
+
+    private Path diretorio;
+    private Banco banco;
+
+    @Setup(Level.Trial)
+    public void preparar() throws IOException {
+        diretorio = Files.createTempDirectory("bench-consulta");
+        new GeradorDados(42).gravarBase(diretorio, contas, 10, 1);
+        banco = new Banco(diretorio);
+    }
+
+    @TearDown(Level.Trial)
+    public void encerrar() throws IOException {
+        GeradorDados.apagar(diretorio);
+    }
+
+    @Benchmark
+    public PaginaContas paginaPorNumero() {
+        return banco.listarContas(ThreadLocalRandom.current().nextInt(contas), POR_PAGINA, PaginaContas.Ordem.NUMERO);
+    }
+
+    // Depois da primeira chamada a ordem fica em cache: mede a troca de página
+    @Benchmark
+    public PaginaContas paginaPorTitular() {
+        return banco.listarContas(1 + ThreadLocalRandom.current().nextInt(contas - 1), POR_PAGINA,
+                PaginaContas.Ordem.TITULAR);
+    }
+
+    @Benchmark
+    public int listaCompleta() {
+        return banco.listarContas().size();
+    }
+
+    @Benchmark
+    public long saldoTotalAgregado() {
+        return banco.saldoTotal();
+    }
+
+    @Benchmark
+    public long saldoTotalPercorrendo() {
+        long total = 0;
+        for (Conta conta : banco.listarContas()) {
+            total += conta.getSaldoCentavos();
+        }
+        return total;
+    }
+}
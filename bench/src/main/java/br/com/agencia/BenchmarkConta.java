@@ -0,0 +1,54 @@
+package br.com.agencia;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+// Operações da Conta em memória (sem diário nem travas do Banco).
+// As contas são recriadas a cada LIMITE lançamentos para o histórico não crescer sem fim;
+// o custo de crescer os arrays do histórico entra amortizado na medição.
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class BenchmarkConta {
+    private static final int LIMITE = 1 << 20;
+    private static final long SALDO_INICIAL = 1L << 50;
+
+    private Conta origem;
+    private Conta destino;
+    private long instante;
+
+    @Setup(Level.Iteration)
+    public void preparar() {
+        recriar();
+    }
+
+    private void recriar() {
+        origem = new Conta(1, "Origem");
+        destino = new Conta(2, "Destino");
+        origem.depositar(SALDO_INICIAL, instante);
+        destino.depositar(SALDO_INICIAL, instante);
+    }
+
+    @Benchmark
+    public long depositar() {
+        if (origem.getLancamentos().tamanho() >= LIMITE) recriar();
+        origem.depositar(150, ++instante);
+        return origem.getSaldoCentavos();
+    }
+
+    @Benchmark
+    public boolean sacar() {
+        if (origem.getLancamentos().tamanho() >= LIMITE) recriar();
+        return origem.sacar(150, ++instante);
+    }
+
+    @Benchmark
+    public boolean transferir() {
+        if (origem.getLancamentos().tamanho() >= LIMITE) recriar();
+        return origem.transferir(destino, 150, ++instante);
+    }
+}
@@ -0,0 +1,58 @@
+package br.com.agencia;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.text.SimpleDateFormat;
+import java.util.Date;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+// Extrato completo (Conta.getExtrato) comparado à primeira página do cursor paginado,
+// para históricos de tamanhos diferentes, e ao extrato formatado como antes, com
+// SimpleDateFormat e String.format a cada linha.
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "-Xmx4g")
+public class BenchmarkExtrato {
+    @Param({"10", "1000", "100000", "1000000"})
+    int historico;
+
+    private Conta conta;
+    private MotorTransacoes motor;
+
+    @Setup(Level.Trial)
+    public void preparar() {
+        conta = new GeradorDados(42).contas(1, historico).get(0);
+        motor = new MotorTransacoes();
+    }
+
+    @Benchmark
+    public String getExtrato() {
+        return conta.getExtrato();
+    }
+
+    @Benchmark
+    public List<String> primeiraPagina() {
+        CursorExtrato cursor = new CursorExtrato(conta, motor, numero -> null, Long.MIN_VALUE, Long.MAX_VALUE);
+        return cursor.pagina(0, 50);
+    }
+
+    @Benchmark
+    public String extratoFormatadoComoAntes() {
+        Lancamentos lancamentos = conta.getLancamentos();
+        StringBuilder sb = new StringBuilder();
+        SimpleDateFormat sdf = new SimpleDateFormat("dd/MM/yyyy HH:mm:ss");
+        conta.escreverCabecalhoExtrato(sb);
+        for (int i = 0; i < lancamentos.tamanho(); i++) {
+            sb.append(String.format("%-20s %-12s R$ %-10s ", sdf.format(new Date(lancamentos.instante(i))),
+                    Lancamentos.rotulo(lancamentos.tipo(i)),
+                    String.format("%.2f", lancamentos.valor(i) / 100.0).replace('.', ',')));
+            lancamentos.descrever(i, sb, null).append('\n');
+        }
+        conta.escreverRodapeExtrato(sb);
+        return sb.toString();
+    }
+}
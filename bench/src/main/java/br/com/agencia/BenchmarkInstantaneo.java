@@ -0,0 +1,69 @@
+package br.com.agencia;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+// Transferências (sem esperar o diário) sozinhas e com uma thread somando o saldo de todas as
+// contas em instantâneos, um atrás do outro. A diferença entre os grupos é o custo que os
+// leitores impõem às operações: versões guardadas e faixas travadas por um instante.
+@State(Scope.Group)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "-Xmx4g")
+public class BenchmarkInstantaneo {
+    @Param({"100000"})
+    int contas;
+
+    private Path diretorio;
+    private Banco banco;
+
+    @Setup(Level.Trial)
+    public void preparar() throws IOException {
+        diretorio = Files.createTempDirectory("bench-instantaneo");
+        new GeradorDados(42).gravarBase(diretorio, contas, 10, 1);
+        banco = new Banco(diretorio);
+        banco.listarContas();
+    }
+
+    @TearDown(Level.Trial)
+    public void encerrar() throws IOException {
+        banco.fechar();
+        GeradorDados.apagar(diretorio);
+    }
+
+    private long transferir() {
+        ThreadLocalRandom aleatorio = ThreadLocalRandom.current();
+        return banco.lancarTransferencia(1 + aleatorio.nextInt(contas), 1 + aleatorio.nextInt(contas),
+                1 + aleatorio.nextInt(100));
+    }
+
+    @Benchmark
+    @Group("semLeitor")
+    @GroupThreads(3)
+    public long transferirSemLeitor() {
+        return transferir();
+    }
+
+    @Benchmark
+    @Group("comLeitor")
+    @GroupThreads(3)
+    public long transferirComLeitor() {
+        return transferir();
+    }
+
+    @Benchmark
+    @Group("comLeitor")
+    @GroupThreads(1)
+    public long somarInstantaneo() {
+        try (Instantaneo instantaneo = banco.abrirInstantaneo()) {
+            return instantaneo.saldoTotal();
+        }
+    }
+}
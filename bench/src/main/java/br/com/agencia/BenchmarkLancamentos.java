@@ -0,0 +1,97 @@
+package br.com.agencia;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+// Consulta de lançamentos por período, tipo e valor: numa conta com histórico longo (busca
+// binária contra percorrer getTransacoes) e em todas as contas (pool comum do fork-join
+// contra uma única thread).
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "-Xmx4g")
+public class BenchmarkLancamentos {
+    private static final long INICIO_GERADOR = 1_577_836_800_000L;
+    private static final long MINUTO = 60_000;
+
+    @Param({"100000"})
+    int contas;
+
+    @Param({"20"})
+    int transacoesPorConta;
+
+    private Path diretorio;
+    private Banco banco;
+    private Conta contaLonga;
+    private ConsultaLancamentos consultaConta;
+    private ConsultaLancamentos consultaTodas;
+    private ForkJoinPool umaThread;
+
+    @Setup(Level.Trial)
+    public void preparar() throws IOException {
+        diretorio = Files.createTempDirectory("bench-lancamentos");
+        new GeradorDados(42).gravarBase(diretorio, contas, transacoesPorConta, 1);
+        banco = new Banco(diretorio);
+
+        // Uma conta com 100 mil lançamentos; a consulta pega um trecho de um dia no meio dela
+        int numero = banco.criarConta("Histórico longo");
+        contaLonga = banco.buscarConta(numero);
+        for (int i = 0; i < 100_000; i++) {
+            contaLonga.depositar(100 + i % 1000, INICIO_GERADOR + i * MINUTO);
+        }
+        long meio = INICIO_GERADOR + 50_000 * MINUTO;
+        consultaConta = new ConsultaLancamentos(meio, meio + 24 * 60 * MINUTO, ConsultaLancamentos.TODOS_OS_TIPOS, 500);
+
+        // Saques altos no primeiro mês de todo o banco (relatório de conformidade)
+        consultaTodas = new ConsultaLancamentos(INICIO_GERADOR, INICIO_GERADOR + 30L * 24 * 60 * MINUTO,
+                ConsultaLancamentos.tipo(Lancamentos.SAQUE), 400_000);
+        umaThread = new ForkJoinPool(1);
+    }
+
+    @TearDown(Level.Trial)
+    public void encerrar() throws IOException {
+        umaThread.shutdown();
+        GeradorDados.apagar(diretorio);
+    }
+
+    @Benchmark
+    public ConsultaLancamentos.Resultado contaPorPeriodo() {
+        return banco.consultarLancamentos(contaLonga.getNumero(), consultaConta);
+    }
+
+    @Benchmark
+    public int contaPercorrendo() {
+        int encontradas = 0;
+        for (Transacao t : contaLonga.getTransacoes()) {
+            long instante = t.getData().getTime();
+            if (instante >= consultaConta.desde && instante < consultaConta.ate
+                    && t.getValorCentavos() >= consultaConta.valorMinimo) {
+                encontradas++;
+            }
+        }
+        return encontradas;
+    }
+
+    @Benchmark
+    public ConsultaLancamentos.Resultado contaAleatoria() {
+        return banco.consultarLancamentos(1 + ThreadLocalRandom.current().nextInt(contas), consultaTodas);
+    }
+
+    @Benchmark
+    public int todasAsContasForkJoin() {
+        return banco.consultarLancamentos(consultaTodas).ocorrencias.size();
+    }
+
+    @Benchmark
+    public int todasAsContasUmaThread() {
+        return banco.consultarLancamentos(consultaTodas, umaThread).ocorrencias.size();
+    }
+}
@@ -0,0 +1,29 @@
+package br.com.agencia;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+// Custo do registro de uma medida (o que cada operação do Banco paga pelas métricas),
+// com uma thread e com várias disputando o mesmo histograma:
+//
+//   java -jar bench/target/benchmarks.jar BenchmarkMetricas -t 8 -prof gc
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class BenchmarkMetricas {
+    private final Metricas metricas = new Metricas(() -> 0);
+
+    @Benchmark
+    public void registrar() {
+        metricas.deposito.registrar(System.nanoTime() - 1000, true);
+    }
+
+    @Benchmark
+    public long nanoTime() {
+        return System.nanoTime();
+    }
+}
@@ -0,0 +1,61 @@
+package br.com.agencia;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+// Transferências entre contas sorteadas num BancoParticionado com 'particoes' partições.
+// Com uma partição toda transferência é local; com mais, a maioria cruza partições e passa
+// pelo registro de transferências. Rodar com -t igual ao número de núcleos: o ganho vem de
+// cada partição ter thread e diário próprios, o que uma máquina de um núcleo não mostra.
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "-Xmx4g")
+public class BenchmarkParticionado {
+    @Param({"1", "2", "4", "8"})
+    int particoes;
+
+    @Param({"10000"})
+    int contas;
+
+    private Path diretorio;
+    private BancoParticionado banco;
+    private int[] numeros;
+
+    @Setup(Level.Trial)
+    public void preparar() throws IOException {
+        diretorio = Files.createTempDirectory("bench-particionado");
+        banco = new BancoParticionado(diretorio, particoes);
+        numeros = new int[contas];
+        for (int i = 0; i < contas; i++) {
+            numeros[i] = banco.criarConta("Cliente " + i);
+            banco.depositar(numeros[i], 1_000_000_00L);
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void encerrar() throws IOException {
+        banco.fechar();
+        GeradorDados.apagar(diretorio);
+    }
+
+    @Benchmark
+    public boolean transferir() {
+        ThreadLocalRandom aleatorio = ThreadLocalRandom.current();
+        int origem = numeros[aleatorio.nextInt(contas)];
+        int destino = numeros[aleatorio.nextInt(contas)];
+        return banco.transferir(origem, destino, 1 + aleatorio.nextInt(100));
+    }
+
+    @Benchmark
+    public boolean depositar() {
+        return banco.depositar(numeros[ThreadLocalRandom.current().nextInt(contas)], 100);
+    }
+}
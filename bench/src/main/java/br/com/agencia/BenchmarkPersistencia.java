@@ -0,0 +1,83 @@
+package br.com.agencia;
+
+import java.io.*;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Comparator;
+import java.util.List;
+
+// Compara o armazém mapeado (ArmazemContas), o formato binário versão 1 (CodecBanco)
+// e a serialização Java usada antes em dados_banco.ser: tempo de gravação, tempo de
+// leitura e tamanho do arquivo. No armazém, "ler" é abrir o arquivo e buscar uma conta.
+//
+// Uso: java br.com.agencia.BenchmarkPersistencia [contas] [transacoesPorConta] [repeticoes]
+public class BenchmarkPersistencia {
+    public static void main(String[] args) throws Exception {
+        int quantidade = args.length > 0 ? Integer.parseInt(args[0]) : 100_000;
+        int transacoes = args.length > 1 ? Integer.parseInt(args[1]) : 20;
+        int repeticoes = args.length > 2 ? Integer.parseInt(args[2]) : 5;
+
+        GeradorDados gerador = new GeradorDados(42);
+        List<Conta> contas = gerador.contas(quantidade, transacoes);
+        List<Usuario> usuarios = gerador.usuarios(100);
+        Path diretorio = Files.createTempDirectory("bench-persistencia");
+        Path armazem = ArmazemContas.caminho(diretorio, 1);
+        Path binario = diretorio.resolve("dados_banco.dat");
+        Conta[] ordenadas = contas.toArray(new Conta[0]);
+        Arrays.sort(ordenadas, Comparator.comparingInt(Conta::getNumero));
+        Path serializado = diretorio.resolve("dados_banco.ser");
+
+        System.out.printf("%d contas x %d transações, %d repetições%n", quantidade, transacoes, repeticoes);
+        System.out.printf("%-18s %12s %12s %14s%n", "formato", "gravar (ms)", "ler (ms)", "tamanho (KiB)");
+
+        long gravarArmazem = Long.MAX_VALUE;
+        long abrirArmazem = Long.MAX_VALUE;
+        long gravarBinario = Long.MAX_VALUE;
+        long lerBinario = Long.MAX_VALUE;
+        long gravarSerial = Long.MAX_VALUE;
+        long lerSerial = Long.MAX_VALUE;
+        for (int r = 0; r < repeticoes; r++) {
+            long a0 = System.nanoTime();
+            ArmazemContas.gravar(armazem, null, new BitSet(), ordenadas, usuarios, 0);
+            long a1 = System.nanoTime();
+            ArmazemContas aberto = ArmazemContas.abrir(armazem);
+            aberto.materializar(aberto.posicao(ordenadas[ordenadas.length / 2].getNumero()));
+            long a2 = System.nanoTime();
+            gravarArmazem = Math.min(gravarArmazem, a1 - a0);
+            abrirArmazem = Math.min(abrirArmazem, a2 - a1);
+
+            long t0 = System.nanoTime();
+            CodecBanco.gravar(binario, contas, usuarios, 0);
+            long t1 = System.nanoTime();
+            CodecBanco.ler(binario);
+            long t2 = System.nanoTime();
+            try (ObjectOutputStream out = new ObjectOutputStream(new BufferedOutputStream(
+                    new FileOutputStream(serializado.toFile())))) {
+                out.writeObject(new Object[]{contas, usuarios, 0L});
+            }
+            long t3 = System.nanoTime();
+            CodecBanco.importarSerializado(serializado);
+            long t4 = System.nanoTime();
+
+            gravarBinario = Math.min(gravarBinario, t1 - t0);
+            lerBinario = Math.min(lerBinario, t2 - t1);
+            gravarSerial = Math.min(gravarSerial, t3 - t2);
+            lerSerial = Math.min(lerSerial, t4 - t3);
+        }
+
+        imprimir("armazém mapeado", gravarArmazem, abrirArmazem, Files.size(armazem));
+        imprimir("binário (NIO)", gravarBinario, lerBinario, Files.size(binario));
+        imprimir("serialização Java", gravarSerial, lerSerial, Files.size(serializado));
+
+        Files.delete(binario);
+        Files.deleteIfExists(armazem);
+        Files.delete(serializado);
+        Files.delete(diretorio);
+    }
+
+    private static void imprimir(String formato, long gravarNanos, long lerNanos, long bytes) {
+        System.out.printf("%-18s %12.1f %12.1f %14d%n", formato, gravarNanos / 1e6, lerNanos / 1e6, bytes / 1024);
+    }
+}
@@ -0,0 +1,68 @@
+package br.com.agencia;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+// Checkpoint (Banco.salvar) e carga (Banco.carregar) de bases com 'contas' contas
+// e 'transacoesPorConta' lançamentos cada. Cada chamada é medida isoladamente.
+// salvarComAlteracoes mede o caso comum: poucas contas alteradas desde o último checkpoint.
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2)
+@Measurement(iterations = 5)
+@Fork(value = 1, jvmArgsAppend = "-Xmx4g")
+public class BenchmarkSalvarCarregar {
+    @Param({"10000", "100000", "1000000"})
+    int contas;
+
+    @Param({"10"})
+    int transacoesPorConta;
+
+    @Param({"100"})
+    int alteradas;
+
+    private final Random random = new Random(7);
+    private Path diretorio;
+    private Banco banco;
+
+    @Setup(Level.Trial)
+    public void preparar() throws IOException {
+        diretorio = Files.createTempDirectory("bench-salvar-carregar");
+        new GeradorDados(42).gravarBase(diretorio, contas, transacoesPorConta, 100);
+        banco = new Banco(diretorio);
+    }
+
+    @TearDown(Level.Trial)
+    public void encerrar() throws IOException {
+        GeradorDados.apagar(diretorio);
+    }
+
+    @Benchmark
+    public void salvar() {
+        banco.salvar();
+    }
+
+    // Depósitos em contas espalhadas pela base e o checkpoint que os grava; só os segmentos
+    // dessas contas são regravados
+    @Benchmark
+    public void salvarComAlteracoes() {
+        long lsn = -1;
+        for (int i = 0; i < alteradas; i++) {
+            lsn = Math.max(lsn, banco.lancarDeposito(1 + random.nextInt(contas), 100));
+        }
+        banco.aguardarDiario(lsn);
+        banco.salvar();
+    }
+
+    @Benchmark
+    public Banco carregar() {
+        banco.carregar();
+        return banco;
+    }
+}
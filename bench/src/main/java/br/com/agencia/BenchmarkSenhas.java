@@ -0,0 +1,46 @@
+package br.com.agencia;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+// Logins por segundo (conferência da senha com o hash PBKDF2) para cada custo em iterações,
+// comparados com a conferência do token de uma sessão já aberta. Para dimensionar
+// -Dbanco.senha.iteracoes: rodar com -t igual ao número de threads que atendem logins e
+// escolher o maior custo cuja vazão ainda cobre o pico de logins.
+//
+//   java -jar bench/target/benchmarks.jar BenchmarkSenhas -t 8
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 2, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class BenchmarkSenhas {
+    private static final String SENHA = "senha-do-operador";
+
+    @Param({"10000", "100000", "210000", "600000"})
+    int iteracoes;
+
+    private String codificada;
+    private Sessoes sessoes;
+    private String token;
+
+    @Setup(Level.Trial)
+    public void preparar() {
+        codificada = Senhas.codificar(SENHA, iteracoes);
+        sessoes = new Sessoes(TimeUnit.HOURS.toMillis(1));
+        token = sessoes.abrir("operador");
+    }
+
+    @Benchmark
+    public boolean login() {
+        return Senhas.verificar(SENHA, codificada);
+    }
+
+    // Não depende do custo: é o que cada operação paga depois do login
+    @Benchmark
+    public String sessao() {
+        return sessoes.validar(token);
+    }
+}
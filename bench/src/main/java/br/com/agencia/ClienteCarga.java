@@ -0,0 +1,112 @@
+package br.com.agencia;
+
+import java.net.URI;
+import java.net.URLEncoder;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+// Gera carga contra um ServidorBanco em execução: 'clientes' clientes simultâneos, cada um
+// com 'operacoes' requisições seguidas (depósitos, saques, transferências e consultas de saldo)
+// sobre 'contas' contas criadas no início. Mostra a vazão e os percentis de latência.
+// Com login e senha, abre uma sessão e manda o token em todas as requisições (para
+// servidores iniciados com exigirSessao).
+//
+// Uso: java br.com.agencia.ClienteCarga [url] [clientes] [operacoes] [contas] [login senha]
+public class ClienteCarga {
+    private static String autorizacao;
+
+    public static void main(String[] args) throws Exception {
+        String url = args.length > 0 ? args[0] : "http://localhost:8080";
+        int clientes = args.length > 1 ? Integer.parseInt(args[1]) : 1000;
+        int operacoes = args.length > 2 ? Integer.parseInt(args[2]) : 100;
+        int quantidadeContas = args.length > 3 ? Integer.parseInt(args[3]) : 1000;
+
+        HttpClient http = HttpClient.newBuilder().connectTimeout(Duration.ofSeconds(10)).build();
+        if (args.length > 5) {
+            String corpo = "login=" + URLEncoder.encode(args[4], StandardCharsets.UTF_8) + "&senha="
+                    + URLEncoder.encode(args[5], StandardCharsets.UTF_8);
+            String resposta = enviar(http, url + "/sessoes", "POST", corpo).join().body();
+            autorizacao = "Bearer " + resposta.replaceAll(".*\"token\":\"([^\"]+)\".*", "$1");
+        }
+        int[] contas = new int[quantidadeContas];
+        for (int i = 0; i < quantidadeContas; i++) {
+            String resposta = enviar(http, url + "/contas?titular=Carga+" + i, "POST").join().body();
+            contas[i] = Integer.parseInt(resposta.replaceAll("\\D", ""));
+            enviar(http, url + "/contas/" + contas[i] + "/deposito?valor=100000", "POST").join();
+        }
+
+        long[] latencias = new long[clientes * operacoes];
+        AtomicInteger proxima = new AtomicInteger();
+        AtomicLong erros = new AtomicLong();
+        CompletableFuture<?>[] sessoes = new CompletableFuture<?>[clientes];
+        long inicio = System.nanoTime();
+        for (int c = 0; c < clientes; c++) {
+            sessoes[c] = sessao(http, url, contas, operacoes, latencias, proxima, erros);
+        }
+        CompletableFuture.allOf(sessoes).join();
+        long duracao = System.nanoTime() - inicio;
+
+        int total = proxima.get();
+        long[] medidas = Arrays.copyOf(latencias, total);
+        Arrays.sort(medidas);
+        System.out.printf("%d clientes x %d operações: %d requisições em %.2f s (%.0f req/s), %d erros%n",
+                clientes, operacoes, total, duracao / 1e9, total * 1e9 / duracao, erros.get());
+        System.out.printf("latência (ms): p50 %.2f  p90 %.2f  p99 %.2f  máx %.2f%n",
+                percentil(medidas, 0.50), percentil(medidas, 0.90), percentil(medidas, 0.99),
+                medidas.length == 0 ? 0 : medidas[medidas.length - 1] / 1e6);
+    }
+
+    // Encadeia as requisições de um cliente: cada uma só parte depois da resposta da anterior
+    private static CompletableFuture<Void> sessao(HttpClient http, String url, int[] contas, int restantes,
+                                                  long[] latencias, AtomicInteger proxima, AtomicLong erros) {
+        if (restantes == 0) return CompletableFuture.completedFuture(null);
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        int conta = contas[random.nextInt(contas.length)];
+        String requisicao;
+        String metodo = "POST";
+        switch (random.nextInt(4)) {
+            case 0: requisicao = "/contas/" + conta + "/deposito?valor=10,00"; break;
+            case 1: requisicao = "/contas/" + conta + "/saque?valor=5,00"; break;
+            case 2:
+                int destino = contas[random.nextInt(contas.length)];
+                requisicao = "/transferencias?origem=" + conta + "&destino=" + destino + "&valor=1,00";
+                break;
+            default: requisicao = "/contas/" + conta; metodo = "GET"; break;
+        }
+        long inicio = System.nanoTime();
+        return enviar(http, url + requisicao, metodo).handle((resposta, erro) -> {
+            latencias[proxima.getAndIncrement()] = System.nanoTime() - inicio;
+            // 409 (saldo insuficiente, transferência para a mesma conta) é resposta válida
+            if (erro != null || resposta.statusCode() >= 500) erros.incrementAndGet();
+            return null;
+        }).thenCompose(nada -> sessao(http, url, contas, restantes - 1, latencias, proxima, erros));
+    }
+
+    private static CompletableFuture<HttpResponse<String>> enviar(HttpClient http, String url, String metodo) {
+        return enviar(http, url, metodo, null);
+    }
+
+    private static CompletableFuture<HttpResponse<String>> enviar(HttpClient http, String url, String metodo,
+            String formulario) {
+        HttpRequest.Builder requisicao = HttpRequest.newBuilder(URI.create(url))
+                .method(metodo, formulario == null ? HttpRequest.BodyPublishers.noBody()
+                        : HttpRequest.BodyPublishers.ofString(formulario, StandardCharsets.UTF_8))
+                .timeout(Duration.ofSeconds(60));
+        if (formulario != null) requisicao.header("Content-Type", "application/x-www-form-urlencoded");
+        if (autorizacao != null) requisicao.header("Authorization", autorizacao);
+        return http.sendAsync(requisicao.build(), HttpResponse.BodyHandlers.ofString());
+    }
+
+    private static double percentil(long[] ordenadas, double p) {
+        if (ordenadas.length == 0) return 0;
+        return ordenadas[Math.min(ordenadas.length - 1, (int) (ordenadas.length * p))] / 1e6;
+    }
+}
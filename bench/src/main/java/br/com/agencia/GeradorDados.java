@@ -0,0 +1,98 @@
+package br.com.agencia;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Random;
+import java.util.stream.Stream;
+
+// Gera bases sintéticas (contas, titulares e histórico) para os benchmarks.
+// Também grava uma base completa num diretório, pronta para ser aberta pelo Banco:
+//
+// Uso: java br.com.agencia.GeradorDados <diretorio> [contas] [transacoesPorConta] [usuarios] [semente]
+public class GeradorDados {
+    private static final String[] NOMES = {"Ana", "Bruno", "Carla", "Diego", "Elisa", "Fábio", "Gabriela",
+            "Heitor", "Iara", "João", "Lívia", "Márcio", "Natália", "Otávio", "Paula", "Renato"};
+    private static final String[] SOBRENOMES = {"Silva", "Souza", "Oliveira", "Santos", "Pereira", "Lima",
+            "Carvalho", "Ferreira", "Gomes", "Ribeiro", "Almeida", "Conceição"};
+    static final int ITERACOES_SENHA = 1000;
+
+    private final Random random;
+
+    GeradorDados(long semente) {
+        this.random = new Random(semente);
+    }
+
+    String titular() {
+        return NOMES[random.nextInt(NOMES.length)] + " " + SOBRENOMES[random.nextInt(SOBRENOMES.length)];
+    }
+
+    // 'transacoesPorConta' lançamentos em cada conta, com instantes crescentes a partir de 2020
+    List<Conta> contas(int quantidade, int transacoesPorConta) {
+        List<Conta> contas = new ArrayList<>(quantidade);
+        long instante = 1_577_836_800_000L;
+        for (int numero = 1; numero <= quantidade; numero++) {
+            Conta conta = new Conta(numero, titular());
+            for (int t = 0; t < transacoesPorConta; t++) {
+                instante += 1 + random.nextInt(60_000);
+                long valor = 100 + random.nextInt(500_000);
+                if (conta.getSaldoCentavos() < valor || random.nextBoolean()) {
+                    conta.depositar(valor, instante);
+                } else {
+                    conta.sacar(valor, instante);
+                }
+            }
+            contas.add(conta);
+        }
+        return contas;
+    }
+
+    // Usuários "usuario<i>" com senha "senha<i>". O hash usa poucas iterações para gerar
+    // milhares de usuários em segundos; o custo real do login é medido em BenchmarkSenhas.
+    List<Usuario> usuarios(int quantidade) {
+        List<Usuario> usuarios = new ArrayList<>(quantidade);
+        for (int i = 0; i < quantidade; i++) {
+            usuarios.add(new Usuario("usuario" + i, Senhas.codificar("senha" + i, ITERACOES_SENHA), titular()));
+        }
+        return usuarios;
+    }
+
+    // Grava a base como a primeira imagem do armazém em 'diretorio' (que não deve ter outra base)
+    void gravarBase(Path diretorio, int quantidadeContas, int transacoesPorConta, int quantidadeUsuarios)
+            throws IOException {
+        Files.createDirectories(diretorio);
+        Conta[] contas = contas(quantidadeContas, transacoesPorConta).toArray(new Conta[0]);
+        ArmazemSegmentado.gravarBase(diretorio, contas, usuarios(quantidadeUsuarios), 0);
+    }
+
+    // Apaga o diretório de uma base temporária com tudo o que houver dentro
+    static void apagar(Path diretorio) throws IOException {
+        if (!Files.exists(diretorio)) return;
+        try (Stream<Path> arquivos = Files.walk(diretorio)) {
+            for (Path arquivo : (Iterable<Path>) arquivos.sorted(Comparator.reverseOrder())::iterator) {
+                Files.delete(arquivo);
+            }
+        }
+    }
+
+    public static void main(String[] args) throws IOException {
+        if (args.length == 0) {
+            System.err.println("Uso: GeradorDados <diretorio> [contas] [transacoesPorConta] [usuarios] [semente]");
+            System.exit(1);
+        }
+        Path diretorio = Paths.get(args[0]);
+        int contas = args.length > 1 ? Integer.parseInt(args[1]) : 100_000;
+        int transacoes = args.length > 2 ? Integer.parseInt(args[2]) : 20;
+        int usuarios = args.length > 3 ? Integer.parseInt(args[3]) : 1_000;
+        long semente = args.length > 4 ? Long.parseLong(args[4]) : 42;
+
+        long inicio = System.nanoTime();
+        new GeradorDados(semente).gravarBase(diretorio, contas, transacoes, usuarios);
+        System.out.printf("%d contas x %d transações e %d usuários gravados em %s (%.0f ms)%n",
+                contas, transacoes, usuarios, diretorio.toAbsolutePath(), (System.nanoTime() - inicio) / 1e6);
+    }
+}
@@ -0,0 +1,355 @@
+package br.com.agencia;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Map;
+import java.util.Random;
+import java.util.TreeMap;
+
+// Quedas no meio da gravação: repete 'rodadas' vezes sobre o mesmo diretório
+//   reabre o banco, confere o estado, arma uma queda num byte aleatório das próximas gravações
+//   (EscritaComQueda, passada ao Banco no lugar da Escrita.DIRETA) e executa depósitos,
+//   saques, transferências e checkpoints até ela.
+// O estado reaberto tem de ser o último confirmado: toda operação que retornou está lá, e a que
+// estava em andamento na queda aparece inteira ou não aparece. A cada 'corromperACada' rodadas
+// um byte do manifesto atual, do segmento mais novo ou do arquivo morto (ou da cópia dele) também
+// é trocado, e o banco tem de voltar à imagem anterior ou ler a cópia sem perder nada. O histórico
+// vai cedo para o arquivo morto, e o saldo de cada conta é conferido com a soma do histórico
+// inteiro. Mostra o tempo de recuperação.
+//
+// Uso: java br.com.agencia.InjecaoFalhas [rodadas] [semente] [corromperACada]
+public class InjecaoFalhas {
+    private static final int CONTAS = 200;
+    private static final int OPERACOES_POR_RODADA = 2000;
+    private static final int CHECKPOINT_A_CADA = 300;
+
+    private static final int DEPOSITO = 0;
+    private static final int SAQUE = 1;
+    private static final int TRANSFERENCIA = 2;
+    private static final int CHECKPOINT = 3;
+
+    // Queda simulada; é uma IOException para seguir os mesmos caminhos de uma falha de disco
+    static final class QuedaSimulada extends IOException {
+        private static final long serialVersionUID = 1L;
+
+        QuedaSimulada() {
+            super("Queda simulada na gravação");
+        }
+    }
+
+    // Armada, deixa chegar ao disco só mais 'restantes' bytes: a escrita que atravessa o
+    // limite grava só o começo, e ela e todas as seguintes falham, como se o processo tivesse
+    // morrido naquele byte
+    private static final class EscritaComQueda extends Escrita {
+        private boolean armada;
+        private long restantes;
+
+        // A partir de agora só mais 'bytes' bytes chegam ao disco
+        synchronized void armarQueda(long bytes) {
+            restantes = bytes;
+            armada = true;
+        }
+
+        synchronized void desarmar() {
+            armada = false;
+        }
+
+        // Quanto ainda falta para a queda armada
+        synchronized long restantes() {
+            return restantes;
+        }
+
+        @Override
+        int escrever(FileChannel canal, ByteBuffer origem) throws IOException {
+            return escrever(canal, origem, -1);
+        }
+
+        @Override
+        synchronized int escrever(FileChannel canal, ByteBuffer origem, long posicao) throws IOException {
+            if (!armada || origem.remaining() <= restantes) {
+                int gravados = posicao < 0 ? canal.write(origem) : canal.write(origem, posicao);
+                if (armada) restantes -= gravados;
+                return gravados;
+            }
+            ByteBuffer parte = origem.duplicate();
+            parte.limit(parte.position() + (int) restantes);
+            while (parte.hasRemaining()) {
+                if (posicao < 0) {
+                    canal.write(parte);
+                } else {
+                    posicao += canal.write(parte, posicao);
+                }
+            }
+            restantes = 0;
+            throw new QuedaSimulada();
+        }
+    }
+
+    // Saldo e quantidade de lançamentos de cada conta, pelo que o banco confirmou
+    private static final class Modelo {
+        final TreeMap<Integer, long[]> contas = new TreeMap<>();
+
+        Modelo copia() {
+            Modelo copia = new Modelo();
+            for (Map.Entry<Integer, long[]> e : contas.entrySet()) copia.contas.put(e.getKey(), e.getValue().clone());
+            return copia;
+        }
+
+        // Mesmas regras do Banco: saque e transferência só com saldo suficiente; a transferência
+        // lança saque e envio na origem, depósito e recebimento no destino
+        void aplicar(Operacao op) {
+            long[] conta = contas.get(op.conta);
+            switch (op.tipo) {
+                case DEPOSITO:
+                    conta[0] += op.valor;
+                    conta[1]++;
+                    break;
+                case SAQUE:
+                    if (conta[0] < op.valor) return;
+                    conta[0] -= op.valor;
+                    conta[1]++;
+                    break;
+                case TRANSFERENCIA:
+                    long[] destino = contas.get(op.destino);
+                    if (conta[0] < op.valor) return;
+                    conta[0] -= op.valor;
+                    conta[1] += 2;
+                    destino[0] += op.valor;
+                    destino[1] += 2;
+                    break;
+                default:
+            }
+        }
+    }
+
+    private static final class Operacao {
+        final int tipo;
+        final int conta;
+        final int destino;
+        final long valor;
+
+        Operacao(int tipo, int conta, int destino, long valor) {
+            this.tipo = tipo;
+            this.conta = conta;
+            this.destino = destino;
+            this.valor = valor;
+        }
+
+        @Override
+        public String toString() {
+            return new String[] {"depósito", "saque", "transferência", "checkpoint"}[tipo] + " " + conta
+                    + (tipo == TRANSFERENCIA ? " -> " + destino : "") + " " + valor;
+        }
+    }
+
+    private final Random random;
+    private final EscritaComQueda escrita = new EscritaComQueda();
+    private Modelo modelo = new Modelo();
+    // Operação em andamento quando a queda aconteceu (null: nenhuma)
+    private Operacao emAndamento;
+    private int checkpointsDesdeCorrupcao;
+    // Bytes gravados pela última operação de cada tipo
+    private final long[] gravados = new long[4];
+
+    private InjecaoFalhas(long semente) {
+        this.random = new Random(semente);
+    }
+
+    public static void main(String[] args) throws Exception {
+        int rodadas = args.length > 0 ? Integer.parseInt(args[0]) : 200;
+        long semente = args.length > 1 ? Long.parseLong(args[1]) : 1;
+        int corromperACada = args.length > 2 ? Integer.parseInt(args[2]) : 5;
+        System.setProperty("banco.metricas.intervalo", "0");
+        // Todo checkpoint leva ao arquivo morto o histórico além dos 50 lançamentos mais novos
+        System.setProperty("banco.historico.recentes", "50");
+        System.setProperty("banco.historico.dias", "0");
+
+        Path diretorio = Files.createTempDirectory("injecao-falhas");
+        try {
+            new InjecaoFalhas(semente).executar(diretorio, rodadas, corromperACada);
+        } finally {
+            GeradorDados.apagar(diretorio);
+        }
+    }
+
+    private void executar(Path diretorio, int rodadas, int corromperACada) throws Exception {
+        Banco banco = new Banco(diretorio, false, escrita);
+        for (int i = 0; i < CONTAS; i++) {
+            int numero = banco.criarConta("Conta " + i);
+            banco.depositar(numero, 1_000_000);
+            modelo.contas.put(numero, new long[] {1_000_000, 1});
+        }
+        banco.checkpoint();
+        // Uma rodada sem queda mede quanto grava cada tipo de operação
+        rodada(banco, 0);
+        banco.fechar();
+
+        int quedas = 0;
+        int corrupcoes = 0;
+        long recuperacaoTotal = 0;
+        long recuperacaoMaxima = 0;
+        for (int r = 0; r < rodadas; r++) {
+            long inicio = System.nanoTime();
+            banco = new Banco(diretorio, false, escrita);
+            long recuperacao = System.nanoTime() - inicio;
+            recuperacaoTotal += recuperacao;
+            recuperacaoMaxima = Math.max(recuperacaoMaxima, recuperacao);
+            conferir(banco, r);
+
+            // Um quarto das rodadas vai até o fim e fecha normalmente; nas outras a queda cai
+            // numa operação do diário ou, com a mesma chance, num checkpoint
+            int alvo = 0;
+            if (random.nextInt(4) > 0) {
+                alvo = random.nextBoolean() ? 1 + random.nextInt(OPERACOES_POR_RODADA)
+                        : CHECKPOINT_A_CADA * (1 + random.nextInt(OPERACOES_POR_RODADA / CHECKPOINT_A_CADA));
+            }
+            try {
+                rodada(banco, alvo);
+            } catch (IOException | UncheckedIOException e) {
+                if (!(e instanceof QuedaSimulada || e.getCause() instanceof QuedaSimulada)) throw e;
+                quedas++;
+            }
+            // Com a queda já acontecida, nada do fechamento chega ao disco
+            try {
+                banco.fechar();
+            } catch (UncheckedIOException e) {
+                // diário que falhou na queda
+            }
+            escrita.desarmar();
+
+            if (corromperACada > 0 && r % corromperACada == corromperACada - 1 && checkpointsDesdeCorrupcao > 0) {
+                corromper(diretorio);
+                corrupcoes++;
+                checkpointsDesdeCorrupcao = 0;
+            }
+        }
+        banco = new Banco(diretorio, false, escrita);
+        conferir(banco, rodadas);
+        banco.fechar();
+        System.out.printf("%d rodadas: %d quedas, %d imagens corrompidas, estado confirmado recuperado em todas; "
+                        + "recuperação média %.1f ms, máxima %.1f ms%n",
+                rodadas, quedas, corrupcoes, recuperacaoTotal / 1e6 / rodadas, recuperacaoMaxima / 1e6);
+    }
+
+    // Executa as operações da rodada; na de número 'alvo' (0: nenhuma) arma a queda num byte
+    // aleatório do que aquele tipo de operação gravou da última vez
+    private void rodada(Banco banco, int alvo) throws IOException {
+        Integer[] numeros = modelo.contas.keySet().toArray(new Integer[0]);
+        for (int i = 1; i <= OPERACOES_POR_RODADA; i++) {
+            int tipo = i % CHECKPOINT_A_CADA == 0 ? CHECKPOINT : random.nextInt(3);
+            int conta = numeros[random.nextInt(numeros.length)];
+            int destino = numeros[random.nextInt(numeros.length)];
+            if (tipo == TRANSFERENCIA && destino == conta) tipo = DEPOSITO;
+            Operacao op = new Operacao(tipo, conta, destino, 1 + random.nextInt(tipo == DEPOSITO ? 100_000 : 200_000));
+            boolean medir = alvo == 0 || i < alvo;
+            if (medir) {
+                escrita.armarQueda(Long.MAX_VALUE);
+            } else if (i == alvo) {
+                escrita.armarQueda((long) (random.nextDouble() * gravados[tipo]));
+            }
+            emAndamento = op;
+            switch (tipo) {
+                case DEPOSITO:
+                    banco.depositar(conta, op.valor);
+                    break;
+                case SAQUE:
+                    banco.sacar(conta, op.valor);
+                    break;
+                case TRANSFERENCIA:
+                    banco.transferir(conta, destino, op.valor);
+                    break;
+                default:
+                    banco.checkpoint();
+                    checkpointsDesdeCorrupcao++;
+            }
+            modelo.aplicar(op);
+            emAndamento = null;
+            if (medir) {
+                long bytes = Long.MAX_VALUE - escrita.restantes();
+                // Saque recusado não grava nada
+                if (bytes > 0) gravados[tipo] = bytes;
+                escrita.desarmar();
+            }
+        }
+    }
+
+    // O banco reaberto tem de estar como o modelo, com ou sem a operação em andamento na queda
+    private void conferir(Banco banco, int rodada) {
+        Modelo sem = modelo;
+        Modelo com = null;
+        if (emAndamento != null && emAndamento.tipo != CHECKPOINT) {
+            com = modelo.copia();
+            com.aplicar(emAndamento);
+        }
+        if (igual(banco, sem)) {
+            modelo = sem;
+        } else if (com != null && igual(banco, com)) {
+            modelo = com;
+        } else {
+            throw new IllegalStateException("Rodada " + rodada + ": estado recuperado diferente do confirmado"
+                    + (emAndamento != null ? " (em andamento na queda: " + emAndamento + ")" : ""));
+        }
+        emAndamento = null;
+    }
+
+    private static boolean igual(Banco banco, Modelo modelo) {
+        if (banco.quantidadeContas() != modelo.contas.size()) return false;
+        for (Map.Entry<Integer, long[]> e : modelo.contas.entrySet()) {
+            Conta conta = banco.buscarConta(e.getKey());
+            if (conta == null || conta.getSaldoCentavos() != e.getValue()[0]
+                    || conta.getLancamentos().tamanho() != e.getValue()[1]
+                    || somaHistorico(conta.getLancamentos()) != e.getValue()[0]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    // Saldo refeito do histórico inteiro, lendo os blocos do arquivo morto
+    private static long somaHistorico(Lancamentos lancamentos) {
+        long saldo = 0;
+        for (int i = 0; i < lancamentos.tamanho(); i++) {
+            if (lancamentos.tipo(i) == Lancamentos.DEPOSITO) saldo += lancamentos.valor(i);
+            if (lancamentos.tipo(i) == Lancamentos.SAQUE) saldo -= lancamentos.valor(i);
+        }
+        return saldo;
+    }
+
+    // Troca um byte do manifesto atual, do arquivo de segmento mais novo (gravado pelo último
+    // checkpoint, então só a imagem atual o cita) ou do arquivo morto ou da cópia dele (nunca
+    // dos dois, que guardam os mesmos blocos)
+    private void corromper(Path diretorio) throws IOException {
+        Path alvo = diretorio.resolve(ArmazemSegmentado.MANIFESTO);
+        int escolha = random.nextInt(3);
+        if (escolha == 1) {
+            try (DirectoryStream<Path> segmentos = Files.newDirectoryStream(diretorio, "dados_banco.segmento.*.dat")) {
+                for (Path segmento : segmentos) {
+                    if (geracao(segmento) > geracao(alvo)) alvo = segmento;
+                }
+            }
+        } else if (escolha == 2) {
+            Path arquivoMorto = diretorio.resolve(random.nextBoolean()
+                    ? "dados_banco.historico.000000.dat" : "dados_banco.historico-copia.000000.dat");
+            if (Files.exists(arquivoMorto) && Files.size(arquivoMorto) > 0) alvo = arquivoMorto;
+        }
+        try (FileChannel canal = FileChannel.open(alvo, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            long posicao = (long) (random.nextDouble() * canal.size());
+            ByteBuffer b = ByteBuffer.allocate(1);
+            canal.read(b, posicao);
+            b.put(0, (byte) (b.get(0) ^ (1 + random.nextInt(255)))).rewind();
+            canal.write(b, posicao);
+        }
+    }
+
+    // dados_banco.segmento.<k>.<geração>.dat; o manifesto conta como geração 0
+    private static long geracao(Path arquivo) {
+        String[] partes = arquivo.getFileName().toString().split("\\.");
+        return partes.length == 5 ? Long.parseLong(partes[3]) : 0;
+    }
+}
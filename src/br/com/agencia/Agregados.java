@@ -0,0 +1,187 @@
+package br.com.agencia;
+
+import java.nio.ByteBuffer;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.ZoneId;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+// Totais do banco mantidos a cada operação: o saldo somado de todas as contas e o movimento
+// de cada dia (valor e quantidade de depósitos, saques e transferências). O Banco os atualiza
+// junto com a conta, sob a mesma trava, e o checkpoint grava um retrato deles no manifesto;
+// assim os relatórios não precisam percorrer as contas.
+class Agregados {
+    // Valores e quantidades de um dia, já somados
+    static final class Movimento {
+        final LocalDate data;
+        final long depositos;
+        final long quantidadeDepositos;
+        final long saques;
+        final long quantidadeSaques;
+        final long transferencias;
+        final long quantidadeTransferencias;
+
+        private Movimento(LocalDate data, long[] valores) {
+            this.data = data;
+            this.depositos = valores[0];
+            this.quantidadeDepositos = valores[1];
+            this.saques = valores[2];
+            this.quantidadeSaques = valores[3];
+            this.transferencias = valores[4];
+            this.quantidadeTransferencias = valores[5];
+        }
+    }
+
+    private static final int DEPOSITOS = 0;
+    private static final int SAQUES = 2;
+    private static final int TRANSFERENCIAS = 4;
+    private static final int CAMPOS = 6;
+
+    private static final class Dia {
+        final LocalDate data;
+        // Milissegundos [inicio, fim) do dia no fuso do sistema
+        final long inicio;
+        final long fim;
+        // Pares valor, quantidade, na ordem depósitos, saques, transferências
+        final LongAdder[] campos = new LongAdder[CAMPOS];
+
+        Dia(LocalDate data, ZoneId zona) {
+            this.data = data;
+            this.inicio = data.atStartOfDay(zona).toInstant().toEpochMilli();
+            this.fim = data.plusDays(1).atStartOfDay(zona).toInstant().toEpochMilli();
+            for (int i = 0; i < CAMPOS; i++) campos[i] = new LongAdder();
+        }
+
+        void somar(int campo, long centavos, int quantidade) {
+            campos[campo].add(centavos);
+            campos[campo + 1].add(quantidade);
+        }
+
+        long[] valores() {
+            long[] valores = new long[CAMPOS];
+            for (int i = 0; i < CAMPOS; i++) valores[i] = campos[i].sum();
+            return valores;
+        }
+    }
+
+    private final ZoneId zona = ZoneId.systemDefault();
+    private final LongAdder saldoTotal = new LongAdder();
+    private final ConcurrentHashMap<Long, Dia> dias = new ConcurrentHashMap<>();
+    // Quase todas as operações caem no mesmo dia: ele é achado sem consultar o mapa
+    private volatile Dia recente;
+
+    private Dia dia(long instante) {
+        Dia dia = recente;
+        if (dia != null && instante >= dia.inicio && instante < dia.fim) return dia;
+        LocalDate data = Instant.ofEpochMilli(instante).atZone(zona).toLocalDate();
+        dia = dias.computeIfAbsent(data.toEpochDay(), k -> new Dia(data, zona));
+        recente = dia;
+        return dia;
+    }
+
+    void depositado(long centavos, long instante) {
+        saldoTotal.add(centavos);
+        dia(instante).somar(DEPOSITOS, centavos, 1);
+    }
+
+    void sacado(long centavos, long instante) {
+        saldoTotal.add(-centavos);
+        dia(instante).somar(SAQUES, centavos, 1);
+    }
+
+    void transferido(long centavos, long instante) {
+        dia(instante).somar(TRANSFERENCIAS, centavos, 1);
+    }
+
+    // Lados de uma transferência entre partições (BancoParticionado): o valor sai do saldo de
+    // uma e entra no da outra; a transferência conta no dia da partição de origem
+    void transferenciaEnviada(long centavos, long instante) {
+        saldoTotal.add(-centavos);
+        transferido(centavos, instante);
+    }
+
+    void transferenciaRecebida(long centavos) {
+        saldoTotal.add(centavos);
+    }
+
+    void contaIncluida(Conta conta) {
+        saldoTotal.add(conta.getSaldoCentavos());
+    }
+
+    void contaExcluida(Conta conta) {
+        saldoTotal.add(-conta.getSaldoCentavos());
+    }
+
+    long saldoTotal() {
+        return saldoTotal.sum();
+    }
+
+    Movimento movimento(LocalDate data) {
+        Dia dia = dias.get(data.toEpochDay());
+        return new Movimento(data, dia == null ? new long[CAMPOS] : dia.valores());
+    }
+
+    // Soma uma conta a partir do histórico, para dados gravados antes dos agregados.
+    // Uma transferência gera um saque e um depósito, além dos lançamentos de transferência,
+    // no mesmo instante; eles são descontados para não contar o valor duas vezes.
+    void incluirHistorico(Conta conta) {
+        saldoTotal.add(conta.getSaldoCentavos());
+        Lancamentos lancamentos = conta.getLancamentos();
+        for (int i = 0; i < lancamentos.tamanho(); i++) {
+            long valor = lancamentos.valor(i);
+            Dia dia = dia(lancamentos.instante(i));
+            switch (lancamentos.tipo(i)) {
+                case Lancamentos.DEPOSITO:
+                    dia.somar(DEPOSITOS, valor, 1);
+                    break;
+                case Lancamentos.SAQUE:
+                    dia.somar(SAQUES, valor, 1);
+                    break;
+                case Lancamentos.TRANSFERENCIA_ENVIADA:
+                    dia.somar(SAQUES, -valor, -1);
+                    dia.somar(TRANSFERENCIAS, valor, 1);
+                    break;
+                case Lancamentos.TRANSFERENCIA_RECEBIDA:
+                    dia.somar(DEPOSITOS, -valor, -1);
+                    break;
+                default:
+                    break;
+            }
+        }
+    }
+
+    // Retrato gravado no manifesto pelo checkpoint, que o tira com o banco todo travado:
+    //   saldo total long | dias int | por dia: dia (toEpochDay) long | 6 longs
+    byte[] retrato() {
+        TreeMap<Long, Dia> ordenados = new TreeMap<>(dias);
+        ByteBuffer bytes = ByteBuffer.allocate(12 + ordenados.size() * (8 + CAMPOS * 8));
+        bytes.putLong(saldoTotal.sum()).putInt(ordenados.size());
+        for (Map.Entry<Long, Dia> e : ordenados.entrySet()) {
+            bytes.putLong(e.getKey());
+            for (long valor : e.getValue().valores()) bytes.putLong(valor);
+        }
+        return bytes.array();
+    }
+
+    void restaurar(byte[] retrato) {
+        zerar();
+        ByteBuffer bytes = ByteBuffer.wrap(retrato);
+        saldoTotal.add(bytes.getLong());
+        int quantidade = bytes.getInt();
+        for (int i = 0; i < quantidade; i++) {
+            LocalDate data = LocalDate.ofEpochDay(bytes.getLong());
+            Dia dia = new Dia(data, zona);
+            for (int c = 0; c < CAMPOS; c++) dia.campos[c].add(bytes.getLong());
+            dias.put(data.toEpochDay(), dia);
+        }
+    }
+
+    void zerar() {
+        saldoTotal.reset();
+        dias.clear();
+        recente = null;
+    }
+}
@@ -0,0 +1,452 @@
+package br.com.agencia;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.List;
+import java.util.zip.CRC32C;
+
+// Armazém de contas mapeado em memória (formato versão 4 do arquivo de dados).
+// Ao abrir, só o cabeçalho e os usuários são decodificados; os dados de cada conta ficam no
+// arquivo e são acessados pelo índice mapeado, ordenado por número. A soma de verificação é
+// conferida à parte (verificar), na primeira vez que o dono do arquivo precisa dele.
+//
+//   cabeçalho (64 bytes): magic | versão int | lsn long | usuários int | contas int
+//                         | início do índice long | início dos titulares long
+//                         | início do histórico long | maior histórico long | tamanho do arquivo long
+//   usuários:  por usuário: tamanho int | login | hash da senha | nome (igual à versão 1)
+//   índice:    por conta (48 bytes): numero int | tamanho do titular int | posição do titular long
+//              | saldo long | posição do histórico long | n int
+//              | lançamentos no arquivo morto int | último bloco deles long
+//   titulares: bytes UTF-8
+//   histórico: por conta: instantes long[n] | tipos byte[n] | valores long[n] | contrapartes int[n]
+//   crc32c int (de tudo o que vem antes)
+//
+// A versão 3 não tinha a soma de verificação.
+// O histórico do arquivo são os n lançamentos mais recentes; os anteriores a eles estão no
+// arquivo morto (ArquivoHistorico). Na versão 2 a entrada do índice tinha 36 bytes e todo o
+// histórico ficava no arquivo.
+//
+// Cada arquivo guarda um segmento do ArmazemSegmentado (ou só os usuários). Até a divisão em
+// segmentos o armazém inteiro era um único arquivo por geração (dados_banco.<geração>.dat),
+// que ainda é aberto uma vez para importação.
+class ArmazemContas {
+    static final int VERSAO = 4;
+    private static final int VERSAO_SEM_SOMA = 3;
+    private static final int VERSAO_SEM_ARQUIVO_MORTO = 2;
+    static final String PREFIXO = "dados_banco.";
+    static final String SUFIXO = ".dat";
+
+    private static final int TAMANHO_CABECALHO = 64;
+    private static final int TAMANHO_ENTRADA = 48;
+    private static final int TAMANHO_ENTRADA_SEM_ARQUIVO_MORTO = 36;
+    private static final int BYTES_POR_LANCAMENTO = 21;
+    // Janelas do histórico começam a cada PASSO bytes e se sobrepõem pelo maior histórico,
+    // de modo que o histórico de qualquer conta cabe inteiro numa única janela
+    private static final long PASSO = 1L << 30;
+
+    private final long lsn;
+    private final List<Usuario> usuarios;
+    private final int quantidade;
+    private final ByteBuffer indice;
+    private final ByteBuffer titulares;
+    private final ByteBuffer[] historico;
+    private final int tamanhoEntrada;
+    // Onde estão os lançamentos antigos; null se o arquivo não tiver nenhum lá
+    private final ArquivoHistorico arquivoMorto;
+    private final Path caminho;
+    // Tudo o que a soma cobre, em trechos de até PASSO bytes, e a soma gravada; conferidos
+    // uma única vez por verificar(). Sem soma (versões anteriores), já nasce verificado.
+    private final ByteBuffer[] somado;
+    private final int somaGravada;
+    private volatile boolean verificado;
+    private IOException corrompido;
+
+    private ArmazemContas(long lsn, List<Usuario> usuarios, int quantidade, ByteBuffer indice, ByteBuffer titulares,
+                          ByteBuffer[] historico, int tamanhoEntrada, ArquivoHistorico arquivoMorto, Path caminho,
+                          ByteBuffer[] somado, int somaGravada) {
+        this.lsn = lsn;
+        this.usuarios = usuarios;
+        this.quantidade = quantidade;
+        this.indice = indice;
+        this.titulares = titulares;
+        this.historico = historico;
+        this.tamanhoEntrada = tamanhoEntrada;
+        this.arquivoMorto = arquivoMorto;
+        this.caminho = caminho;
+        this.somado = somado;
+        this.somaGravada = somaGravada;
+        this.verificado = somado == null;
+    }
+
+    static Path caminho(Path diretorio, long geracao) {
+        return diretorio.resolve(String.format("%s%06d%s", PREFIXO, geracao, SUFIXO));
+    }
+
+    // Gerações presentes no diretório, da mais recente para a mais antiga
+    static List<Long> geracoes(Path diretorio) throws IOException {
+        List<Long> geracoes = new ArrayList<>();
+        try (DirectoryStream<Path> arquivos = Files.newDirectoryStream(diretorio, PREFIXO + "*" + SUFIXO)) {
+            for (Path arquivo : arquivos) {
+                String nome = arquivo.getFileName().toString();
+                String meio = nome.substring(PREFIXO.length(), nome.length() - SUFIXO.length());
+                if (meio.isEmpty() || !meio.chars().allMatch(Character::isDigit)) continue;
+                geracoes.add(Long.parseLong(meio));
+            }
+        }
+        geracoes.sort((a, b) -> Long.compare(b, a));
+        return geracoes;
+    }
+
+    // Abre e já confere a soma: arquivos lidos inteiros logo em seguida (usuários, importação)
+    static ArmazemContas abrir(Path arquivo) throws IOException {
+        ArmazemContas armazem = abrir(arquivo, null);
+        armazem.verificar();
+        return armazem;
+    }
+
+    // Arquivo que este processo acabou de gravar e levar ao disco: não é relido para a soma
+    static ArmazemContas abrirGravado(Path arquivo, ArquivoHistorico arquivoMorto) throws IOException {
+        ArmazemContas armazem = abrir(arquivo, arquivoMorto);
+        armazem.verificado = true;
+        return armazem;
+    }
+
+    // Mapeia o arquivo sem ler os dados das contas nem conferir a soma (verificar); o canal é
+    // fechado em seguida, os mapeamentos continuam válidos. 'arquivoMorto' é o do armazém a
+    // que o arquivo pertence.
+    static ArmazemContas abrir(Path arquivo, ArquivoHistorico arquivoMorto) throws IOException {
+        try (FileChannel canal = FileChannel.open(arquivo, StandardOpenOption.READ)) {
+            long tamanhoArquivo = canal.size();
+            if (tamanhoArquivo < TAMANHO_CABECALHO) throw new IOException("Arquivo de dados incompleto: " + arquivo);
+            ByteBuffer cabecalho = canal.map(FileChannel.MapMode.READ_ONLY, 0, TAMANHO_CABECALHO);
+            if (cabecalho.getInt() != CodecBanco.MAGIC) throw new IOException("Arquivo de dados inválido: " + arquivo);
+            int versao = cabecalho.getInt();
+            if (versao != VERSAO && versao != VERSAO_SEM_SOMA && versao != VERSAO_SEM_ARQUIVO_MORTO) {
+                throw new IOException("Versão do arquivo de dados não suportada: " + versao);
+            }
+            long lsn = cabecalho.getLong();
+            int quantidadeUsuarios = cabecalho.getInt();
+            int quantidade = cabecalho.getInt();
+            long inicioIndice = cabecalho.getLong();
+            long inicioTitulares = cabecalho.getLong();
+            long inicioHistorico = cabecalho.getLong();
+            long maiorHistorico = cabecalho.getLong();
+            if (cabecalho.getLong() != tamanhoArquivo) throw new IOException("Arquivo de dados incompleto: " + arquivo);
+            if (maiorHistorico > PASSO) throw new IOException("Histórico de conta grande demais: " + maiorHistorico);
+            ByteBuffer[] somado = null;
+            int somaGravada = 0;
+            if (versao == VERSAO) {
+                long fim = tamanhoArquivo - 4;
+                if (fim < TAMANHO_CABECALHO) throw new IOException("Arquivo de dados incompleto: " + arquivo);
+                somado = new ByteBuffer[(int) ((fim + PASSO - 1) / PASSO)];
+                for (int i = 0; i < somado.length; i++) {
+                    somado[i] = canal.map(FileChannel.MapMode.READ_ONLY, i * PASSO, Math.min(PASSO, fim - i * PASSO));
+                }
+                somaGravada = canal.map(FileChannel.MapMode.READ_ONLY, fim, 4).getInt();
+            }
+
+            ByteBuffer secaoUsuarios = mapear(canal, TAMANHO_CABECALHO, inicioIndice);
+            List<Usuario> usuarios = new ArrayList<>(quantidadeUsuarios);
+            for (int i = 0; i < quantidadeUsuarios; i++) {
+                secaoUsuarios.getInt();
+                usuarios.add(new Usuario(texto(secaoUsuarios), texto(secaoUsuarios), texto(secaoUsuarios)));
+            }
+
+            ByteBuffer indice = mapear(canal, inicioIndice, inicioTitulares);
+            ByteBuffer titulares = mapear(canal, inicioTitulares, inicioHistorico);
+            long tamanhoHistorico = tamanhoArquivo - inicioHistorico;
+            ByteBuffer[] historico = new ByteBuffer[(int) Math.max(1, (tamanhoHistorico + PASSO - 1) / PASSO)];
+            for (int i = 0; i < historico.length; i++) {
+                long inicio = inicioHistorico + i * PASSO;
+                long fim = Math.min(tamanhoArquivo, inicio + PASSO + maiorHistorico);
+                historico[i] = mapear(canal, Math.min(inicio, tamanhoArquivo), fim);
+            }
+            return new ArmazemContas(lsn, usuarios, quantidade, indice, titulares, historico,
+                    versao >= VERSAO_SEM_SOMA ? TAMANHO_ENTRADA : TAMANHO_ENTRADA_SEM_ARQUIVO_MORTO, arquivoMorto,
+                    arquivo, somado, somaGravada);
+        }
+    }
+
+    // Lê o arquivo inteiro e confere a soma na primeira chamada; as seguintes só repetem o
+    // resultado. Lê dos mapeamentos, então vale mesmo depois de o arquivo ser apagado.
+    void verificar() throws IOException {
+        if (verificado) return;
+        synchronized (this) {
+            if (verificado) return;
+            if (corrompido == null) {
+                CRC32C soma = new CRC32C();
+                for (ByteBuffer trecho : somado) soma.update(trecho.duplicate());
+                if (somaGravada == (int) soma.getValue()) {
+                    verificado = true;
+                    return;
+                }
+                corrompido = new IOException("Arquivo de dados corrompido: " + caminho);
+            }
+            throw corrompido;
+        }
+    }
+
+    Path caminho() { return caminho; }
+
+    private static ByteBuffer mapear(FileChannel canal, long inicio, long fim) throws IOException {
+        if (fim < inicio || fim - inicio > Integer.MAX_VALUE) throw new IOException("Seção inválida no arquivo de dados");
+        return canal.map(FileChannel.MapMode.READ_ONLY, inicio, fim - inicio);
+    }
+
+    private static String texto(ByteBuffer buffer) {
+        byte[] bytes = new byte[buffer.getInt()];
+        buffer.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    long getLsn() { return lsn; }
+    List<Usuario> getUsuarios() { return usuarios; }
+    int quantidade() { return quantidade; }
+
+    int numero(int posicao) {
+        return indice.getInt(posicao * tamanhoEntrada);
+    }
+
+    // Posição da conta no índice (busca binária), ou -1 se não estiver no arquivo
+    int posicao(int numero) {
+        int baixo = 0;
+        int alto = quantidade - 1;
+        while (baixo <= alto) {
+            int meio = (baixo + alto) >>> 1;
+            int atual = numero(meio);
+            if (atual < numero) {
+                baixo = meio + 1;
+            } else if (atual > numero) {
+                alto = meio - 1;
+            } else {
+                return meio;
+            }
+        }
+        return -1;
+    }
+
+    String titular(int posicao) {
+        ByteBuffer bytes = titularBruto(posicao);
+        byte[] copia = new byte[bytes.remaining()];
+        bytes.get(copia);
+        return new String(copia, StandardCharsets.UTF_8);
+    }
+
+    long saldo(int posicao) {
+        return indice.getLong(posicao * tamanhoEntrada + 16);
+    }
+
+    // Lançamentos no próprio arquivo (os mais recentes)
+    int quantidadeLancamentos(int posicao) {
+        return indice.getInt(posicao * tamanhoEntrada + 32);
+    }
+
+    int quantidadeArquivada(int posicao) {
+        return tamanhoEntrada == TAMANHO_ENTRADA ? indice.getInt(posicao * tamanhoEntrada + 36) : 0;
+    }
+
+    private long ultimoBlocoArquivado(int posicao) {
+        return tamanhoEntrada == TAMANHO_ENTRADA ? indice.getLong(posicao * tamanhoEntrada + 40) : ArquivoHistorico.NENHUM;
+    }
+
+    // Cria a Conta com o histórico apontando para o arquivo (nada é copiado)
+    Conta materializar(int posicao) {
+        return new Conta(numero(posicao), titular(posicao), saldo(posicao), lancamentos(posicao));
+    }
+
+    // Histórico lido direto do arquivo (e do arquivo morto), sem criar a conta
+    Lancamentos lancamentos(int posicao) {
+        int arquivada = quantidadeArquivada(posicao);
+        ArquivoHistorico.Arquivados arquivados = arquivada == 0 ? null
+                : new ArquivoHistorico.Arquivados(arquivoMorto, numero(posicao), ultimoBlocoArquivado(posicao), arquivada);
+        return new Lancamentos(arquivados, historicoBruto(posicao), quantidadeLancamentos(posicao));
+    }
+
+    private ByteBuffer titularBruto(int posicao) {
+        int base = posicao * tamanhoEntrada;
+        int tamanho = indice.getInt(base + 4);
+        int inicio = (int) indice.getLong(base + 8);
+        return titulares.slice(inicio, tamanho);
+    }
+
+    private ByteBuffer historicoBruto(int posicao) {
+        long inicio = indice.getLong(posicao * tamanhoEntrada + 24);
+        int tamanho = quantidadeLancamentos(posicao) * BYTES_POR_LANCAMENTO;
+        if (tamanho == 0) return ByteBuffer.allocate(0);
+        return historico[(int) (inicio / PASSO)].slice((int) (inicio % PASSO), tamanho);
+    }
+
+    static long gravar(Path arquivo, ArmazemContas anterior, BitSet foraDoArmazem, Conta[] emMemoria,
+                       List<Usuario> usuarios, long lsn) throws IOException {
+        return gravar(arquivo, anterior, foraDoArmazem, emMemoria, null, usuarios, lsn, Escrita.DIRETA);
+    }
+
+    // Grava um novo arquivo juntando as contas ainda só no armazém 'anterior' (as posições
+    // fora de 'foraDoArmazem', copiadas sem decodificar) com as contas em memória.
+    // 'emMemoria' deve estar ordenado por número e não repetir contas do armazém anterior.
+    // 'arquivados' (opcional, alinhado com 'emMemoria') traz o começo do histórico que acabou
+    // de ir para o arquivo morto; só o restante é gravado aqui. Devolve o tamanho do arquivo.
+    static long gravar(Path arquivo, ArmazemContas anterior, BitSet foraDoArmazem, Conta[] emMemoria,
+                       ArquivoHistorico.Arquivados[] arquivados, List<Usuario> usuarios, long lsn,
+                       Escrita escrita) throws IOException {
+        int quantidadeAnterior = anterior == null ? 0 : anterior.quantidade;
+        int total = emMemoria.length + quantidadeAnterior
+                - (anterior == null ? 0 : foraDoArmazem.cardinality());
+
+        // Ordem final: >= 0 é posição no armazém anterior, < 0 é -(índice em emMemoria) - 1
+        int[] origem = new int[total];
+        ArquivoHistorico.Arquivados[] frios = new ArquivoHistorico.Arquivados[emMemoria.length];
+        for (int j = 0; j < emMemoria.length; j++) {
+            frios[j] = arquivados != null && arquivados[j] != null ? arquivados[j] : emMemoria[j].getLancamentos().arquivados();
+        }
+        byte[][] titularesNovos = new byte[emMemoria.length][];
+        long tamanhoTitulares = 0;
+        long tamanhoHistorico = 0;
+        long maiorHistorico = 0;
+        int a = 0;
+        int m = 0;
+        for (int k = 0; k < total; k++) {
+            while (a < quantidadeAnterior && foraDoArmazem.get(a)) a++;
+            boolean doAnterior = m == emMemoria.length
+                    || (a < quantidadeAnterior && anterior.numero(a) < emMemoria[m].getNumero());
+            long historico;
+            if (doAnterior) {
+                origem[k] = a;
+                tamanhoTitulares += anterior.indice.getInt(a * anterior.tamanhoEntrada + 4);
+                historico = (long) anterior.quantidadeLancamentos(a) * BYTES_POR_LANCAMENTO;
+                a++;
+            } else {
+                origem[k] = -m - 1;
+                titularesNovos[m] = CodecBanco.utf8(emMemoria[m].getTitular());
+                tamanhoTitulares += titularesNovos[m].length;
+                historico = (long) (emMemoria[m].getLancamentos().tamanho() - quantidade(frios[m])) * BYTES_POR_LANCAMENTO;
+                m++;
+            }
+            tamanhoHistorico += historico;
+            maiorHistorico = Math.max(maiorHistorico, historico);
+        }
+
+        List<byte[][]> usuariosCodificados = new ArrayList<>(usuarios.size());
+        long tamanhoUsuarios = 0;
+        for (Usuario usuario : usuarios) {
+            byte[][] campos = {CodecBanco.utf8(usuario.getLogin()), CodecBanco.utf8(usuario.getSenhaCodificada()),
+                    CodecBanco.utf8(usuario.getNome())};
+            usuariosCodificados.add(campos);
+            tamanhoUsuarios += 16 + campos[0].length + campos[1].length + campos[2].length;
+        }
+
+        long inicioIndice = TAMANHO_CABECALHO + tamanhoUsuarios;
+        long inicioTitulares = inicioIndice + (long) total * TAMANHO_ENTRADA;
+        long inicioHistorico = inicioTitulares + tamanhoTitulares;
+        long tamanhoArquivo = inicioHistorico + tamanhoHistorico + 4;
+
+        try (FileChannel canal = FileChannel.open(arquivo, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING)) {
+            CodecBanco.Saida saida = new CodecBanco.Saida(canal, escrita);
+            saida.garantir(TAMANHO_CABECALHO);
+            saida.buffer.putInt(CodecBanco.MAGIC).putInt(VERSAO).putLong(lsn)
+                    .putInt(usuarios.size()).putInt(total)
+                    .putLong(inicioIndice).putLong(inicioTitulares).putLong(inicioHistorico)
+                    .putLong(maiorHistorico).putLong(tamanhoArquivo);
+
+            for (byte[][] campos : usuariosCodificados) {
+                saida.garantir(4);
+                saida.buffer.putInt(12 + campos[0].length + campos[1].length + campos[2].length);
+                for (byte[] campo : campos) saida.texto(campo);
+            }
+
+            long posicaoTitular = 0;
+            long posicaoHistorico = 0;
+            for (int k = 0; k < total; k++) {
+                int numero;
+                int tamanhoTitular;
+                long saldo;
+                int n;
+                int arquivada;
+                long ultimoBloco;
+                if (origem[k] >= 0) {
+                    int p = origem[k];
+                    numero = anterior.numero(p);
+                    tamanhoTitular = anterior.indice.getInt(p * anterior.tamanhoEntrada + 4);
+                    saldo = anterior.saldo(p);
+                    n = anterior.quantidadeLancamentos(p);
+                    arquivada = anterior.quantidadeArquivada(p);
+                    ultimoBloco = anterior.ultimoBlocoArquivado(p);
+                } else {
+                    int j = -origem[k] - 1;
+                    Conta conta = emMemoria[j];
+                    numero = conta.getNumero();
+                    tamanhoTitular = titularesNovos[j].length;
+                    saldo = conta.getSaldoCentavos();
+                    arquivada = quantidade(frios[j]);
+                    ultimoBloco = frios[j] == null ? ArquivoHistorico.NENHUM : frios[j].ultimo;
+                    n = conta.getLancamentos().tamanho() - arquivada;
+                }
+                saida.garantir(TAMANHO_ENTRADA);
+                saida.buffer.putInt(numero).putInt(tamanhoTitular).putLong(posicaoTitular)
+                        .putLong(saldo).putLong(posicaoHistorico).putInt(n).putInt(arquivada).putLong(ultimoBloco);
+                posicaoTitular += tamanhoTitular;
+                posicaoHistorico += (long) n * BYTES_POR_LANCAMENTO;
+            }
+
+            for (int k = 0; k < total; k++) {
+                if (origem[k] >= 0) {
+                    saida.copiar(anterior.titularBruto(origem[k]));
+                } else {
+                    saida.copiar(ByteBuffer.wrap(titularesNovos[-origem[k] - 1]));
+                }
+            }
+
+            for (int k = 0; k < total; k++) {
+                if (origem[k] >= 0) {
+                    saida.copiar(anterior.historicoBruto(origem[k]));
+                } else {
+                    int j = -origem[k] - 1;
+                    gravarHistorico(saida, emMemoria[j].getLancamentos(), quantidade(frios[j]));
+                }
+            }
+            saida.descarregar();
+            saida.buffer.putInt((int) saida.soma.getValue());
+            saida.descarregar();
+        }
+        return tamanhoArquivo;
+    }
+
+    private static int quantidade(ArquivoHistorico.Arquivados arquivados) {
+        return arquivados == null ? 0 : arquivados.quantidade;
+    }
+
+    // Os lançamentos a partir de 'desde' (os anteriores estão no arquivo morto)
+    private static void gravarHistorico(CodecBanco.Saida saida, Lancamentos lancamentos, int desde) throws IOException {
+        ByteBuffer mapeadas = lancamentos.colunasMapeadas();
+        if (mapeadas != null && desde == lancamentos.tamanhoArquivado()) {
+            saida.copiar(mapeadas);
+            return;
+        }
+        int n = lancamentos.tamanho();
+        for (int i = desde; i < n; i++) {
+            saida.garantir(8);
+            saida.buffer.putLong(lancamentos.instante(i));
+        }
+        for (int i = desde; i < n; i++) {
+            saida.garantir(1);
+            saida.buffer.put(lancamentos.tipo(i));
+        }
+        for (int i = desde; i < n; i++) {
+            saida.garantir(8);
+            saida.buffer.putLong(lancamentos.valor(i));
+        }
+        for (int i = desde; i < n; i++) {
+            saida.garantir(4);
+            saida.buffer.putInt(lancamentos.contraparte(i));
+        }
+    }
+}
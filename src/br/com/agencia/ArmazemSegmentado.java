@@ -0,0 +1,849 @@
+package br.com.agencia;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+import java.util.function.IntPredicate;
+import java.util.zip.CRC32;
+
+// Armazém de contas dividido em segmentos por faixa de números: o segmento k guarda as contas
+// de k * 2^BITS_SEGMENTO até (k + 1) * 2^BITS_SEGMENTO - 1, num arquivo no formato de
+// ArmazemContas (dados_banco.segmento.<k>.<geração>.dat). Os usuários ficam num arquivo
+// próprio (dados_banco.usuarios.<geração>.dat) e o manifesto lista os arquivos da imagem atual:
+//
+//   magic | versão int | lsn long | última geração long | geração dos usuários long
+//   | segmentos int | por segmento: k int | geração long
+//   | tamanho dos agregados int | agregados (Agregados.retrato) | próximo número de conta long
+//   | fim do arquivo morto long | crc32 int (de tudo o que vem antes)
+//
+// A versão 3 não tinha os agregados; eles são recalculados das contas na primeira carga.
+// Até a versão 4 não havia o próximo número; ele parte do maior número nos arquivos.
+// Até a versão 5 não havia arquivo morto (ArquivoHistorico): todo o histórico nos segmentos.
+//
+// Histórico em camadas: o checkpoint leva para o arquivo morto, comprimido e só com acréscimos,
+// o começo do histórico das contas que regrava; nos segmentos ficam os RECENTES lançamentos
+// mais novos de cada conta e os dos últimos DIAS_RECENTES dias. Regravar um segmento custa
+// então o histórico recente das contas, não o de toda a vida do banco.
+//
+// O checkpoint regrava só os segmentos com contas alteradas, criadas ou removidas; os outros
+// entram no novo manifesto como estão. Um arquivo novo nunca sobrescreve um da imagem atual e
+// o manifesto é trocado por rename atômico: uma queda no meio do checkpoint deixa valendo o
+// manifesto anterior, e os arquivos que ele não cita são apagados na abertura seguinte.
+// A imagem do checkpoint anterior (dados_banco.manifesto.anterior e os arquivos dela) também
+// é mantida, para o caso de a atual estar ilegível na abertura.
+//
+// A abertura só mapeia os arquivos de segmento; a soma de cada um é conferida no primeiro
+// acesso ao segmento e, para os que ninguém tocar, por uma thread em segundo plano. Um arquivo
+// que não confere é renomeado para .corrompido, as contas dele ficam ilegíveis e nenhum
+// checkpoint parte mais desta imagem: a próxima abertura não encontra o arquivo, volta ao
+// checkpoint anterior e reaplica o diário desde ele, que ficou guardado.
+class ArmazemSegmentado {
+    static final int VERSAO = 6;
+    private static final int VERSAO_SEM_ARQUIVO_MORTO = 5;
+    private static final int VERSAO_SEM_NUMERACAO = 4;
+    private static final int VERSAO_SEM_AGREGADOS = 3;
+    static final int BITS_SEGMENTO = 14;
+    static final String MANIFESTO = "dados_banco.manifesto";
+    // O manifesto do checkpoint anterior e o que foi deixado de lado por estar ilegível
+    private static final String ANTERIOR = ".anterior";
+    private static final String CORROMPIDO = ".corrompido";
+    private static final String PREFIXO_SEGMENTO = "dados_banco.segmento.";
+    private static final String PREFIXO_USUARIOS = "dados_banco.usuarios.";
+    private static final String TEMPORARIO = ".tmp";
+    private static final int TAMANHO_CABECALHO = 36;
+    private static final int TAMANHO_ENTRADA = 12;
+    // Camadas do histórico (-Dbanco.historico.recentes e -Dbanco.historico.dias); um trecho só
+    // vai para o arquivo morto com ao menos BLOCO_MINIMO lançamentos
+    private static final int RECENTES = Integer.getInteger("banco.historico.recentes", 1000);
+    private static final long DIAS_RECENTES = Long.getLong("banco.historico.dias", 90);
+    private static final int BLOCO_MINIMO = 64;
+
+    // Recebe as contas em ordem de número: 'arquivo' e 'posicao' localizam uma conta ainda só
+    // no arquivo; para uma conta em memória 'arquivo' é null. Devolve false para parar.
+    interface Visitante {
+        boolean visitar(int numero, ArmazemContas arquivo, int posicao);
+    }
+
+    // Arquivo de um segmento e as posições dele cuja conta já está em memória ou foi removida.
+    // Um Segmento é trocado inteiro no mapa, o que permite lê-lo sem travas.
+    private static final class Segmento {
+        final ArmazemContas arquivo;
+        final long geracao;
+        final BitSet fora;
+
+        Segmento(ArmazemContas arquivo, long geracao, BitSet fora) {
+            this.arquivo = arquivo;
+            this.geracao = geracao;
+            this.fora = fora;
+        }
+    }
+
+    // Conteúdo de um manifesto já conferido
+    private static final class Manifesto {
+        long lsn;
+        long ultimaGeracao;
+        long geracaoUsuarios;
+        final TreeMap<Integer, Long> segmentos = new TreeMap<>();
+        // null na versão 3
+        byte[] agregados;
+        long proximoNumero;
+        long fimArquivoMorto;
+    }
+
+    // Segmento a regravar, como estava quando o banco foi travado
+    private static final class Congelado {
+        final int segmento;
+        // null se o segmento ainda não tinha arquivo
+        final Segmento atual;
+        final BitSet fora;
+        // Contas em memória do segmento e as cópias delas (Conta.retrato), que são as gravadas
+        final Conta[] contas;
+        final Conta[] copias;
+
+        Congelado(int segmento, Segmento atual, BitSet fora, Conta[] contas, Conta[] copias) {
+            this.segmento = segmento;
+            this.atual = atual;
+            this.fora = fora;
+            this.contas = contas;
+            this.copias = copias;
+        }
+    }
+
+    // Retrato tirado pela primeira fase do checkpoint e os arquivos gravados a partir dele,
+    // ainda como temporários
+    static final class Gravacao {
+        private final long lsn;
+        private final List<Congelado> congelados = new ArrayList<>();
+        // Cópia dos usuários, ou null se não mudaram desde o último checkpoint
+        private List<Usuario> usuarios;
+        // segmento -> geração do novo arquivo (0: o segmento ficou vazio e sai do manifesto)
+        private final Map<Integer, Long> segmentos = new HashMap<>();
+        private final Map<Integer, ArmazemContas> abertos = new HashMap<>();
+        private long geracaoUsuarios;
+        private boolean usuariosGravados;
+        private byte[] agregados;
+        private long proximoNumero;
+        private long fimArquivoMorto;
+        // Contas em memória gravadas nos segmentos novos, por segmento
+        private final List<Conta[]> contasGravadas = new ArrayList<>();
+        private byte[] manifesto;
+        private long bytes;
+
+        private Gravacao(long lsn) {
+            this.lsn = lsn;
+        }
+
+        long bytesGravados() {
+            return bytes;
+        }
+
+        List<Conta[]> contasGravadas() {
+            return contasGravadas;
+        }
+    }
+
+    private final Path diretorio;
+    private final Escrita escrita;
+    private final ConcurrentHashMap<Integer, Segmento> segmentos = new ConcurrentHashMap<>();
+    private ArquivoHistorico arquivoMorto;
+    private long lsn;
+    private long ultimaGeracao;
+    private long geracaoUsuarios;
+    private List<Usuario> usuarios = new ArrayList<>();
+    private int usuariosNoArquivo = -1;
+    private byte[] agregados;
+    // Limite da numeração de contas gravado com a imagem (0 nos manifestos anteriores à versão 5)
+    private long proximoNumero;
+    // Contas que só existem nos arquivos (nem em memória nem removidas)
+    private int quantidade;
+    // Contas existentes por segmento, estejam no arquivo ou em memória; permite pular
+    // segmentos inteiros ao listar a partir de uma posição
+    private final TreeMap<Integer, Integer> contasPorSegmento = new TreeMap<>();
+    // Contas criadas que ainda não constam em nenhum arquivo de segmento
+    private final TreeSet<Integer> novas = new TreeSet<>();
+    // Segmentos com contas criadas ou removidas desde o último checkpoint
+    private final Set<Integer> alterados = new HashSet<>();
+    // Contas removidas depois que o último checkpoint tirou sua imagem (ainda constam nos arquivos dele)
+    private final List<Integer> removidasNoCheckpoint = new ArrayList<>();
+    // Arquivos citados pelo manifesto anterior: não são apagados enquanto ele puder ser usado
+    private Set<Path> daImagemAnterior = new HashSet<>();
+    // Primeiro arquivo da imagem atual que não conferiu com a soma; impede novos checkpoints
+    private volatile IOException corrompida;
+    // Por que a abertura voltou ao checkpoint anterior (null se não voltou)
+    private String recuperacao;
+    // Recebe cada dado ilegível encontrado e contornado (avisar)
+    private Consumer<String> avisos = aviso -> { };
+
+    // Armazém vazio, sem manifesto; o primeiro checkpoint grava todos os segmentos
+    ArmazemSegmentado(Path diretorio) {
+        this(diretorio, Escrita.DIRETA);
+    }
+
+    ArmazemSegmentado(Path diretorio, Escrita escrita) {
+        this.diretorio = diretorio;
+        this.escrita = escrita;
+        this.arquivoMorto = ArquivoHistorico.vazio(diretorio, escrita);
+    }
+
+    static int segmento(int numero) {
+        return numero >> BITS_SEGMENTO;
+    }
+
+    static boolean existe(Path diretorio) {
+        return Files.exists(diretorio.resolve(MANIFESTO)) || Files.exists(diretorio.resolve(MANIFESTO + ANTERIOR));
+    }
+
+    private Path caminhoSegmento(int segmento, long geracao) {
+        return diretorio.resolve(String.format("%s%d.%06d%s", PREFIXO_SEGMENTO, segmento, geracao, ArmazemContas.SUFIXO));
+    }
+
+    private Path caminhoUsuarios(long geracao) {
+        return diretorio.resolve(String.format("%s%06d%s", PREFIXO_USUARIOS, geracao, ArmazemContas.SUFIXO));
+    }
+
+    private static Path temporario(Path arquivo) {
+        return arquivo.resolveSibling(arquivo.getFileName() + TEMPORARIO);
+    }
+
+    // Lê o manifesto e mapeia os arquivos que ele cita; nenhuma conta é lida. Se o manifesto
+    // ou algum arquivo citado por ele estiver ilegível (soma de verificação, arquivo faltando),
+    // volta para a imagem do checkpoint anterior, cujo diário ainda está guardado; o manifesto
+    // ruim fica de lado como .corrompido.
+    static ArmazemSegmentado abrir(Path diretorio) throws IOException {
+        return abrir(diretorio, Escrita.DIRETA);
+    }
+
+    static ArmazemSegmentado abrir(Path diretorio, Escrita escrita) throws IOException {
+        Path atual = diretorio.resolve(MANIFESTO);
+        Path anterior = diretorio.resolve(MANIFESTO + ANTERIOR);
+        ArmazemSegmentado armazem;
+        try {
+            armazem = abrir(diretorio, lerManifesto(atual), escrita);
+        } catch (IOException | RuntimeException e) {
+            if (!Files.exists(anterior)) throw e;
+            try {
+                armazem = abrir(diretorio, lerManifesto(anterior), escrita);
+            } catch (IOException | RuntimeException e2) {
+                e.addSuppressed(e2);
+                throw e;
+            }
+            armazem.recuperacao = "Manifesto do armazém ilegível (" + e.getMessage() + "); usando o do checkpoint anterior";
+            if (Files.exists(atual)) Files.move(atual, diretorio.resolve(MANIFESTO + CORROMPIDO), StandardCopyOption.REPLACE_EXISTING);
+            Files.copy(anterior, temporario(atual), StandardCopyOption.REPLACE_EXISTING);
+            mover(atual);
+        }
+        try {
+            armazem.daImagemAnterior = armazem.arquivos(lerManifesto(anterior));
+        } catch (IOException | RuntimeException e) {
+            // sem imagem anterior legível, não há arquivos dela a preservar
+        }
+        armazem.arquivoMorto.descartarExcedente();
+        armazem.verificarEmSegundoPlano();
+        return armazem;
+    }
+
+    private static ArmazemSegmentado abrir(Path diretorio, Manifesto m, Escrita escrita) throws IOException {
+        ArmazemSegmentado armazem = new ArmazemSegmentado(diretorio, escrita);
+        armazem.lsn = m.lsn;
+        armazem.ultimaGeracao = m.ultimaGeracao;
+        armazem.geracaoUsuarios = m.geracaoUsuarios;
+        armazem.arquivoMorto = ArquivoHistorico.abrir(diretorio, m.fimArquivoMorto, escrita);
+        for (Map.Entry<Integer, Long> e : m.segmentos.entrySet()) {
+            int segmento = e.getKey();
+            ArmazemContas arquivo = ArmazemContas.abrir(armazem.caminhoSegmento(segmento, e.getValue()), armazem.arquivoMorto);
+            armazem.segmentos.put(segmento, new Segmento(arquivo, e.getValue(), new BitSet(arquivo.quantidade())));
+            armazem.quantidade += arquivo.quantidade();
+            if (arquivo.quantidade() > 0) armazem.contasPorSegmento.put(segmento, arquivo.quantidade());
+        }
+        armazem.agregados = m.agregados;
+        armazem.proximoNumero = m.proximoNumero;
+        if (armazem.geracaoUsuarios != 0) {
+            ArmazemContas arquivo = ArmazemContas.abrir(armazem.caminhoUsuarios(armazem.geracaoUsuarios));
+            armazem.usuarios = new ArrayList<>(arquivo.getUsuarios());
+            armazem.usuariosNoArquivo = armazem.usuarios.size();
+        }
+        return armazem;
+    }
+
+    private static Manifesto lerManifesto(Path caminho) throws IOException {
+        byte[] bytes = Files.readAllBytes(caminho);
+        ByteBuffer manifesto = ByteBuffer.wrap(bytes);
+        CRC32 crc = new CRC32();
+        crc.update(bytes, 0, Math.max(0, bytes.length - 4));
+        if (bytes.length < TAMANHO_CABECALHO + 4 || manifesto.getInt(bytes.length - 4) != (int) crc.getValue()) {
+            throw new IOException("Manifesto do armazém corrompido");
+        }
+        if (manifesto.getInt() != CodecBanco.MAGIC) throw new IOException("Manifesto do armazém inválido");
+        int versao = manifesto.getInt();
+        if (versao != VERSAO && versao != VERSAO_SEM_ARQUIVO_MORTO && versao != VERSAO_SEM_NUMERACAO
+                && versao != VERSAO_SEM_AGREGADOS) {
+            throw new IOException("Versão do manifesto não suportada: " + versao);
+        }
+
+        Manifesto m = new Manifesto();
+        m.lsn = manifesto.getLong();
+        m.ultimaGeracao = manifesto.getLong();
+        m.geracaoUsuarios = manifesto.getLong();
+        int quantidadeSegmentos = manifesto.getInt();
+        long fimSegmentos = TAMANHO_CABECALHO + (long) quantidadeSegmentos * TAMANHO_ENTRADA;
+        if (quantidadeSegmentos < 0 || fimSegmentos + 4 > bytes.length) throw new IOException("Manifesto do armazém incompleto");
+        int tamanhoAgregados = versao >= VERSAO_SEM_NUMERACAO ? manifesto.getInt((int) fimSegmentos) : 0;
+        long esperado = fimSegmentos + (versao >= VERSAO_SEM_NUMERACAO ? 4L + tamanhoAgregados : 0)
+                + (versao >= VERSAO_SEM_ARQUIVO_MORTO ? 8 : 0) + (versao == VERSAO ? 8 : 0) + 4;
+        if (tamanhoAgregados < 0 || bytes.length != esperado) {
+            throw new IOException("Manifesto do armazém incompleto");
+        }
+        for (int i = 0; i < quantidadeSegmentos; i++) {
+            int segmento = manifesto.getInt();
+            m.segmentos.put(segmento, manifesto.getLong());
+        }
+        if (versao >= VERSAO_SEM_NUMERACAO) {
+            int inicioAgregados = (int) fimSegmentos + 4;
+            m.agregados = Arrays.copyOfRange(bytes, inicioAgregados, inicioAgregados + tamanhoAgregados);
+        }
+        if (versao >= VERSAO_SEM_ARQUIVO_MORTO) m.proximoNumero = manifesto.getLong(bytes.length - (versao == VERSAO ? 20 : 12));
+        if (versao == VERSAO) m.fimArquivoMorto = manifesto.getLong(bytes.length - 12);
+        return m;
+    }
+
+    // Arquivos de segmentos e usuários citados por um manifesto
+    private Set<Path> arquivos(Manifesto m) {
+        Set<Path> arquivos = new HashSet<>();
+        for (Map.Entry<Integer, Long> e : m.segmentos.entrySet()) {
+            arquivos.add(caminhoSegmento(e.getKey(), e.getValue()));
+        }
+        if (m.geracaoUsuarios != 0) arquivos.add(caminhoUsuarios(m.geracaoUsuarios));
+        return arquivos;
+    }
+
+    // Confere os segmentos que ainda não foram acessados, do menor para o maior; um acesso
+    // concorrente ao mesmo arquivo espera a conferência em andamento em vez de repeti-la
+    private void verificarEmSegundoPlano() {
+        List<Segmento> pendentes = new ArrayList<>(new TreeMap<>(segmentos).values());
+        if (pendentes.isEmpty()) return;
+        Thread verificacao = new Thread(() -> {
+            for (Segmento s : pendentes) {
+                try {
+                    conferir(s);
+                } catch (UncheckedIOException e) {
+                    // registrado em 'corrompida'; o acesso ao segmento dá o mesmo erro
+                }
+            }
+        }, "verificacao-armazem");
+        verificacao.setDaemon(true);
+        verificacao.setPriority(Thread.MIN_PRIORITY);
+        verificacao.start();
+    }
+
+    // Segmento 'k' com a soma do arquivo já conferida, ou null se não houver
+    private Segmento conferido(int k) {
+        Segmento s = segmentos.get(k);
+        if (s != null) conferir(s);
+        return s;
+    }
+
+    private void conferir(Segmento s) {
+        try {
+            s.arquivo.verificar();
+        } catch (IOException e) {
+            arquivoCorrompido(s, e);
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    // Passa a avisar 'avisos' (as métricas do banco) de cada dado ilegível contornado: a volta
+    // ao checkpoint anterior na abertura e arquivos ou blocos corrompidos achados depois dela.
+    // O que já aconteceu antes desta chamada é avisado na hora.
+    synchronized void avisar(Consumer<String> avisos) {
+        this.avisos = avisos;
+        arquivoMorto.avisar(avisos);
+        if (recuperacao != null) avisos.accept(recuperacao);
+        if (corrompida != null) avisos.accept(corrompida.getMessage());
+    }
+
+    // Tira o arquivo do caminho (a próxima abertura cai na imagem anterior) e, se ele ainda é da
+    // imagem atual, recusa os checkpoints seguintes, que descartariam o diário que o recupera.
+    // O mapeamento continua válido depois do rename.
+    private synchronized void arquivoCorrompido(Segmento s, IOException e) {
+        Path arquivo = s.arquivo.caminho();
+        try {
+            if (Files.exists(arquivo)) {
+                Files.move(arquivo, arquivo.resolveSibling(arquivo.getFileName() + CORROMPIDO),
+                        StandardCopyOption.REPLACE_EXISTING);
+            }
+        } catch (IOException e2) {
+            e.addSuppressed(e2);
+        }
+        if (corrompida == null && segmentos.containsValue(s)) corrompida = e;
+        avisos.accept(e.getMessage());
+    }
+
+    boolean corrompida() {
+        return corrompida != null;
+    }
+
+    // Chamado no começo de cada checkpoint
+    void conferirImagem() throws IOException {
+        IOException e = corrompida;
+        if (e != null) {
+            throw new IOException("Imagem do armazém com arquivo corrompido; reabra o banco para recuperá-la do "
+                    + "checkpoint anterior e do diário", e);
+        }
+    }
+
+    long getLsn() { return lsn; }
+    List<Usuario> getUsuarios() { return usuarios; }
+    // Retrato dos agregados gravado com a imagem, ou null num manifesto da versão 3
+    byte[] getAgregados() { return agregados; }
+    // Limite da numeração de contas gravado com a imagem, ou 0 num manifesto anterior à versão 5
+    long getProximoNumero() { return proximoNumero; }
+
+    // Maior número de conta nos arquivos ou criada depois deles (0 se não houver contas).
+    // Pode ser de uma conta já removida, o que basta para não repetir números. Lê só a última
+    // entrada de cada índice, sem conferir a soma, para não ler todos os arquivos na abertura;
+    // o manifesto atual já grava o próximo número, que prevalece sobre este.
+    int maiorNumero() {
+        int maior = novas.isEmpty() ? 0 : novas.last();
+        for (Segmento s : segmentos.values()) {
+            if (s.arquivo.quantidade() > 0) maior = Math.max(maior, s.arquivo.numero(s.arquivo.quantidade() - 1));
+        }
+        return maior;
+    }
+
+    // Sem travas, como titular(): só olha o mapa de segmentos
+    boolean contem(int numero) {
+        Segmento s = conferido(segmento(numero));
+        return s != null && s.arquivo.posicao(numero) >= 0;
+    }
+
+    // Titular de uma conta ainda só no arquivo, ou null; não carrega a conta
+    String titular(int numero) {
+        Segmento s = conferido(segmento(numero));
+        int posicao = s == null ? -1 : s.arquivo.posicao(numero);
+        return posicao < 0 || s.fora.get(posicao) ? null : s.arquivo.titular(posicao);
+    }
+
+    // Histórico da conta no segmento instalado (arquivo morto e base), esteja ela em memória ou
+    // não; null se ela não estiver no arquivo. Depois do checkpoint, as contas em memória
+    // passam a ler dele o que foi gravado (Lancamentos.sobre).
+    Lancamentos lancamentosGravados(int numero) {
+        Segmento s = conferido(segmento(numero));
+        int posicao = s == null ? -1 : s.arquivo.posicao(numero);
+        return posicao < 0 ? null : s.arquivo.lancamentos(posicao);
+    }
+
+    void fechar() {
+        arquivoMorto.fechar();
+    }
+
+    // Saldo de uma conta ainda só no arquivo; só vale se titular(numero) não for null
+    long saldo(int numero) {
+        Segmento s = conferido(segmento(numero));
+        int posicao = s == null ? -1 : s.arquivo.posicao(numero);
+        return posicao < 0 ? 0 : s.arquivo.saldo(posicao);
+    }
+
+    // Percorre as contas em ordem de número a partir da posição 'inicio' (0 é a de menor
+    // número), juntando as do arquivo com as criadas depois do último checkpoint. Segmentos
+    // inteiros antes de 'inicio' são pulados pela contagem; 'emMemoria' diz se uma conta que
+    // saiu do arquivo ainda existe em memória. Exige a trava de estrutura, ao menos para leitura.
+    void percorrerEmOrdem(int inicio, IntPredicate emMemoria, Visitante visitante) {
+        int pular = inicio;
+        for (Map.Entry<Integer, Integer> e : contasPorSegmento.entrySet()) {
+            if (pular >= e.getValue()) {
+                pular -= e.getValue();
+                continue;
+            }
+            int k = e.getKey();
+            Segmento s = conferido(k);
+            int noArquivo = s == null ? 0 : s.arquivo.quantidade();
+            Iterator<Integer> criadas = novas.subSet(k << BITS_SEGMENTO, true,
+                    (int) (((long) (k + 1) << BITS_SEGMENTO) - 1), true).iterator();
+            long nova = criadas.hasNext() ? criadas.next() : Long.MAX_VALUE;
+            int p = 0;
+            while (p < noArquivo || nova != Long.MAX_VALUE) {
+                int numero;
+                ArmazemContas arquivo = null;
+                int posicao = -1;
+                if (p < noArquivo && s.arquivo.numero(p) < nova) {
+                    numero = s.arquivo.numero(p);
+                    if (!s.fora.get(p)) {
+                        arquivo = s.arquivo;
+                        posicao = p;
+                    } else if (!emMemoria.test(numero)) {
+                        p++;
+                        continue;
+                    }
+                    p++;
+                } else {
+                    numero = (int) nova;
+                    nova = criadas.hasNext() ? criadas.next() : Long.MAX_VALUE;
+                }
+                if (pular > 0) {
+                    pular--;
+                } else if (!visitante.visitar(numero, arquivo, posicao)) {
+                    return;
+                }
+            }
+        }
+    }
+
+    // Os métodos abaixo exigem a trava de estrutura do banco para escrita
+
+    int quantidade() {
+        return quantidade;
+    }
+
+    // Traz a conta para a memória; devolve null se ela não estiver no arquivo ou já tiver saído dele
+    Conta carregar(int numero) {
+        Segmento s = conferido(segmento(numero));
+        int posicao = s == null ? -1 : s.arquivo.posicao(numero);
+        if (posicao < 0 || s.fora.get(posicao)) return null;
+        s.fora.set(posicao);
+        quantidade--;
+        return s.arquivo.materializar(posicao);
+    }
+
+    void carregarTodas(Consumer<Conta> destino) {
+        for (Segmento s : segmentos.values()) {
+            conferir(s);
+            for (int p = s.fora.nextClearBit(0); p < s.arquivo.quantidade(); p = s.fora.nextClearBit(p + 1)) {
+                destino.accept(s.arquivo.materializar(p));
+                s.fora.set(p);
+                quantidade--;
+            }
+        }
+    }
+
+    // A conta entrou em memória sem vir do arquivo (criação, importação); se o número
+    // existir no arquivo, a versão dele deixa de valer
+    void contaIncluida(int numero) {
+        int k = segmento(numero);
+        alterados.add(k);
+        Segmento s = conferido(k);
+        int posicao = s == null ? -1 : s.arquivo.posicao(numero);
+        if (posicao >= 0 && !s.fora.get(posicao)) {
+            s.fora.set(posicao);
+            quantidade--;
+            return;
+        }
+        if (posicao < 0) novas.add(numero);
+        contasPorSegmento.merge(k, 1, Integer::sum);
+    }
+
+    void contaExcluida(int numero) {
+        int k = segmento(numero);
+        alterados.add(k);
+        removidasNoCheckpoint.add(numero);
+        novas.remove(numero);
+        contasPorSegmento.computeIfPresent(k, (segmento, contas) -> contas > 1 ? contas - 1 : null);
+    }
+
+    // Contas somadas na inicialização dos agregados: as que ainda só existem nos arquivos,
+    // lidas sem passar para a memória do banco
+    void paraCadaNoArquivo(Consumer<Conta> destino) {
+        for (Segmento s : segmentos.values()) {
+            conferir(s);
+            for (int p = s.fora.nextClearBit(0); p < s.arquivo.quantidade(); p = s.fora.nextClearBit(p + 1)) {
+                destino.accept(s.arquivo.materializar(p));
+            }
+        }
+    }
+
+    // Primeira fase do checkpoint, com o banco todo travado: só tira o retrato dos segmentos
+    // com contas alteradas, criadas ou removidas e, se mudaram, dos usuários. Nada é gravado
+    // aqui; as contas são copiadas com o histórico congelado (Conta.retrato), sem copiar
+    // lançamentos. 'emMemoria' deve estar ordenado por número.
+    Gravacao congelarAlterados(Conta[] emMemoria, List<Usuario> usuarios, long lsn, byte[] agregados,
+                               long proximoNumero) {
+        Set<Integer> aGravar = new HashSet<>(alterados);
+        for (Conta conta : emMemoria) {
+            if (conta.isModificada()) aGravar.add(segmento(conta.getNumero()));
+        }
+
+        Gravacao gravacao = new Gravacao(lsn);
+        for (int k : aGravar) {
+            Conta[] contas = Arrays.copyOfRange(emMemoria, primeiraConta(emMemoria, (long) k << BITS_SEGMENTO),
+                    primeiraConta(emMemoria, (long) (k + 1) << BITS_SEGMENTO));
+            Conta[] copias = new Conta[contas.length];
+            for (int m = 0; m < contas.length; m++) {
+                copias[m] = contas[m].retrato();
+                contas[m].marcarGravada();
+            }
+            Segmento atual = segmentos.get(k);
+            gravacao.congelados.add(new Congelado(k, atual, atual == null ? new BitSet() : (BitSet) atual.fora.clone(),
+                    contas, copias));
+        }
+        boolean usuariosAlterados = usuarios.size() != usuariosNoArquivo;
+        for (Usuario usuario : usuarios) {
+            usuariosAlterados |= usuario.isModificado();
+        }
+        if (usuariosAlterados) {
+            gravacao.usuarios = new ArrayList<>(usuarios.size());
+            for (Usuario usuario : usuarios) {
+                gravacao.usuarios.add(new Usuario(usuario.getLogin(), usuario.getSenhaCodificada(), usuario.getNome()));
+                usuario.marcarGravado();
+            }
+            usuariosNoArquivo = usuarios.size();
+        }
+        gravacao.agregados = agregados;
+        gravacao.proximoNumero = proximoNumero;
+        // Se a gravação falhar, desfazer() devolve os segmentos a 'alterados'
+        alterados.clear();
+        removidasNoCheckpoint.clear();
+        return gravacao;
+    }
+
+    // Segunda fase, sem travas: grava como temporários os segmentos e usuários do retrato e
+    // leva o começo dos históricos ao arquivo morto. Só o checkpoint mexe nas gerações e no
+    // arquivo morto, e os arquivos atuais lidos aqui não mudam até instalar().
+    void gravarCongelados(Gravacao gravacao) throws IOException {
+        long limiteRecentes = System.currentTimeMillis() - TimeUnit.DAYS.toMillis(DIAS_RECENTES);
+        long bytesArquivoMorto = arquivoMorto.bytesGravados();
+        for (Congelado c : gravacao.congelados) {
+            // o arquivo atual é copiado para o novo: a soma dele tem de conferir antes
+            if (c.atual != null) conferir(c.atual);
+            int noArquivo = c.atual == null ? 0 : c.atual.arquivo.quantidade() - c.fora.cardinality();
+            if (c.copias.length + noArquivo == 0) {
+                gravacao.segmentos.put(c.segmento, 0L);
+                continue;
+            }
+            long geracao = ++ultimaGeracao;
+            gravacao.bytes += ArmazemContas.gravar(temporario(caminhoSegmento(c.segmento, geracao)),
+                    c.atual == null ? null : c.atual.arquivo, c.fora, c.copias, arquivar(c.copias, limiteRecentes),
+                    Collections.emptyList(), gravacao.lsn, escrita);
+            gravacao.segmentos.put(c.segmento, geracao);
+            gravacao.contasGravadas.add(c.contas);
+        }
+        gravacao.fimArquivoMorto = arquivoMorto.fim();
+        gravacao.bytes += arquivoMorto.bytesGravados() - bytesArquivoMorto;
+        gravacao.geracaoUsuarios = geracaoUsuarios;
+        if (gravacao.usuarios != null) {
+            gravacao.geracaoUsuarios = ++ultimaGeracao;
+            gravacao.usuariosGravados = true;
+            gravacao.bytes += ArmazemContas.gravar(temporario(caminhoUsuarios(gravacao.geracaoUsuarios)), null,
+                    new BitSet(), new Conta[0], null, gravacao.usuarios, gravacao.lsn, escrita);
+        }
+        gravacao.manifesto = manifesto(gravacao);
+        gravacao.bytes += gravacao.manifesto.length;
+    }
+
+    // Leva para o arquivo morto o começo do histórico de cada conta que passar dos RECENTES
+    // lançamentos mais novos e for de antes de 'limiteRecentes'. Devolve, alinhado com
+    // 'contas', o novo trecho arquivado de cada uma (null onde nada mudou), ou null se nenhuma.
+    private ArquivoHistorico.Arquivados[] arquivar(Conta[] contas, long limiteRecentes) throws IOException {
+        ArquivoHistorico.Arquivados[] arquivados = null;
+        for (int m = 0; m < contas.length; m++) {
+            Lancamentos lancamentos = contas[m].getLancamentos();
+            int desde = lancamentos.tamanhoArquivado();
+            int ate = Math.min(lancamentos.tamanho() - RECENTES, lancamentos.primeiroAPartirDe(limiteRecentes, desde));
+            if (ate - desde < BLOCO_MINIMO) continue;
+            ArquivoHistorico.Arquivados anteriores = lancamentos.arquivados();
+            long bloco = arquivoMorto.gravar(contas[m].getNumero(),
+                    anteriores == null ? ArquivoHistorico.NENHUM : anteriores.ultimo, lancamentos, desde, ate);
+            if (arquivados == null) arquivados = new ArquivoHistorico.Arquivados[contas.length];
+            arquivados[m] = new ArquivoHistorico.Arquivados(arquivoMorto, contas[m].getNumero(), bloco, ate);
+        }
+        return arquivados;
+    }
+
+    // Índice da primeira conta com número >= 'numero' (busca binária)
+    private static int primeiraConta(Conta[] contas, long numero) {
+        int baixo = 0;
+        int alto = contas.length;
+        while (baixo < alto) {
+            int meio = (baixo + alto) >>> 1;
+            if (contas[meio].getNumero() < numero) {
+                baixo = meio + 1;
+            } else {
+                alto = meio;
+            }
+        }
+        return baixo;
+    }
+
+    private byte[] manifesto(Gravacao gravacao) {
+        TreeMap<Integer, Long> arquivos = new TreeMap<>();
+        for (Map.Entry<Integer, Segmento> e : segmentos.entrySet()) {
+            arquivos.put(e.getKey(), e.getValue().geracao);
+        }
+        for (Map.Entry<Integer, Long> e : gravacao.segmentos.entrySet()) {
+            if (e.getValue() == 0) {
+                arquivos.remove(e.getKey());
+            } else {
+                arquivos.put(e.getKey(), e.getValue());
+            }
+        }
+        ByteBuffer manifesto = ByteBuffer.allocate(TAMANHO_CABECALHO + arquivos.size() * TAMANHO_ENTRADA
+                + 4 + gravacao.agregados.length + 8 + 8 + 4);
+        manifesto.putInt(CodecBanco.MAGIC).putInt(VERSAO).putLong(gravacao.lsn).putLong(ultimaGeracao)
+                .putLong(gravacao.geracaoUsuarios).putInt(arquivos.size());
+        for (Map.Entry<Integer, Long> e : arquivos.entrySet()) {
+            manifesto.putInt(e.getKey()).putLong(e.getValue());
+        }
+        manifesto.putInt(gravacao.agregados.length).put(gravacao.agregados);
+        manifesto.putLong(gravacao.proximoNumero);
+        manifesto.putLong(gravacao.fimArquivoMorto);
+        CRC32 crc = new CRC32();
+        crc.update(manifesto.array(), 0, manifesto.position());
+        manifesto.putInt((int) crc.getValue());
+        return manifesto.array();
+    }
+
+    // Ainda sem travas: leva os temporários ao disco, troca o manifesto (o ponto em que o
+    // checkpoint passa a valer) e mapeia os arquivos novos
+    void confirmar(Gravacao gravacao) throws IOException {
+        for (Map.Entry<Integer, Long> e : gravacao.segmentos.entrySet()) {
+            if (e.getValue() != 0) mover(caminhoSegmento(e.getKey(), e.getValue()));
+        }
+        if (gravacao.usuariosGravados) mover(caminhoUsuarios(gravacao.geracaoUsuarios));
+        arquivoMorto.descarregar();
+
+        // O manifesto que vai ser trocado fica como o anterior, junto com os arquivos que cita
+        Path manifesto = diretorio.resolve(MANIFESTO);
+        if (Files.exists(manifesto)) {
+            Path anterior = diretorio.resolve(MANIFESTO + ANTERIOR);
+            Files.copy(manifesto, temporario(anterior), StandardCopyOption.REPLACE_EXISTING);
+            mover(anterior);
+            Set<Path> atuais = new HashSet<>();
+            for (Map.Entry<Integer, Segmento> e : segmentos.entrySet()) {
+                atuais.add(caminhoSegmento(e.getKey(), e.getValue().geracao));
+            }
+            if (geracaoUsuarios != 0) atuais.add(caminhoUsuarios(geracaoUsuarios));
+            daImagemAnterior = atuais;
+        }
+        try (FileChannel canal = FileChannel.open(temporario(manifesto), StandardOpenOption.CREATE,
+                StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            ByteBuffer bytes = ByteBuffer.wrap(gravacao.manifesto);
+            while (bytes.hasRemaining()) escrita.escrever(canal, bytes);
+            canal.force(true);
+        }
+        Files.move(temporario(manifesto), manifesto, StandardCopyOption.ATOMIC_MOVE);
+        arquivoMorto.confirmar();
+
+        for (Map.Entry<Integer, Long> e : gravacao.segmentos.entrySet()) {
+            if (e.getValue() != 0) {
+                gravacao.abertos.put(e.getKey(),
+                        ArmazemContas.abrirGravado(caminhoSegmento(e.getKey(), e.getValue()), arquivoMorto));
+            }
+        }
+    }
+
+    private static void mover(Path destino) throws IOException {
+        Path origem = temporario(destino);
+        try (FileChannel canal = FileChannel.open(origem, StandardOpenOption.WRITE)) {
+            canal.force(true);
+        }
+        Files.move(origem, destino, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    // Se a gravação ou a troca do manifesto falhar, os segmentos do retrato voltam a contar
+    // como alterados para o próximo checkpoint regravá-los (o diário que os cobre não foi
+    // descartado). Exige a trava de estrutura para escrita.
+    void desfazer(Gravacao gravacao) {
+        arquivoMorto.desfazer();
+        for (Congelado c : gravacao.congelados) alterados.add(c.segmento);
+        if (gravacao.usuarios != null) usuariosNoArquivo = -1;
+    }
+
+    // Última fase, com a trava de estrutura: os segmentos regravados passam a ser lidos dos
+    // arquivos novos. 'emMemoria' são as contas em memória agora, que continuam valendo sobre eles.
+    void instalar(Gravacao gravacao, Conta[] emMemoria) {
+        Map<Integer, BitSet> fora = new HashMap<>();
+        for (Map.Entry<Integer, ArmazemContas> e : gravacao.abertos.entrySet()) {
+            fora.put(e.getKey(), new BitSet(e.getValue().quantidade()));
+        }
+        for (Conta conta : emMemoria) {
+            marcarFora(gravacao, fora, conta.getNumero());
+        }
+        for (int numero : removidasNoCheckpoint) {
+            marcarFora(gravacao, fora, numero);
+        }
+        for (Map.Entry<Integer, Long> e : gravacao.segmentos.entrySet()) {
+            int k = e.getKey();
+            ArmazemContas arquivo = gravacao.abertos.get(k);
+            if (arquivo == null) {
+                segmentos.remove(k);
+            } else {
+                segmentos.put(k, new Segmento(arquivo, e.getValue(), fora.get(k)));
+                novas.subSet(k << BITS_SEGMENTO, true, (int) (((long) (k + 1) << BITS_SEGMENTO) - 1), true)
+                        .removeIf(numero -> arquivo.posicao(numero) >= 0);
+            }
+        }
+        lsn = gravacao.lsn;
+        agregados = gravacao.agregados;
+        proximoNumero = gravacao.proximoNumero;
+        geracaoUsuarios = gravacao.geracaoUsuarios;
+        quantidade = 0;
+        for (Segmento s : segmentos.values()) {
+            quantidade += s.arquivo.quantidade() - s.fora.cardinality();
+        }
+    }
+
+    private static void marcarFora(Gravacao gravacao, Map<Integer, BitSet> fora, int numero) {
+        ArmazemContas arquivo = gravacao.abertos.get(segmento(numero));
+        if (arquivo == null) return;
+        int posicao = arquivo.posicao(numero);
+        if (posicao >= 0) fora.get(segmento(numero)).set(posicao);
+    }
+
+    // Apaga arquivos de segmentos e usuários que nem o manifesto atual nem o anterior citam
+    // (imagens mais antigas e checkpoints interrompidos). No Windows um arquivo ainda mapeado
+    // não pode ser apagado; nesse caso ele fica para a próxima vez.
+    void descartarArquivosAntigos() {
+        Set<Path> atuais = new HashSet<>(daImagemAnterior);
+        for (Map.Entry<Integer, Segmento> e : segmentos.entrySet()) {
+            atuais.add(caminhoSegmento(e.getKey(), e.getValue().geracao));
+        }
+        if (geracaoUsuarios != 0) atuais.add(caminhoUsuarios(geracaoUsuarios));
+        try (DirectoryStream<Path> arquivos = Files.newDirectoryStream(diretorio, arquivo -> {
+            String nome = arquivo.getFileName().toString();
+            return (nome.startsWith(PREFIXO_SEGMENTO) || nome.startsWith(PREFIXO_USUARIOS))
+                    && (nome.endsWith(ArmazemContas.SUFIXO) || nome.endsWith(ArmazemContas.SUFIXO + TEMPORARIO))
+                    || nome.equals(MANIFESTO + TEMPORARIO) || nome.equals(MANIFESTO + ANTERIOR + TEMPORARIO);
+        })) {
+            for (Path arquivo : arquivos) {
+                if (!atuais.contains(arquivo)) Files.deleteIfExists(arquivo);
+            }
+        } catch (IOException e) {
+            // continuam no disco; são ignorados na carga e apagados numa próxima vez
+        }
+    }
+
+    // Grava uma imagem completa a partir de contas já em memória (gerador de dados dos benchmarks)
+    static void gravarBase(Path diretorio, Conta[] contas, List<Usuario> usuarios, long lsn) throws IOException {
+        ArmazemSegmentado armazem = new ArmazemSegmentado(diretorio);
+        Conta[] ordenadas = contas.clone();
+        Arrays.sort(ordenadas, (a, b) -> Integer.compare(a.getNumero(), b.getNumero()));
+        Agregados agregados = new Agregados();
+        for (Conta conta : ordenadas) {
+            armazem.contaIncluida(conta.getNumero());
+            agregados.incluirHistorico(conta);
+        }
+        long proximoNumero = ordenadas.length == 0 ? 1 : ordenadas[ordenadas.length - 1].getNumero() + 1L;
+        Gravacao gravacao = armazem.congelarAlterados(ordenadas, usuarios, lsn, agregados.retrato(), proximoNumero);
+        armazem.gravarCongelados(gravacao);
+        armazem.confirmar(gravacao);
+    }
+}
@@ -0,0 +1,481 @@
+package br.com.agencia;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Consumer;
+import java.util.zip.CRC32;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+// Arquivo morto do histórico: lançamentos antigos das contas, que saíram dos segmentos do
+// ArmazemSegmentado. Só recebe blocos no fim (dados_banco.historico.<n>.dat, um arquivo novo
+// a cada LIMITE_ARQUIVO bytes); nada é reescrito, então o checkpoint não volta a gravar o
+// histórico antigo de uma conta a cada alteração dela.
+//
+//   bloco: numero int | quantidade int | bloco anterior da conta long | tamanho comprimido int
+//          | crc32 int (dos dados comprimidos)
+//          | deflate(instantes long[n] em diferenças | tipos byte[n] | valores long[n] | contrapartes int[n])
+//
+// Cada bloco aponta para o anterior da mesma conta; o segmento guarda só o último (Arquivados).
+// A posição de um bloco é o número do arquivo << 40 | deslocamento nele. O manifesto guarda o
+// fim confirmado: o que vier depois dele (checkpoint interrompido) é cortado na abertura.
+//
+// Todo bloco é gravado também numa cópia (dados_banco.historico-copia.<n>.dat), na mesma
+// posição. Os dois checkpoints mantidos citam os mesmos blocos antigos e o diário não os
+// cobre, então um bloco que não confere (soma, cabeçalho, encadeamento, número da conta)
+// é lido da cópia.
+class ArquivoHistorico {
+    static final long NENHUM = -1;
+    private static final String PREFIXO = "dados_banco.historico.";
+    private static final String PREFIXO_COPIA = "dados_banco.historico-copia.";
+    private static final long LIMITE_ARQUIVO = 1L << 30;
+    private static final int TAMANHO_CABECALHO = 24;
+    private static final int BYTES_POR_LANCAMENTO = 21;
+    // Lançamentos descomprimidos mantidos em cache, somando todos os blocos
+    private static final int CACHE_LANCAMENTOS = 1 << 20;
+
+    // Colunas de um bloco descomprimido
+    static final class Bloco {
+        final long[] instantes;
+        final byte[] tipos;
+        final long[] valores;
+        final int[] contrapartes;
+
+        Bloco(int n) {
+            instantes = new long[n];
+            tipos = new byte[n];
+            valores = new long[n];
+            contrapartes = new int[n];
+        }
+
+        int tamanho() { return tipos.length; }
+    }
+
+    // Os primeiros 'quantidade' lançamentos da conta 'numero', em blocos encadeados a partir de
+    // 'ultimo'. A lista de blocos é montada na primeira leitura; imutável depois disso.
+    static final class Arquivados {
+        final ArquivoHistorico arquivo;
+        final int numero;
+        final long ultimo;
+        final int quantidade;
+        private volatile Indice indice;
+        // Último bloco lido: leituras em sequência (extrato, busca) não voltam ao cache
+        private volatile Lido lido;
+
+        Arquivados(ArquivoHistorico arquivo, int numero, long ultimo, int quantidade) {
+            this.arquivo = arquivo;
+            this.numero = numero;
+            this.ultimo = ultimo;
+            this.quantidade = quantidade;
+        }
+
+        long instante(int i) {
+            Lido l = bloco(i);
+            return l.bloco.instantes[i - l.inicio];
+        }
+
+        byte tipo(int i) {
+            Lido l = bloco(i);
+            return l.bloco.tipos[i - l.inicio];
+        }
+
+        long valor(int i) {
+            Lido l = bloco(i);
+            return l.bloco.valores[i - l.inicio];
+        }
+
+        int contraparte(int i) {
+            Lido l = bloco(i);
+            return l.bloco.contrapartes[i - l.inicio];
+        }
+
+        private Lido bloco(int i) {
+            Lido l = lido;
+            if (l != null && i >= l.inicio && i < l.inicio + l.bloco.tamanho()) return l;
+            Indice ind = indice();
+            int baixo = 0;
+            int alto = ind.inicios.length - 1;
+            while (baixo < alto) {
+                int meio = (baixo + alto + 1) >>> 1;
+                if (ind.inicios[meio] <= i) {
+                    baixo = meio;
+                } else {
+                    alto = meio - 1;
+                }
+            }
+            l = new Lido(ind.inicios[baixo], arquivo.ler(numero, ind.posicoes[baixo]));
+            lido = l;
+            return l;
+        }
+
+        private Indice indice() {
+            Indice ind = indice;
+            if (ind == null) {
+                ind = arquivo.encadeamento(numero, ultimo, quantidade);
+                indice = ind;
+            }
+            return ind;
+        }
+    }
+
+    // Posições dos blocos de uma conta em ordem e o índice do primeiro lançamento de cada um
+    private static final class Indice {
+        final long[] posicoes;
+        final int[] inicios;
+
+        Indice(long[] posicoes, int[] inicios) {
+            this.posicoes = posicoes;
+            this.inicios = inicios;
+        }
+    }
+
+    private static final class Lido {
+        final int inicio;
+        final Bloco bloco;
+
+        Lido(int inicio, Bloco bloco) {
+            this.inicio = inicio;
+            this.bloco = bloco;
+        }
+    }
+
+    private final Path diretorio;
+    private final ConcurrentHashMap<Integer, FileChannel> canais = new ConcurrentHashMap<>();
+    private final ConcurrentHashMap<Integer, FileChannel> copias = new ConcurrentHashMap<>();
+    // Fim atual (só o checkpoint grava, um por vez) e fim que o manifesto confirmou
+    private long fim;
+    private long confirmado;
+    // Total anexado desde a abertura, para as métricas do checkpoint
+    private long bytesGravados;
+    private final LinkedHashMap<Long, Bloco> cache = new LinkedHashMap<>(256, 0.75f, true);
+    private int lancamentosEmCache;
+    private final Escrita escrita;
+    private volatile Consumer<String> avisos = aviso -> { };
+
+    private ArquivoHistorico(Path diretorio, long fim, Escrita escrita) {
+        this.diretorio = diretorio;
+        this.fim = fim;
+        this.confirmado = fim;
+        this.escrita = escrita;
+    }
+
+    // Abre com o fim confirmado pelo manifesto (0 se ainda não houver arquivo morto). O que
+    // vier depois dele só é cortado por descartarExcedente, quando o manifesto já foi aceito.
+    static ArquivoHistorico abrir(Path diretorio, long fim, Escrita escrita) {
+        return new ArquivoHistorico(diretorio, fim, escrita);
+    }
+
+    // Ainda sem manifesto: o que houver no diretório é sobra de um primeiro checkpoint
+    // interrompido e é sobrescrito
+    static ArquivoHistorico vazio(Path diretorio, Escrita escrita) {
+        return new ArquivoHistorico(diretorio, 0, escrita);
+    }
+
+    // Recebe um aviso a cada bloco lido da cópia por estar corrompido no arquivo principal
+    void avisar(Consumer<String> avisos) {
+        this.avisos = avisos;
+    }
+
+    private Path caminho(int numero, boolean copia) {
+        return diretorio.resolve(String.format("%s%06d%s", copia ? PREFIXO_COPIA : PREFIXO, numero, ArmazemContas.SUFIXO));
+    }
+
+    private static int numeroArquivo(long posicao) {
+        return (int) (posicao >>> 40);
+    }
+
+    private static long deslocamento(long posicao) {
+        return posicao & ((1L << 40) - 1);
+    }
+
+    long fim() {
+        return fim;
+    }
+
+    long bytesGravados() {
+        return bytesGravados;
+    }
+
+    // Anexa os lançamentos [desde, ate) de 'lancamentos' como um bloco da conta, depois de
+    // 'anterior' (NENHUM no primeiro). Devolve a posição do bloco. Só o checkpoint chama.
+    long gravar(int numero, long anterior, Lancamentos lancamentos, int desde, int ate) throws IOException {
+        int n = ate - desde;
+        ByteBuffer colunas = ByteBuffer.allocate(n * BYTES_POR_LANCAMENTO);
+        long instanteAnterior = 0;
+        for (int i = desde; i < ate; i++) {
+            long instante = lancamentos.instante(i);
+            colunas.putLong(instante - instanteAnterior);
+            instanteAnterior = instante;
+        }
+        for (int i = desde; i < ate; i++) colunas.put(lancamentos.tipo(i));
+        for (int i = desde; i < ate; i++) colunas.putLong(lancamentos.valor(i));
+        for (int i = desde; i < ate; i++) colunas.putInt(lancamentos.contraparte(i));
+
+        Deflater deflater = new Deflater();
+        byte[] comprimido;
+        try {
+            deflater.setInput(colunas.array());
+            deflater.finish();
+            byte[] saida = new byte[colunas.capacity() + 64];
+            int tamanho = 0;
+            while (!deflater.finished()) {
+                if (tamanho == saida.length) saida = Arrays.copyOf(saida, saida.length * 2);
+                tamanho += deflater.deflate(saida, tamanho, saida.length - tamanho);
+            }
+            comprimido = Arrays.copyOf(saida, tamanho);
+        } finally {
+            deflater.end();
+        }
+        CRC32 crc = new CRC32();
+        crc.update(comprimido);
+
+        ByteBuffer bloco = ByteBuffer.allocate(TAMANHO_CABECALHO + comprimido.length);
+        bloco.putInt(numero).putInt(n).putLong(anterior).putInt(comprimido.length).putInt((int) crc.getValue())
+                .put(comprimido).flip();
+        if (deslocamento(fim) > 0 && deslocamento(fim) + bloco.remaining() > LIMITE_ARQUIVO) {
+            canal(numeroArquivo(fim), false).force(true);
+            canal(numeroArquivo(fim), true).force(true);
+            fim = (long) (numeroArquivo(fim) + 1) << 40;
+        }
+        long posicao = fim;
+        for (boolean copia : new boolean[] {false, true}) {
+            FileChannel canal = canal(numeroArquivo(posicao), copia);
+            ByteBuffer origem = bloco.duplicate();
+            long destino = deslocamento(posicao);
+            while (origem.hasRemaining()) destino += escrita.escrever(canal, origem, destino);
+        }
+        fim = posicao + TAMANHO_CABECALHO + comprimido.length;
+        bytesGravados += 2L * (TAMANHO_CABECALHO + comprimido.length);
+        return posicao;
+    }
+
+    // Leva ao disco os blocos gravados; chamado antes da troca do manifesto que os cita
+    void descarregar() throws IOException {
+        if (fim != confirmado) {
+            canal(numeroArquivo(fim), false).force(true);
+            canal(numeroArquivo(fim), true).force(true);
+        }
+    }
+
+    void confirmar() {
+        confirmado = fim;
+    }
+
+    // Corta o que um checkpoint interrompido tenha gravado depois do fim confirmado
+    void descartarExcedente() throws IOException {
+        cortar(confirmado);
+    }
+
+    // Checkpoint desfeito: os blocos gravados por ele não são citados por ninguém
+    void desfazer() {
+        try {
+            cortar(confirmado);
+        } catch (IOException e) {
+            // ficam no disco, depois do fim; são cortados na próxima abertura
+        }
+        fim = confirmado;
+    }
+
+    private void cortar(long ate) throws IOException {
+        int ultimo = numeroArquivo(ate);
+        for (boolean copia : new boolean[] {false, true}) {
+            String prefixo = copia ? PREFIXO_COPIA : PREFIXO;
+            try (DirectoryStream<Path> arquivos = Files.newDirectoryStream(diretorio, prefixo + "*" + ArmazemContas.SUFIXO)) {
+                for (Path arquivo : arquivos) {
+                    String nome = arquivo.getFileName().toString();
+                    String meio = nome.substring(prefixo.length(), nome.length() - ArmazemContas.SUFIXO.length());
+                    if (meio.isEmpty() || !meio.chars().allMatch(Character::isDigit)) continue;
+                    int numero = Integer.parseInt(meio);
+                    if (numero > ultimo) {
+                        FileChannel canal = (copia ? copias : canais).remove(numero);
+                        if (canal != null) canal.close();
+                        Files.deleteIfExists(arquivo);
+                    } else if (numero == ultimo && Files.size(arquivo) > deslocamento(ate)) {
+                        canal(numero, copia).truncate(deslocamento(ate));
+                    }
+                }
+            }
+        }
+    }
+
+    private FileChannel canal(int numero, boolean copia) throws IOException {
+        ConcurrentHashMap<Integer, FileChannel> abertos = copia ? copias : canais;
+        FileChannel canal = abertos.get(numero);
+        if (canal != null) return canal;
+        synchronized (abertos) {
+            canal = abertos.get(numero);
+            if (canal == null) {
+                canal = FileChannel.open(caminho(numero, copia), StandardOpenOption.CREATE, StandardOpenOption.READ,
+                        StandardOpenOption.WRITE);
+                abertos.put(numero, canal);
+            }
+            return canal;
+        }
+    }
+
+    void fechar() {
+        for (FileChannel canal : canais.values()) fechar(canal);
+        for (FileChannel canal : copias.values()) fechar(canal);
+    }
+
+    private static void fechar(FileChannel canal) {
+        try {
+            canal.close();
+        } catch (IOException e) {
+            // nada a perder: o arquivo morto só é lido
+        }
+    }
+
+    // Encadeamento dos blocos da conta, lido da cópia se o do arquivo principal não conferir
+    private Indice encadeamento(int numero, long ultimo, int quantidade) {
+        try {
+            return encadeamento(numero, ultimo, quantidade, false);
+        } catch (IOException e) {
+            try {
+                Indice ind = encadeamento(numero, ultimo, quantidade, true);
+                avisos.accept(e.getMessage() + "; lido da cópia");
+                return ind;
+            } catch (IOException e2) {
+                e.addSuppressed(e2);
+                throw new UncheckedIOException("Erro ao ler o arquivo morto do histórico", e);
+            }
+        }
+    }
+
+    // Percorre os blocos da conta do último para o primeiro, lendo só os cabeçalhos. Os blocos
+    // são anexados em ordem, então cada um aponta para uma posição anterior à sua. Um ponteiro
+    // corrompido que caia num bloco válido de outra conta é pego pelo número no cabeçalho.
+    private Indice encadeamento(int numero, long ultimo, int quantidade, boolean copia) throws IOException {
+        List<long[]> blocos = new ArrayList<>();
+        long total = 0;
+        for (long posicao = ultimo; posicao != NENHUM; ) {
+            ByteBuffer cabecalho = lerTrecho(posicao, TAMANHO_CABECALHO, copia);
+            int dono = cabecalho.getInt();
+            int n = cabecalho.getInt();
+            long anterior = cabecalho.getLong();
+            if (dono != numero || n <= 0 || anterior != NENHUM && (anterior < 0 || anterior >= posicao)) {
+                throw new IOException("Cabeçalho do arquivo morto corrompido em " + posicao);
+            }
+            blocos.add(new long[] {posicao, n});
+            total += n;
+            posicao = anterior;
+        }
+        if (total != quantidade) {
+            throw new IOException("Arquivo morto do histórico inconsistente: "
+                    + total + " lançamentos, esperados " + quantidade);
+        }
+        long[] posicoes = new long[blocos.size()];
+        int[] inicios = new int[blocos.size()];
+        int inicio = 0;
+        for (int k = 0; k < posicoes.length; k++) {
+            long[] bloco = blocos.get(posicoes.length - 1 - k);
+            posicoes[k] = bloco[0];
+            inicios[k] = inicio;
+            inicio += (int) bloco[1];
+        }
+        return new Indice(posicoes, inicios);
+    }
+
+    // Bloco descomprimido da conta 'numero', do cache ou do disco
+    Bloco ler(int numero, long posicao) {
+        synchronized (cache) {
+            Bloco bloco = cache.get(posicao);
+            if (bloco != null) return bloco;
+        }
+        Bloco bloco;
+        try {
+            bloco = descomprimir(numero, posicao, false);
+        } catch (IOException e) {
+            try {
+                bloco = descomprimir(numero, posicao, true);
+                avisos.accept(e.getMessage() + "; lido da cópia");
+            } catch (IOException e2) {
+                e.addSuppressed(e2);
+                throw new UncheckedIOException("Erro ao ler o arquivo morto do histórico", e);
+            }
+        }
+        synchronized (cache) {
+            if (cache.put(posicao, bloco) == null) lancamentosEmCache += bloco.tamanho();
+            for (Iterator<Map.Entry<Long, Bloco>> i = cache.entrySet().iterator(); lancamentosEmCache > CACHE_LANCAMENTOS && i.hasNext(); ) {
+                Map.Entry<Long, Bloco> maisAntigo = i.next();
+                if (maisAntigo.getKey() == posicao) continue;
+                lancamentosEmCache -= maisAntigo.getValue().tamanho();
+                i.remove();
+            }
+        }
+        return bloco;
+    }
+
+    private Bloco descomprimir(int numero, long posicao, boolean copia) throws IOException {
+        ByteBuffer cabecalho = lerTrecho(posicao, TAMANHO_CABECALHO, copia);
+        int dono = cabecalho.getInt();
+        int n = cabecalho.getInt();
+        cabecalho.getLong();
+        int tamanho = cabecalho.getInt();
+        int crcGravado = cabecalho.getInt();
+        if (dono != numero || n <= 0 || n > Integer.MAX_VALUE / BYTES_POR_LANCAMENTO || tamanho < 0 || tamanho > LIMITE_ARQUIVO) {
+            throw new IOException("Cabeçalho do arquivo morto corrompido em " + posicao);
+        }
+        ByteBuffer comprimido = lerTrecho(posicao + TAMANHO_CABECALHO, tamanho, copia);
+        CRC32 crc = new CRC32();
+        crc.update(comprimido.array(), 0, tamanho);
+        if ((int) crc.getValue() != crcGravado) throw new IOException("Bloco do arquivo morto corrompido em " + posicao);
+
+        byte[] colunas = new byte[n * BYTES_POR_LANCAMENTO];
+        Inflater inflater = new Inflater();
+        try {
+            inflater.setInput(comprimido.array(), 0, tamanho);
+            int lidos = 0;
+            while (lidos < colunas.length && !inflater.finished()) {
+                int k = inflater.inflate(colunas, lidos, colunas.length - lidos);
+                if (k == 0 && (inflater.needsInput() || inflater.needsDictionary())) break;
+                lidos += k;
+            }
+            // Com 'n' errado no cabeçalho, sobram ou faltam dados comprimidos
+            if (lidos != colunas.length || !inflater.finished()) {
+                throw new IOException("Bloco do arquivo morto incompleto em " + posicao);
+            }
+        } catch (DataFormatException e) {
+            throw new IOException("Bloco do arquivo morto corrompido em " + posicao, e);
+        } finally {
+            inflater.end();
+        }
+
+        ByteBuffer dados = ByteBuffer.wrap(colunas);
+        Bloco bloco = new Bloco(n);
+        long instante = 0;
+        for (int i = 0; i < n; i++) {
+            instante += dados.getLong();
+            bloco.instantes[i] = instante;
+        }
+        dados.get(bloco.tipos);
+        for (int i = 0; i < n; i++) bloco.valores[i] = dados.getLong();
+        for (int i = 0; i < n; i++) bloco.contrapartes[i] = dados.getInt();
+        return bloco;
+    }
+
+    private ByteBuffer lerTrecho(long posicao, int tamanho, boolean copia) throws IOException {
+        FileChannel canal = canal(numeroArquivo(posicao), copia);
+        ByteBuffer buffer = ByteBuffer.allocate(tamanho);
+        long origem = deslocamento(posicao);
+        while (buffer.hasRemaining()) {
+            int lidos = canal.read(buffer, origem + buffer.position());
+            if (lidos < 0) throw new IOException("Fim inesperado do arquivo morto do histórico");
+        }
+        return buffer.flip();
+    }
+}
@@ -0,0 +1,1108 @@
+package br.com.agencia;
+
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.io.Reader;
+import java.io.Serializable;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import javax.swing.JOptionPane;
+import javax.swing.SwingUtilities;
+
+// Classe Banco
+class Banco implements Serializable {
+    private static final long serialVersionUID = 1L;
+    private List<Usuario> usuarios = new ArrayList<>();
+    // Formatos anteriores, importados uma única vez se ainda não houver manifesto do armazém:
+    // o armazém num único arquivo por geração, o binário versão 1 (lido inteiro para a
+    // memória) e a serialização Java
+    private static final String ARQUIVO_V1 = "dados_banco.dat";
+    private static final String ARQUIVO_LEGADO = "dados_banco.ser";
+    private static final String ARQUIVO_DIARIO = "dados_banco.wal";
+    // Tamanho do diário a partir do qual o checkpoint em segundo plano compacta os dados
+    private static final long LIMITE_DIARIO = 16L * 1024 * 1024;
+    private static final long INTERVALO_CHECKPOINT_SEGUNDOS = 30;
+    // Chaves de idempotência lembradas: as mais antigas saem ao passar do limite ou da validade
+    private static final int CAPACIDADE_IDEMPOTENCIA = 100_000;
+    private static final long VALIDADE_IDEMPOTENCIA_MILLIS = TimeUnit.HOURS.toMillis(24);
+    // Sessão de operador sem uso por mais que isso precisa de novo login
+    private static final long VALIDADE_SESSAO_MILLIS = TimeUnit.MINUTES.toMillis(30);
+    // Relatório de métricas regravado a cada intervalo (-Dbanco.metricas.intervalo, 0 desliga)
+    private static final String ARQUIVO_METRICAS = "dados_banco.metricas.txt";
+    private static final long INTERVALO_METRICAS_SEGUNDOS = Long.getLong("banco.metricas.intervalo", 60);
+
+    // Contas em memória (criadas ou já lidas do armazém); as demais só existem nos arquivos mapeados
+    private transient IndiceContas indiceContas = new IndiceContas();
+    private transient volatile ArmazemSegmentado armazem;
+    private transient Map<String, Usuario> indiceUsuarios = new ConcurrentHashMap<>();
+    private final transient MotorTransacoes motor = new MotorTransacoes();
+    private transient Diario diario;
+    // Primeiro segmento do diário depois do checkpoint anterior: dele em diante o diário é
+    // guardado, para a abertura poder voltar à imagem anterior se a atual estiver ilegível
+    private transient long inicioDiarioAnterior;
+    private transient ScheduledExecutorService agendador;
+    private final transient Object checkpointEmAndamento = new Object();
+    private final transient CacheIdempotencia idempotencia =
+            new CacheIdempotencia(CAPACIDADE_IDEMPOTENCIA, VALIDADE_IDEMPOTENCIA_MILLIS);
+    private final transient Sessoes sessoes = new Sessoes(VALIDADE_SESSAO_MILLIS);
+    private final transient Metricas metricas = new Metricas(() -> {
+        Diario d = diario;
+        return d == null ? 0 : d.getBytesGravados();
+    });
+    private final transient Agregados agregados = new Agregados();
+    private transient NumeracaoContas numeracao = new NumeracaoContas();
+    // Numa partição de um BancoParticionado: lados de transferências entre partições lançados
+    // aqui (BancoParticionado.chavePerna) enquanto a transferência pode estar em dúvida
+    private final transient Set<Long> pernas = ConcurrentHashMap.newKeySet();
+    // Épocas dos instantâneos (abrirInstantaneo)
+    private final transient Instantaneo.Epocas epocas = new Instantaneo.Epocas();
+    // Muda a cada conta criada ou removida (sob a trava de estrutura para escrita)
+    private transient long versaoContas;
+    private transient volatile Ordenacao ordenacao;
+    // Busca por nome do titular; montado na primeira busca, depois mantido a cada conta
+    // criada, removida ou renomeada (sob a trava de estrutura para escrita)
+    private transient volatile IndiceTitulares indiceTitulares;
+    private final transient Object montagemIndiceTitulares = new Object();
+    private final transient Path diretorio;
+    private final transient Escrita escrita;
+
+    // Ordem de uma consulta por titular ou saldo, montada na primeira página e reaproveitada
+    // nas seguintes enquanto nenhuma conta for criada ou removida
+    private static final class Ordenacao {
+        final PaginaContas.Ordem ordem;
+        final long versaoContas;
+        final int[] numeros;
+
+        Ordenacao(PaginaContas.Ordem ordem, long versaoContas, int[] numeros) {
+            this.ordem = ordem;
+            this.versaoContas = versaoContas;
+            this.numeros = numeros;
+        }
+    }
+
+    public Banco() {
+        this(Paths.get(""));
+    }
+
+    // Banco com os arquivos de dados no diretório informado
+    Banco(Path diretorio) {
+        this(diretorio, true);
+    }
+
+    // Um banco independente cadastra os usuários padrão e expõe as métricas no JMX. As
+    // partições de um BancoParticionado não fazem nenhum dos dois: não têm usuários próprios
+    // e quem registra as métricas delas é o BancoParticionado.
+    Banco(Path diretorio, boolean independente) {
+        this(diretorio, independente, Escrita.DIRETA);
+    }
+
+    // 'escrita' só muda nos testes de queda (InjecaoFalhas)
+    Banco(Path diretorio, boolean independente, Escrita escrita) {
+        this.diretorio = diretorio.toAbsolutePath();
+        this.escrita = escrita;
+        carregar();
+        if (independente && usuarios.isEmpty()) {
+            cadastrarUsuario("admin", "1234", "Administrador");
+            cadastrarUsuario("gerente", "ger123", "Gerente");
+            cadastrarUsuario("cliente", "cli123", "Cliente");
+        }
+        agendador = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "checkpoint-banco");
+            t.setDaemon(true);
+            return t;
+        });
+        agendador.scheduleWithFixedDelay(this::checkpointPeriodico,
+                INTERVALO_CHECKPOINT_SEGUNDOS, INTERVALO_CHECKPOINT_SEGUNDOS, TimeUnit.SECONDS);
+        agendador.scheduleWithFixedDelay(sessoes::expirar, 1, 1, TimeUnit.MINUTES);
+        if (INTERVALO_METRICAS_SEGUNDOS > 0) {
+            agendador.scheduleWithFixedDelay(this::gravarMetricas,
+                    INTERVALO_METRICAS_SEGUNDOS, INTERVALO_METRICAS_SEGUNDOS, TimeUnit.SECONDS);
+        }
+        if (independente) metricas.registrarJmx();
+    }
+
+    Metricas getMetricas() {
+        return metricas;
+    }
+
+    // Para o checkpoint periódico e fecha o diário; o que não foi para o armazém é reaplicado
+    // do diário na próxima abertura
+    void fechar() {
+        agendador.shutdownNow();
+        try {
+            diario.close();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        } finally {
+            armazem.fechar();
+        }
+    }
+
+    // Substitui o relatório anterior por rename, para quem o lê nunca ver um arquivo pela metade
+    private void gravarMetricas() {
+        Path destino = diretorio.resolve(ARQUIVO_METRICAS);
+        Path temporario = destino.resolveSibling(ARQUIVO_METRICAS + ".tmp");
+        try {
+            Files.writeString(temporario, metricas.relatorio());
+            Files.move(temporario, destino, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            // fica o relatório anterior; o próximo intervalo tenta de novo
+        }
+    }
+
+    // Conta com número escolhido pelo chamador; a numeração passa a começar depois dele
+    public void adicionarConta(Conta conta) {
+        long lsn;
+        long stamp = motor.estrutura.writeLock();
+        try {
+            diario.verificar();
+            incluirConta(conta);
+            lsn = diario.registrarContaCriada(conta.getNumero(), conta.getTitular());
+        } finally {
+            motor.estrutura.unlockWrite(stamp);
+        }
+        aguardarDiario(lsn);
+    }
+
+    // Cria a conta com um número novo da numeração: criações simultâneas (vários clientes do
+    // servidor) nunca recebem o mesmo número, e o de uma conta removida não volta a ser usado
+    public int criarConta(String titular) {
+        int numero = reservarNumeros(1);
+        long lsn;
+        long stamp = motor.estrutura.writeLock();
+        try {
+            diario.verificar();
+            incluirConta(new Conta(numero, titular));
+            lsn = diario.registrarContaCriada(numero, titular);
+        } finally {
+            motor.estrutura.unlockWrite(stamp);
+        }
+        aguardarDiario(lsn);
+        return numero;
+    }
+
+    // Importação em lote: um bloco de números reservado de uma vez, as contas incluídas sob
+    // uma única trava e uma única espera pelo diário. Devolve o número da primeira conta;
+    // as demais seguem em sequência, na ordem de 'titulares'.
+    public int criarContas(List<String> titulares) {
+        if (titulares.isEmpty()) throw new IllegalArgumentException("Nenhum titular informado");
+        int primeiro = reservarNumeros(titulares.size());
+        long lsn = 0;
+        long stamp = motor.estrutura.writeLock();
+        try {
+            diario.verificar();
+            int numero = primeiro;
+            for (String titular : titulares) {
+                incluirConta(new Conta(numero, titular));
+                lsn = diario.registrarContaCriada(numero++, titular);
+            }
+        } finally {
+            motor.estrutura.unlockWrite(stamp);
+        }
+        aguardarDiario(lsn);
+        return primeiro;
+    }
+
+    // Primeiro de 'quantidade' números de conta consecutivos, só deste chamador, sem travas
+    int reservarNumeros(int quantidade) {
+        return (int) numeracao.reservar(quantidade);
+    }
+
+    // Um além do maior número que já teve conta aqui (numeração do BancoParticionado)
+    long numerosUsados() {
+        long stamp = motor.estrutura.readLock();
+        try {
+            return numeracao.usados();
+        } finally {
+            motor.estrutura.unlockRead(stamp);
+        }
+    }
+
+    public boolean removerConta(int numero) {
+        long lsn;
+        long stamp = motor.estrutura.writeLock();
+        try {
+            Conta conta = contaSobTrava(numero);
+            if (conta == null) return false;
+            diario.verificar();
+            motor.travar(numero);
+            try {
+                conta.encerrar();
+            } finally {
+                motor.destravar(numero);
+            }
+            excluirConta(conta);
+            lsn = diario.registrarContaRemovida(numero);
+        } finally {
+            motor.estrutura.unlockWrite(stamp);
+        }
+        aguardarDiario(lsn);
+        return true;
+    }
+
+    public Conta buscarConta(int numero) {
+        Conta conta = buscarEmMemoria(numero);
+        if (conta == null && armazem.contem(numero)) conta = carregarDoArmazem(numero);
+        return conta;
+    }
+
+    private Conta buscarEmMemoria(int numero) {
+        long stamp = motor.estrutura.tryOptimisticRead();
+        Conta conta = indiceContas.buscar(numero);
+        if (!motor.estrutura.validate(stamp)) {
+            stamp = motor.estrutura.readLock();
+            try {
+                conta = indiceContas.buscar(numero);
+            } finally {
+                motor.estrutura.unlockRead(stamp);
+            }
+        }
+        return conta;
+    }
+
+    // Traz a conta do arquivo mapeado para a memória na primeira vez que é pedida
+    private Conta carregarDoArmazem(int numero) {
+        long stamp = motor.estrutura.writeLock();
+        try {
+            return contaSobTrava(numero);
+        } finally {
+            motor.estrutura.unlockWrite(stamp);
+        }
+    }
+
+    // Chamador já tem a trava de estrutura para escrita
+    private Conta contaSobTrava(int numero) {
+        Conta conta = indiceContas.buscar(numero);
+        if (conta != null) return conta;
+        conta = armazem.carregar(numero);
+        if (conta != null) indiceContas.inserir(conta);
+        return conta;
+    }
+
+    // Só para exibição: sem travas e sem carregar a conta, pois é chamado com a faixa
+    // da conta do extrato travada (e a trava de estrutura nunca pode vir depois de uma faixa)
+    private String titularDa(int numero) {
+        Conta conta = indiceContas.buscarSemTrava(numero);
+        return conta != null ? conta.getTitular() : armazem.titular(numero);
+    }
+
+    // Uma conta já existente com o mesmo número é substituída: sai dos totais antes
+    private void incluirConta(Conta conta) {
+        Conta anterior = contaSobTrava(conta.getNumero());
+        if (anterior != null) excluirConta(anterior);
+        armazem.contaIncluida(conta.getNumero());
+        indiceContas.inserir(conta);
+        numeracao.usado(conta.getNumero());
+        agregados.contaIncluida(conta);
+        IndiceTitulares titulares = indiceTitulares;
+        if (titulares != null) titulares.incluir(conta.getNumero(), conta.getTitular());
+        versaoContas++;
+    }
+
+    private void excluirConta(Conta conta) {
+        indiceContas.remover(conta.getNumero());
+        armazem.contaExcluida(conta.getNumero());
+        agregados.contaExcluida(conta);
+        IndiceTitulares titulares = indiceTitulares;
+        if (titulares != null) titulares.remover(conta.getNumero(), conta.getTitular());
+        versaoContas++;
+    }
+
+    public boolean alterarTitular(int numero, String titular) {
+        long lsn;
+        long stamp = motor.estrutura.writeLock();
+        try {
+            Conta conta = contaSobTrava(numero);
+            if (conta == null) return false;
+            diario.verificar();
+            trocarTitular(conta, titular);
+            lsn = diario.registrarTitular(numero, titular);
+        } finally {
+            motor.estrutura.unlockWrite(stamp);
+        }
+        aguardarDiario(lsn);
+        return true;
+    }
+
+    // Chamador tem a trava de estrutura para escrita (ou está reaplicando o diário)
+    private void trocarTitular(Conta conta, String titular) {
+        IndiceTitulares titulares = indiceTitulares;
+        if (titulares != null) titulares.remover(conta.getNumero(), conta.getTitular());
+        conta.setTitular(titular);
+        if (titulares != null) titulares.incluir(conta.getNumero(), titular);
+        versaoContas++;
+    }
+
+    // Contas cujo titular tem uma palavra começando por 'prefixo', sem diferenciar
+    // maiúsculas nem acentos. A primeira busca monta o índice com todas as contas (lendo os
+    // nomes do armazém, sem carregar as contas); as seguintes só consultam o índice.
+    public List<PaginaContas.Linha> buscarPorTitular(String prefixo, int limite) {
+        IndiceTitulares titulares = indiceTitulares != null ? indiceTitulares : montarIndiceTitulares();
+        List<PaginaContas.Linha> linhas = new ArrayList<>();
+        long stamp = motor.estrutura.readLock();
+        try {
+            for (int numero : titulares.buscar(prefixo, limite)) {
+                Conta conta = indiceContas.buscar(numero);
+                if (conta != null) {
+                    linhas.add(new PaginaContas.Linha(numero, conta.getTitular(), conta.getSaldoCentavos()));
+                } else {
+                    String titular = armazem.titular(numero);
+                    if (titular != null) linhas.add(new PaginaContas.Linha(numero, titular, armazem.saldo(numero)));
+                }
+            }
+        } finally {
+            motor.estrutura.unlockRead(stamp);
+        }
+        return linhas;
+    }
+
+    void prepararBuscaPorTitular() {
+        if (indiceTitulares == null) montarIndiceTitulares();
+    }
+
+    // Com a trava de estrutura para leitura, nenhuma conta é criada, removida ou renomeada
+    // durante a montagem; depósitos e saques continuam, pois não mudam nomes
+    private IndiceTitulares montarIndiceTitulares() {
+        synchronized (montagemIndiceTitulares) {
+            if (indiceTitulares != null) return indiceTitulares;
+            IndiceTitulares titulares = new IndiceTitulares();
+            long stamp = motor.estrutura.readLock();
+            try {
+                armazem.percorrerEmOrdem(0, numero -> indiceContas.buscar(numero) != null, (numero, arquivo, posicao) -> {
+                    titulares.incluir(numero, arquivo != null ? arquivo.titular(posicao) : indiceContas.buscar(numero).getTitular());
+                    return true;
+                });
+                indiceTitulares = titulares;
+            } finally {
+                motor.estrutura.unlockRead(stamp);
+            }
+            return titulares;
+        }
+    }
+
+    public int quantidadeContas() {
+        long stamp = motor.estrutura.readLock();
+        try {
+            return quantidadeContasSobTrava();
+        } finally {
+            motor.estrutura.unlockRead(stamp);
+        }
+    }
+
+    private int quantidadeContasSobTrava() {
+        return indiceContas.tamanho() + armazem.quantidade();
+    }
+
+    // Cópia da lista de contas em ordem de número, segura para percorrer enquanto outras
+    // threads criam ou removem contas. As contas ainda só no armazém são carregadas.
+    // Saldos e históricos delas são os atuais, que seguem mudando; para relatórios que
+    // precisam de uma imagem consistente, use abrirInstantaneo.
+    public List<Conta> listarContas() {
+        long stamp = motor.estrutura.writeLock();
+        try {
+            armazem.carregarTodas(indiceContas::inserir);
+            Conta[] contas = indiceContas.listar();
+            Arrays.sort(contas, Comparator.comparingInt(Conta::getNumero));
+            return new ArrayList<>(Arrays.asList(contas));
+        } finally {
+            motor.estrutura.unlockWrite(stamp);
+        }
+    }
+
+    // Página da consulta de contas, sem carregar para a memória as que estão só no armazém.
+    // Em ordem de número o custo é o da página: o armazém pula segmentos inteiros pela
+    // contagem de contas de cada um. Por titular ou saldo, a primeira página (inicio 0)
+    // monta a ordem de todas as contas e as seguintes a reaproveitam; os saldos exibidos são
+    // sempre os atuais, mas a posição só é refeita ao voltar à primeira página.
+    public PaginaContas listarContas(int inicio, int quantidade, PaginaContas.Ordem ordem) {
+        inicio = Math.max(0, inicio);
+        quantidade = Math.max(0, quantidade);
+        List<PaginaContas.Linha> linhas = new ArrayList<>(Math.min(quantidade, 1024));
+        long stamp = motor.estrutura.readLock();
+        try {
+            int total = quantidadeContasSobTrava();
+            if (ordem == PaginaContas.Ordem.NUMERO) {
+                int limite = quantidade;
+                if (limite > 0) {
+                    armazem.percorrerEmOrdem(inicio, numero -> indiceContas.buscar(numero) != null,
+                            (numero, arquivo, posicao) -> {
+                                linhas.add(linha(numero, arquivo, posicao));
+                                return linhas.size() < limite;
+                            });
+                }
+            } else {
+                Ordenacao atual = ordenacao;
+                if (atual == null || atual.ordem != ordem || atual.versaoContas != versaoContas || inicio == 0) {
+                    atual = ordenar(ordem);
+                    ordenacao = atual;
+                }
+                int fim = (int) Math.min(atual.numeros.length, (long) inicio + quantidade);
+                for (int i = inicio; i < fim; i++) {
+                    int numero = atual.numeros[i];
+                    Conta conta = indiceContas.buscar(numero);
+                    String titular = conta != null ? conta.getTitular() : armazem.titular(numero);
+                    if (titular == null) continue;
+                    linhas.add(new PaginaContas.Linha(numero, titular,
+                            conta != null ? conta.getSaldoCentavos() : armazem.saldo(numero)));
+                }
+            }
+            return new PaginaContas(ordem, inicio, total, linhas);
+        } finally {
+            motor.estrutura.unlockRead(stamp);
+        }
+    }
+
+    private PaginaContas.Linha linha(int numero, ArmazemContas arquivo, int posicao) {
+        if (arquivo != null) return new PaginaContas.Linha(numero, arquivo.titular(posicao), arquivo.saldo(posicao));
+        Conta conta = indiceContas.buscar(numero);
+        return new PaginaContas.Linha(numero, conta.getTitular(), conta.getSaldoCentavos());
+    }
+
+    // Chamador tem a trava de estrutura
+    private Ordenacao ordenar(PaginaContas.Ordem ordem) {
+        List<PaginaContas.Linha> todas = new ArrayList<>(quantidadeContasSobTrava());
+        armazem.percorrerEmOrdem(0, numero -> indiceContas.buscar(numero) != null, (numero, arquivo, posicao) -> {
+            todas.add(linha(numero, arquivo, posicao));
+            return true;
+        });
+        Comparator<PaginaContas.Linha> comparador = ordem == PaginaContas.Ordem.TITULAR
+                ? Comparator.comparing((PaginaContas.Linha l) -> l.titular, String.CASE_INSENSITIVE_ORDER)
+                : Comparator.comparingLong((PaginaContas.Linha l) -> l.saldoCentavos).reversed();
+        todas.sort(comparador.thenComparingInt(l -> l.numero));
+        int[] numeros = new int[todas.size()];
+        for (int i = 0; i < numeros.length; i++) {
+            numeros[i] = todas.get(i).numero;
+        }
+        return new Ordenacao(ordem, versaoContas, numeros);
+    }
+
+    // Soma dos saldos de todas as contas, mantida a cada operação
+    public long saldoTotal() {
+        return agregados.saldoTotal();
+    }
+
+    // Depósitos, saques e transferências do dia (fuso do sistema), mantidos a cada operação
+    Agregados.Movimento movimentoDoDia(LocalDate dia) {
+        return agregados.movimento(dia);
+    }
+
+    public boolean depositar(int numero, long centavos) {
+        long inicio = System.nanoTime();
+        long lsn = lancarDeposito(numero, centavos);
+        if (lsn >= 0) aguardarDiario(lsn);
+        metricas.deposito.registrar(inicio, lsn >= 0);
+        return lsn >= 0;
+    }
+
+    public boolean sacar(int numero, long centavos) {
+        long inicio = System.nanoTime();
+        long lsn = lancarSaque(numero, centavos);
+        if (lsn >= 0) aguardarDiario(lsn);
+        metricas.saque.registrar(inicio, lsn >= 0);
+        return lsn >= 0;
+    }
+
+    public boolean transferir(int origem, int destino, long centavos) {
+        long inicio = System.nanoTime();
+        long lsn = lancarTransferencia(origem, destino, centavos);
+        if (lsn >= 0) aguardarDiario(lsn);
+        metricas.transferencia.registrar(inicio, lsn >= 0);
+        return lsn >= 0;
+    }
+
+    // Variantes com chave de idempotência (opcional, pode ser null): repetir a requisição com a
+    // mesma chave devolve o resultado da primeira execução sem movimentar a conta de novo.
+    // As chaves ficam só em memória; não sobrevivem a um reinício.
+    public boolean depositar(int numero, long centavos, String chaveIdempotencia) {
+        if (chaveIdempotencia == null) return depositar(numero, centavos);
+        return idempotencia.executar(chaveIdempotencia, "D:" + numero + ":" + centavos,
+                () -> depositar(numero, centavos));
+    }
+
+    public boolean sacar(int numero, long centavos, String chaveIdempotencia) {
+        if (chaveIdempotencia == null) return sacar(numero, centavos);
+        return idempotencia.executar(chaveIdempotencia, "S:" + numero + ":" + centavos,
+                () -> sacar(numero, centavos));
+    }
+
+    public boolean transferir(int origem, int destino, long centavos, String chaveIdempotencia) {
+        if (chaveIdempotencia == null) return transferir(origem, destino, centavos);
+        return idempotencia.executar(chaveIdempotencia, "T:" + origem + ":" + destino + ":" + centavos,
+                () -> transferir(origem, destino, centavos));
+    }
+
+    // As operações lancar* aplicam o lançamento e o registram no diário sem esperar a gravação.
+    // Devolvem o LSN a aguardar, ou -1 se a operação foi recusada. Depois de uma falha do
+    // diário toda alteração é recusada com UncheckedIOException antes de tocar nas contas, e o
+    // checkpoint também: o que ficou em memória sem chegar ao diário nunca é confirmado.
+    long lancarDeposito(int numero, long centavos) {
+        Conta conta = buscarConta(numero);
+        if (conta == null || centavos <= 0) return -1;
+        motor.travar(numero);
+        try {
+            if (conta.isEncerrada()) return -1;
+            diario.verificar();
+            versionar(conta);
+            long instante = System.currentTimeMillis();
+            conta.depositar(centavos, instante);
+            agregados.depositado(centavos, instante);
+            return diario.registrarDeposito(numero, centavos, instante);
+        } finally {
+            motor.destravar(numero);
+        }
+    }
+
+    long lancarSaque(int numero, long centavos) {
+        Conta conta = buscarConta(numero);
+        if (conta == null) return -1;
+        motor.travar(numero);
+        try {
+            if (conta.isEncerrada()) return -1;
+            diario.verificar();
+            versionar(conta);
+            long instante = System.currentTimeMillis();
+            if (!conta.sacar(centavos, instante)) return -1;
+            agregados.sacado(centavos, instante);
+            return diario.registrarSaque(numero, centavos, instante);
+        } finally {
+            motor.destravar(numero);
+        }
+    }
+
+    long lancarTransferencia(int origem, int destino, long centavos) {
+        Conta cOrigem = buscarConta(origem);
+        Conta cDestino = buscarConta(destino);
+        if (cOrigem == null || cDestino == null || origem == destino) return -1;
+        motor.travarPar(origem, destino);
+        try {
+            if (cOrigem.isEncerrada() || cDestino.isEncerrada()) return -1;
+            diario.verificar();
+            versionar(cOrigem, cDestino);
+            long instante = System.currentTimeMillis();
+            if (!cOrigem.transferir(cDestino, centavos, instante)) return -1;
+            agregados.transferido(centavos, instante);
+            return diario.registrarTransferencia(origem, destino, centavos, instante);
+        } finally {
+            motor.destravarPar(origem, destino);
+        }
+    }
+
+    // Um lado de uma transferência entre partições (BancoParticionado.DEBITO, CREDITO ou
+    // ESTORNO) na conta 'numero'; 'contraparte' é a conta da outra partição. Como os outros
+    // lancar*, devolve o LSN a aguardar ou -1 se foi recusado (saldo, conta inexistente ou
+    // encerrada). O lado fica lembrado para a recuperação da transferência.
+    long lancarPerna(byte perna, long transferencia, int numero, int contraparte, long centavos) {
+        Conta conta = buscarConta(numero);
+        if (conta == null || centavos <= 0) return -1;
+        motor.travar(numero);
+        try {
+            if (conta.isEncerrada()) return -1;
+            diario.verificar();
+            versionar(conta);
+            long instante = System.currentTimeMillis();
+            if (!aplicarPerna(perna, transferencia, conta, contraparte, centavos, instante)) return -1;
+            return diario.registrarPerna(perna, transferencia, numero, contraparte, centavos, instante);
+        } finally {
+            motor.destravar(numero);
+        }
+    }
+
+    // Chamador tem a faixa da conta travada, antes de alterá-la
+    private void versionar(Conta conta) {
+        conta.versionar(epocas.atual(), epocas.maisAntiga());
+    }
+
+    // As duas contas com a mesma leitura da época: um instantâneo aberto entre elas veria
+    // o débito sem o crédito
+    private void versionar(Conta origem, Conta destino) {
+        long atual = epocas.atual();
+        long maisAntiga = epocas.maisAntiga();
+        origem.versionar(atual, maisAntiga);
+        destino.versionar(atual, maisAntiga);
+    }
+
+    private boolean aplicarPerna(byte perna, long transferencia, Conta conta, int contraparte, long centavos,
+                                 long instante) {
+        switch (perna) {
+            case BancoParticionado.DEBITO:
+                if (!conta.enviarTransferencia(contraparte, centavos, instante)) return false;
+                agregados.transferenciaEnviada(centavos, instante);
+                break;
+            case BancoParticionado.CREDITO:
+                conta.receberTransferencia(contraparte, centavos, instante);
+                agregados.transferenciaRecebida(centavos);
+                break;
+            default:
+                conta.depositar(centavos, instante);
+                agregados.depositado(centavos, instante);
+                break;
+        }
+        pernas.add(BancoParticionado.chavePerna(transferencia, perna));
+        return true;
+    }
+
+    boolean pernaLancada(long transferencia, byte perna) {
+        return pernas.contains(BancoParticionado.chavePerna(transferencia, perna));
+    }
+
+    // Transferência concluída com o registro já em disco: não precisa mais ser lembrada
+    void esquecerPerna(long transferencia, byte perna) {
+        pernas.remove(BancoParticionado.chavePerna(transferencia, perna));
+    }
+
+    // Depois da recuperação do BancoParticionado nenhuma transferência está em dúvida
+    void esquecerPernas() {
+        pernas.clear();
+    }
+
+    // Processa um arquivo de lançamentos (depósitos, saques e transferências) em lote.
+    // Os lançamentos são aplicados na ordem do arquivo e o diário é gravado em disco
+    // uma única vez, ao final; linhas inválidas ou recusadas vão para o relatório.
+    public ProcessadorLote.Resultado processarLote(Reader entrada, ProcessadorLote.Formato formato) throws IOException {
+        return new ProcessadorLote(this, formato).processar(entrada);
+    }
+
+    // Lançamentos de uma conta que passam na consulta, ou null se a conta não existe
+    public ConsultaLancamentos.Resultado consultarLancamentos(int numero, ConsultaLancamentos consulta) {
+        Conta conta = buscarConta(numero);
+        if (conta == null) return null;
+        motor.travar(numero);
+        try {
+            return consulta.consultar(numero, conta.getLancamentos());
+        } finally {
+            motor.destravar(numero);
+        }
+    }
+
+    // A mesma consulta em todas as contas, dividida entre as threads do pool comum (fork-join),
+    // sobre um instantâneo: o resultado é o do banco num único momento, sem parar as operações.
+    // Ordem: por conta e, nela, por instante.
+    public ConsultaLancamentos.Resultado consultarLancamentos(ConsultaLancamentos consulta) {
+        return consultarLancamentos(consulta, ForkJoinPool.commonPool());
+    }
+
+    ConsultaLancamentos.Resultado consultarLancamentos(ConsultaLancamentos consulta, ForkJoinPool pool) {
+        try (Instantaneo instantaneo = abrirInstantaneo()) {
+            return instantaneo.consultar(consulta, pool);
+        }
+    }
+
+    // Imagem de saldos e históricos de todas as contas neste momento, para ler (inclusive em
+    // paralelo) enquanto as operações continuam. Só a montagem da lista de contas usa a trava
+    // de estrutura para leitura; depósitos, saques e transferências não esperam por ela.
+    Instantaneo abrirInstantaneo() {
+        long stamp = motor.estrutura.readLock();
+        try {
+            int quantidade = quantidadeContasSobTrava();
+            int[] numeros = new int[quantidade];
+            Conta[] contas = new Conta[quantidade];
+            ArmazemContas[] arquivos = new ArmazemContas[quantidade];
+            int[] posicoes = new int[quantidade];
+            int[] k = {0};
+            armazem.percorrerEmOrdem(0, numero -> indiceContas.buscar(numero) != null, (numero, arquivo, posicao) -> {
+                numeros[k[0]] = numero;
+                if (arquivo == null) contas[k[0]] = indiceContas.buscar(numero);
+                arquivos[k[0]] = arquivo;
+                posicoes[k[0]++] = posicao;
+                return k[0] < quantidade;
+            });
+            // Sob a trava nenhuma conta entra, sai ou é trazida do armazém: a lista vale para a época
+            return new Instantaneo(epocas, epocas.abrir(), motor, numeros, contas, arquivos, posicoes);
+        } finally {
+            motor.estrutura.unlockRead(stamp);
+        }
+    }
+
+    // Extrato gerado com a conta travada, para não concorrer com operações em andamento
+    public String getExtrato(int numero) {
+        long inicio = System.nanoTime();
+        Conta conta = buscarConta(numero);
+        if (conta == null) {
+            metricas.extrato.registrar(inicio, false);
+            return null;
+        }
+        motor.travar(numero);
+        try {
+            return conta.getExtrato(this::titularDa);
+        } finally {
+            motor.destravar(numero);
+            metricas.extrato.registrar(inicio, true);
+        }
+    }
+
+    // Extrato paginado: as linhas são formatadas sob demanda, uma página por vez.
+    // 'desde' é inclusivo e 'ate' exclusivo (em milissegundos); use Long.MIN_VALUE/MAX_VALUE para não limitar.
+    public CursorExtrato abrirExtrato(int numero, long desde, long ate) {
+        Conta conta = buscarConta(numero);
+        return conta == null ? null : new CursorExtrato(conta, motor, this::titularDa, desde, ate);
+    }
+
+    public boolean escreverExtrato(int numero, long desde, long ate, Writer saida) throws IOException {
+        long inicio = System.nanoTime();
+        CursorExtrato cursor = abrirExtrato(numero, desde, ate);
+        if (cursor != null) cursor.escrever(saida);
+        metricas.extrato.registrar(inicio, cursor != null);
+        return cursor != null;
+    }
+
+    public Usuario buscarUsuario(String login) {
+        return login == null ? null : indiceUsuarios.get(login);
+    }
+
+    private void incluirUsuario(Usuario usuario) {
+        usuarios.add(usuario);
+        indiceUsuarios.put(usuario.getLogin(), usuario);
+    }
+
+    // Custa um hash PBKDF2 completo, exista o login ou não. Operações repetidas de um
+    // operador já autenticado devem usar abrirSessao e usuarioDaSessao.
+    public boolean autenticarUsuario(String login, String senha) {
+        long inicio = System.nanoTime();
+        Usuario usuario = buscarUsuario(login);
+        if (usuario == null) {
+            Senhas.verificarFicticia(senha);
+            metricas.autenticacao.registrar(inicio, false);
+            return false;
+        }
+        String codificada = usuario.getSenhaCodificada();
+        boolean valida = Senhas.verificar(senha, codificada);
+        if (valida && Senhas.emTextoPuro(codificada)) gravarSenha(login, Senhas.codificar(senha), codificada);
+        metricas.autenticacao.registrar(inicio, valida);
+        return valida;
+    }
+
+    // Autentica e devolve o token da sessão, ou null se login ou senha não conferem
+    String abrirSessao(String login, String senha) {
+        return autenticarUsuario(login, senha) ? sessoes.abrir(login) : null;
+    }
+
+    // Usuário dono da sessão, sem recalcular o hash; null se o token não vale mais
+    Usuario usuarioDaSessao(String token) {
+        String login = sessoes.validar(token);
+        return login == null ? null : buscarUsuario(login);
+    }
+
+    void encerrarSessao(String token) {
+        sessoes.encerrar(token);
+    }
+
+    public boolean cadastrarUsuario(String login, String senha, String nome) {
+        if (buscarUsuario(login) != null) return false;
+        // O hash é calculado fora da trava, que não pode ficar presa durante ele
+        String codificada = Senhas.codificar(senha);
+        long lsn;
+        long stamp = motor.estrutura.writeLock();
+        try {
+            diario.verificar();
+            if (buscarUsuario(login) != null) {
+                return false;
+            }
+            incluirUsuario(new Usuario(login, codificada, nome));
+            lsn = diario.registrarUsuario(login, codificada, nome);
+        } finally {
+            motor.estrutura.unlockWrite(stamp);
+        }
+        aguardarDiario(lsn);
+        return true;
+    }
+
+    public void alterarSenha(String login, String novaSenha) {
+        if (gravarSenha(login, Senhas.codificar(novaSenha), null)) sessoes.encerrarDoUsuario(login);
+    }
+
+    // Troca o hash da senha; com 'esperada' != null, só se a senha atual ainda for ela
+    // (a atualização de texto puro no login não desfaz uma troca feita no meio tempo)
+    private boolean gravarSenha(String login, String codificada, String esperada) {
+        long lsn;
+        long stamp = motor.estrutura.writeLock();
+        try {
+            diario.verificar();
+            Usuario usuario = buscarUsuario(login);
+            if (usuario == null) return false;
+            if (esperada != null && !esperada.equals(usuario.getSenhaCodificada())) return false;
+            usuario.setSenhaCodificada(codificada);
+            lsn = diario.registrarSenha(login, codificada);
+        } finally {
+            motor.estrutura.unlockWrite(stamp);
+        }
+        aguardarDiario(lsn);
+        return true;
+    }
+
+    // Lança UncheckedIOException se o diário não conseguir gravar a operação em disco
+    void aguardarDiario(long lsn) {
+        diario.aguardar(lsn);
+    }
+
+    // Grava uma imagem completa dos dados (checkpoint) e descarta o diário já coberto por ela
+    public void salvar() {
+        try {
+            checkpoint();
+        } catch (IOException e) {
+            SwingUtilities.invokeLater(() ->
+                    JOptionPane.showMessageDialog(null, "Erro ao salvar os dados: " + e.getMessage()));
+        }
+    }
+
+    private void checkpointPeriodico() {
+        if (diario.getBytesDesdeRotacao() < LIMITE_DIARIO) return;
+        try {
+            checkpoint();
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+    }
+
+    // Regrava só os segmentos do armazém com contas alteradas, criadas ou removidas desde o
+    // último checkpoint; os demais continuam valendo como estão. Com o banco travado só o
+    // diário é rotacionado e o retrato das contas é tirado; a gravação dos segmentos e do
+    // arquivo morto corre com as operações liberadas. A troca do manifesto confirma o
+    // checkpoint, e só depois dela o diário coberto pelo checkpoint anterior é descartado.
+    void checkpoint() throws IOException {
+        synchronized (checkpointEmAndamento) {
+            armazem.conferirImagem();
+            long inicio = System.nanoTime();
+            ArmazemSegmentado.Gravacao gravacao;
+            long inicioDiario;
+            long stamp = motor.travarTudo();
+            try {
+                long lsn = diario.rotacionar();
+                inicioDiario = diario.segmentoAtual();
+                // O diário anterior vai ser descartado: os lados ainda lembrados passam para o novo
+                for (long perna : pernas) diario.registrarPernaPendente(perna);
+                Conta[] emMemoria = indiceContas.listar();
+                Arrays.sort(emMemoria, Comparator.comparingInt(Conta::getNumero));
+                gravacao = armazem.congelarAlterados(emMemoria, usuarios, lsn, agregados.retrato(), numeracao.usados());
+            } finally {
+                motor.destravarTudo(stamp);
+            }
+
+            try {
+                armazem.gravarCongelados(gravacao);
+                armazem.confirmar(gravacao);
+            } catch (IOException | RuntimeException e) {
+                stamp = motor.estrutura.writeLock();
+                try {
+                    armazem.desfazer(gravacao);
+                } finally {
+                    motor.estrutura.unlockWrite(stamp);
+                }
+                throw e;
+            }
+            stamp = motor.estrutura.writeLock();
+            try {
+                armazem.instalar(gravacao, indiceContas.listar());
+            } finally {
+                motor.estrutura.unlockWrite(stamp);
+            }
+            liberarHistoricoGravado(gravacao);
+            diario.descartarSegmentosAntes(inicioDiarioAnterior);
+            inicioDiarioAnterior = inicioDiario;
+            armazem.descartarArquivosAntigos();
+            metricas.checkpointGravado(inicio, gravacao.bytesGravados());
+        }
+    }
+
+    // As contas em memória gravadas no checkpoint deixam de guardar no heap o histórico que
+    // agora está nos segmentos e no arquivo morto; uma faixa travada de cada vez
+    private void liberarHistoricoGravado(ArmazemSegmentado.Gravacao gravacao) {
+        for (Conta[] contas : gravacao.contasGravadas()) {
+            for (Conta conta : contas) {
+                Lancamentos gravado = armazem.lancamentosGravados(conta.getNumero());
+                if (gravado == null) continue;
+                motor.travar(conta.getNumero());
+                try {
+                    conta.trocarLancamentos(gravado);
+                } finally {
+                    motor.destravar(conta.getNumero());
+                }
+            }
+        }
+    }
+
+    // Abre o manifesto do armazém sem ler as contas: além do diário a reaplicar, a carga só
+    // mapeia os arquivos, cuja soma de verificação é conferida no primeiro acesso ou em
+    // segundo plano (ArmazemSegmentado). Dados existentes mas ilegíveis (nem a imagem anterior
+    // serve) impedem a abertura: começar vazio faria o primeiro checkpoint gravar por cima deles.
+    public void carregar() {
+        long inicio = System.nanoTime();
+        try {
+            abrirDados();
+        } catch (UncheckedIOException e) {
+            // Segmento corrompido descoberto já na carga (pela reaplicação do diário): o
+            // arquivo foi tirado do caminho e a nova abertura volta ao checkpoint anterior
+            if (armazem == null || !armazem.corrompida()) throw e;
+            armazem.fechar();
+            abrirDados();
+        }
+        metricas.cargaConcluida(inicio);
+    }
+
+    private void abrirDados() {
+        CodecBanco.Imagem imagem = null;
+        ArmazemSegmentado aberto = null;
+        boolean importado = false;
+        Path arquivoV1 = diretorio.resolve(ARQUIVO_V1);
+        Path legado = diretorio.resolve(ARQUIVO_LEGADO);
+        try {
+            List<Long> geracoes;
+            if (ArmazemSegmentado.existe(diretorio)) {
+                aberto = ArmazemSegmentado.abrir(diretorio, escrita);
+                imagem = new CodecBanco.Imagem(new ArrayList<>(), aberto.getUsuarios(), aberto.getLsn());
+            } else if (!(geracoes = ArmazemContas.geracoes(diretorio)).isEmpty()) {
+                ArmazemContas anterior = ArmazemContas.abrir(ArmazemContas.caminho(diretorio, geracoes.get(0)));
+                List<Conta> contas = new ArrayList<>(anterior.quantidade());
+                for (int p = 0; p < anterior.quantidade(); p++) {
+                    contas.add(anterior.materializar(p));
+                }
+                imagem = new CodecBanco.Imagem(contas, new ArrayList<>(anterior.getUsuarios()), anterior.getLsn());
+                importado = true;
+            } else if (Files.exists(arquivoV1)) {
+                imagem = CodecBanco.ler(arquivoV1);
+                importado = true;
+            } else if (Files.exists(legado)) {
+                imagem = CodecBanco.importarSerializado(legado);
+                importado = true;
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException("Erro ao ler os dados do banco em " + diretorio, e);
+        }
+        if (imagem == null) {
+            imagem = new CodecBanco.Imagem(new ArrayList<>(), new ArrayList<>(), 0);
+        }
+        armazem = aberto != null ? aberto : new ArmazemSegmentado(diretorio, escrita);
+        armazem.avisar(metricas::falhaDeDados);
+        usuarios = imagem.usuarios;
+        reindexar(imagem.contas);
+        if (aberto != null) armazem.descartarArquivosAntigos();
+        // Manifestos anteriores aos agregados: eles são somados uma vez a partir das contas
+        // e gravados no checkpoint logo abaixo
+        boolean recalculado = aberto == null || aberto.getAgregados() == null;
+        if (recalculado) {
+            agregados.zerar();
+            armazem.paraCadaNoArquivo(agregados::incluirHistorico);
+            imagem.contas.forEach(agregados::incluirHistorico);
+        } else {
+            agregados.restaurar(aberto.getAgregados());
+        }
+        // A numeração continua de onde o manifesto parou; os anteriores à versão 5 não a têm e
+        // ela parte da maior conta existente. A reaplicação do diário avança a partir daí.
+        numeracao = new NumeracaoContas();
+        pernas.clear();
+        inicioDiarioAnterior = 0;
+        numeracao.iniciar(Math.max(aberto != null ? aberto.getProximoNumero() : 0, armazem.maiorNumero() + 1L));
+
+        try {
+            if (diario != null) diario.close();
+            diario = new Diario(diretorio.resolve(ARQUIVO_DIARIO), escrita);
+            diario.abrir(imagem.lsn, this::reaplicar);
+            if (importado || recalculado && armazem.quantidade() > 0) checkpoint();
+        } catch (IOException e) {
+            throw new UncheckedIOException("Erro ao abrir o diário de operações", e);
+        }
+    }
+
+    // Reconstrói os índices, já dimensionados para evitar redimensionamentos.
+    // 'contas' são as que vieram para a memória (importação de formatos antigos).
+    private void reindexar(List<Conta> contas) {
+        indiceContas = new IndiceContas(contas.size());
+        indiceTitulares = null;
+        for (Conta conta : contas) {
+            armazem.contaIncluida(conta.getNumero());
+            indiceContas.inserir(conta);
+        }
+        indiceUsuarios = new ConcurrentHashMap<>(Math.max(16, usuarios.size()));
+        for (Usuario usuario : usuarios) {
+            indiceUsuarios.put(usuario.getLogin(), usuario);
+        }
+    }
+
+    // Reaplica uma operação do diário sobre o estado carregado do último checkpoint
+    private void reaplicar(long lsn, byte tipo, DataInputStream dados) throws IOException {
+        switch (tipo) {
+            case Diario.CONTA_CRIADA: {
+                int numero = dados.readInt();
+                incluirConta(new Conta(numero, dados.readUTF()));
+                break;
+            }
+            case Diario.CONTA_REMOVIDA: {
+                Conta conta = buscarConta(dados.readInt());
+                if (conta != null) excluirConta(conta);
+                break;
+            }
+            case Diario.DEPOSITO: {
+                Conta conta = buscarConta(dados.readInt());
+                long centavos = dados.readLong();
+                long instante = dados.readLong();
+                if (conta != null && centavos > 0) {
+                    conta.depositar(centavos, instante);
+                    agregados.depositado(centavos, instante);
+                }
+                break;
+            }
+            case Diario.SAQUE: {
+                Conta conta = buscarConta(dados.readInt());
+                long centavos = dados.readLong();
+                long instante = dados.readLong();
+                if (conta != null && conta.sacar(centavos, instante)) agregados.sacado(centavos, instante);
+                break;
+            }
+            case Diario.TRANSFERENCIA: {
+                Conta origem = buscarConta(dados.readInt());
+                Conta destino = buscarConta(dados.readInt());
+                long centavos = dados.readLong();
+                long instante = dados.readLong();
+                if (origem != null && destino != null && origem.transferir(destino, centavos, instante)) {
+                    agregados.transferido(centavos, instante);
+                }
+                break;
+            }
+            case Diario.PERNA_TRANSFERENCIA: {
+                byte perna = dados.readByte();
+                long transferencia = dados.readLong();
+                Conta conta = buscarConta(dados.readInt());
+                int contraparte = dados.readInt();
+                long centavos = dados.readLong();
+                long instante = dados.readLong();
+                if (conta != null) aplicarPerna(perna, transferencia, conta, contraparte, centavos, instante);
+                break;
+            }
+            case Diario.PERNA_PENDENTE:
+                pernas.add(dados.readLong());
+                break;
+            case Diario.USUARIO_CADASTRADO:
+                incluirUsuario(new Usuario(dados.readUTF(), dados.readUTF(), dados.readUTF()));
+                break;
+            case Diario.TITULAR_ALTERADO: {
+                Conta conta = buscarConta(dados.readInt());
+                String titular = dados.readUTF();
+                if (conta != null) trocarTitular(conta, titular);
+                break;
+            }
+            case Diario.SENHA_ALTERADA: {
+                Usuario usuario = buscarUsuario(dados.readUTF());
+                String novaSenha = dados.readUTF();
+                if (usuario != null) usuario.setSenhaCodificada(novaSenha);
+                break;
+            }
+            default:
+                throw new IOException("Registro desconhecido no diário: " + tipo);
+        }
+    }
+}
@@ -0,0 +1,372 @@
+package br.com.agencia;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.LongSupplier;
+
+// Banco dividido em partições pelo número da conta (número % partições). Cada partição é um
+// Banco completo no subdiretório particao.<i>, com armazém, diário e travas próprios, e tem
+// uma única thread que aplica as movimentações dela; quem chama só espera a gravação do diário
+// da partição. Partições não disputam nada entre si, então a vazão cresce com elas enquanto
+// houver núcleos e discos.
+//
+// Transferência na mesma partição é a do Banco. Entre partições ela é feita em duas fases,
+// com um registro de recuperação próprio (dados_banco.transferencias.wal):
+//   1. INICIADA no registro, em disco antes de qualquer movimentação;
+//   2. DEBITO na origem, em disco antes do crédito (sem saldo: a transferência termina aqui);
+//   3. CREDITO no destino, ou ESTORNO na origem se a conta de destino deixou de existir;
+//   4. CONCLUIDA no registro; as partições esquecem a transferência na próxima compactação
+//      do registro, quando a conclusão certamente está em disco.
+// Cada lado vai para o diário da partição com o identificador da transferência. Na abertura,
+// uma transferência INICIADA sem CONCLUIDA com DEBITO e sem CREDITO nem ESTORNO recebe o
+// crédito; nos demais casos não há o que refazer.
+//
+// Se um lado falhar (o diário da partição não gravou), a transferência fica em andamento e
+// continua no registro como INICIADA: a próxima abertura a completa ou a dá por não feita.
+//
+// As métricas de cada partição vão para o JMX com a chave particao=<i>; as do registro de
+// transferências (transferências entre partições, bytes gravados, compactações que falharam)
+// com particao=transferencias.
+//
+// O saldo total soma as partições sem pará-las: uma transferência entre partições em
+// andamento aparece só com o débito.
+class BancoParticionado {
+    static final byte DEBITO = 0;
+    static final byte CREDITO = 1;
+    static final byte ESTORNO = 2;
+
+    private static final String ARQUIVO_PARTICOES = "dados_banco.particoes";
+    private static final String ARQUIVO_TRANSFERENCIAS = "dados_banco.transferencias.wal";
+    private static final String PREFIXO_PARTICAO = "particao.";
+    // Tamanho do registro de transferências a partir do qual ele é compactado
+    private static final long LIMITE_REGISTRO = 4L * 1024 * 1024;
+
+    // Transferência entre partições ainda não concluída
+    private static final class Transferencia {
+        final long id;
+        final int origem;
+        final int destino;
+        final long centavos;
+
+        Transferencia(long id, int origem, int destino, long centavos) {
+            this.id = id;
+            this.origem = origem;
+            this.destino = destino;
+            this.centavos = centavos;
+        }
+    }
+
+    private final Banco[] particoes;
+    private final ExecutorService[] trabalhadores;
+    private final NumeracaoContas numeracao = new NumeracaoContas();
+    private final Diario registro;
+    private final AtomicLong proximaTransferencia = new AtomicLong(1);
+    private final ConcurrentHashMap<Long, Transferencia> emAndamento = new ConcurrentHashMap<>();
+    // Concluídas com débito, cujos lados as partições ainda lembram
+    private final ConcurrentLinkedQueue<Transferencia> aEsquecer = new ConcurrentLinkedQueue<>();
+    // Leitura: registrar início ou fim de uma transferência; escrita: compactar o registro
+    private final ReentrantReadWriteLock compactacao = new ReentrantReadWriteLock();
+    private final AtomicLong concluidas = new AtomicLong();
+    // Transferências entre partições e o registro delas; cada partição tem as suas
+    private final Metricas metricas;
+
+    // A quantidade de partições fica gravada no diretório e não pode mudar depois
+    BancoParticionado(Path diretorio, int quantidade) {
+        if (quantidade < 1) throw new IllegalArgumentException("Quantidade de partições inválida: " + quantidade);
+        try {
+            Files.createDirectories(diretorio);
+            Path arquivo = diretorio.resolve(ARQUIVO_PARTICOES);
+            if (Files.exists(arquivo)) {
+                int gravada = Integer.parseInt(Files.readString(arquivo, StandardCharsets.UTF_8).trim());
+                if (gravada != quantidade) {
+                    throw new IllegalStateException("Banco criado com " + gravada + " partições, não " + quantidade);
+                }
+            } else {
+                Files.writeString(arquivo, Integer.toString(quantidade), StandardCharsets.UTF_8);
+            }
+            for (int i = 0; i < quantidade; i++) Files.createDirectories(diretorio.resolve(PREFIXO_PARTICAO + i));
+        } catch (IOException e) {
+            throw new UncheckedIOException("Erro ao abrir o banco particionado", e);
+        }
+
+        particoes = new Banco[quantidade];
+        trabalhadores = new ExecutorService[quantidade];
+        long usados = 1;
+        for (int i = 0; i < quantidade; i++) {
+            particoes[i] = new Banco(diretorio.resolve(PREFIXO_PARTICAO + i), false);
+            usados = Math.max(usados, particoes[i].numerosUsados());
+            String nome = "particao-" + i;
+            trabalhadores[i] = Executors.newSingleThreadExecutor(r -> {
+                Thread t = new Thread(r, nome);
+                t.setDaemon(true);
+                return t;
+            });
+        }
+        numeracao.iniciar(usados);
+
+        registro = new Diario(diretorio.resolve(ARQUIVO_TRANSFERENCIAS));
+        metricas = new Metricas(registro::getBytesGravados);
+        try {
+            recuperar();
+        } catch (IOException e) {
+            throw new UncheckedIOException("Erro ao abrir o registro de transferências", e);
+        }
+        for (int i = 0; i < quantidade; i++) particoes[i].getMetricas().registrarJmx(",particao=" + i);
+        metricas.registrarJmx(",particao=transferencias");
+    }
+
+    static long chavePerna(long transferencia, byte perna) {
+        return transferencia << 2 | perna;
+    }
+
+    Metricas getMetricas() {
+        return metricas;
+    }
+
+    int quantidadeParticoes() {
+        return particoes.length;
+    }
+
+    Banco particao(int numero) {
+        return particoes[indice(numero)];
+    }
+
+    private int indice(int numero) {
+        return Integer.remainderUnsigned(numero, particoes.length);
+    }
+
+    // Número novo da numeração comum a todas as partições; a conta vai para a partição dele
+    public int criarConta(String titular) {
+        int numero = (int) numeracao.reservar(1);
+        particao(numero).adicionarConta(new Conta(numero, titular));
+        return numero;
+    }
+
+    public Conta buscarConta(int numero) {
+        return particao(numero).buscarConta(numero);
+    }
+
+    public boolean removerConta(int numero) {
+        return particao(numero).removerConta(numero);
+    }
+
+    public int quantidadeContas() {
+        int total = 0;
+        for (Banco particao : particoes) total += particao.quantidadeContas();
+        return total;
+    }
+
+    public long saldoTotal() {
+        long total = 0;
+        for (Banco particao : particoes) total += particao.saldoTotal();
+        return total;
+    }
+
+    public boolean depositar(int numero, long centavos) {
+        Banco particao = particao(numero);
+        return aguardar(particao, executar(numero, () -> particao.lancarDeposito(numero, centavos)));
+    }
+
+    public boolean sacar(int numero, long centavos) {
+        Banco particao = particao(numero);
+        return aguardar(particao, executar(numero, () -> particao.lancarSaque(numero, centavos)));
+    }
+
+    public boolean transferir(int origem, int destino, long centavos) {
+        if (indice(origem) == indice(destino)) {
+            Banco particao = particao(origem);
+            return aguardar(particao, executar(origem, () -> particao.lancarTransferencia(origem, destino, centavos)));
+        }
+        long inicio = System.nanoTime();
+        Banco daOrigem = particao(origem);
+        Banco doDestino = particao(destino);
+        Conta contaOrigem = daOrigem.buscarConta(origem);
+        // Leitura do saldo sem trava: só poupa o registro de uma transferência que seria
+        // recusada; o débito confere de novo
+        if (centavos <= 0 || contaOrigem == null || contaOrigem.getSaldoCentavos() < centavos
+                || doDestino.buscarConta(destino) == null) {
+            metricas.transferencia.registrar(inicio, false);
+            return false;
+        }
+
+        Transferencia t = new Transferencia(proximaTransferencia.getAndIncrement(), origem, destino, centavos);
+        long lsn;
+        compactacao.readLock().lock();
+        try {
+            emAndamento.put(t.id, t);
+            lsn = registro.registrarTransferenciaIniciada(t.id, origem, destino, centavos);
+        } finally {
+            compactacao.readLock().unlock();
+        }
+        registro.aguardar(lsn);
+
+        boolean debitada = false;
+        boolean creditada = false;
+        boolean terminada = false;
+        try {
+            debitada = aguardar(daOrigem, executar(origem,
+                    () -> daOrigem.lancarPerna(DEBITO, t.id, origem, destino, centavos)));
+            creditada = debitada && creditar(t);
+            terminada = true;
+            return creditada;
+        } catch (UncheckedIOException e) {
+            throw new UncheckedIOException(interrompida(t, e), e.getCause());
+        } catch (RuntimeException e) {
+            throw new IllegalStateException(interrompida(t, e), e);
+        } finally {
+            // Interrompida, fica em emAndamento: sem CONCLUIDA, a compactação a mantém no
+            // registro e a recuperação decide se ela precisa do crédito
+            if (terminada) {
+                concluir(t, debitada);
+                metricas.transferencia.registrar(inicio, creditada);
+            }
+        }
+    }
+
+    private static String interrompida(Transferencia t, RuntimeException causa) {
+        return "Transferência " + t.id + " da conta " + t.origem + " para a " + t.destino
+                + " interrompida; será completada ou desfeita na próxima abertura: " + causa.getMessage();
+    }
+
+    // Fase 3: crédito no destino ou, se ele foi removido ou encerrado, estorno na origem
+    private boolean creditar(Transferencia t) {
+        Banco doDestino = particao(t.destino);
+        if (aguardar(doDestino, executar(t.destino,
+                () -> doDestino.lancarPerna(CREDITO, t.id, t.destino, t.origem, t.centavos)))) {
+            return true;
+        }
+        Banco daOrigem = particao(t.origem);
+        aguardar(daOrigem, executar(t.origem,
+                () -> daOrigem.lancarPerna(ESTORNO, t.id, t.origem, t.destino, t.centavos)));
+        return false;
+    }
+
+    // Não espera a conclusão ir para o disco: se ela se perder, a recuperação encontra os dois
+    // lados já lançados e não refaz nada
+    private void concluir(Transferencia t, boolean debitada) {
+        compactacao.readLock().lock();
+        try {
+            registro.registrarTransferenciaConcluida(t.id);
+            emAndamento.remove(t.id);
+            if (debitada) aEsquecer.add(t);
+        } finally {
+            compactacao.readLock().unlock();
+        }
+        if ((concluidas.incrementAndGet() & 4095) == 0 && registro.getBytesDesdeRotacao() > LIMITE_REGISTRO) {
+            try {
+                compactar();
+            } catch (IOException | UncheckedIOException e) {
+                // O registro continua crescendo; a próxima tentativa ou abertura compacta
+                metricas.falhaDeCompactacao("registro de transferências: " + e.getMessage());
+            }
+        }
+    }
+
+    // Lê o registro, completa as transferências em dúvida e recomeça o registro só com o
+    // próximo identificador. Chamado no construtor, antes de qualquer operação.
+    private void recuperar() throws IOException {
+        Map<Long, Transferencia> pendentes = new HashMap<>();
+        long[] proxima = {1};
+        registro.abrir(0, (lsn, tipo, dados) -> {
+            switch (tipo) {
+                case Diario.TRANSFERENCIA_INICIADA: {
+                    Transferencia t = new Transferencia(dados.readLong(), dados.readInt(), dados.readInt(), dados.readLong());
+                    pendentes.put(t.id, t);
+                    proxima[0] = Math.max(proxima[0], t.id + 1);
+                    break;
+                }
+                case Diario.TRANSFERENCIA_CONCLUIDA:
+                    pendentes.remove(dados.readLong());
+                    break;
+                case Diario.PROXIMA_TRANSFERENCIA:
+                    proxima[0] = Math.max(proxima[0], dados.readLong());
+                    break;
+                default:
+                    throw new IOException("Registro desconhecido no registro de transferências: " + tipo);
+            }
+        });
+        proximaTransferencia.set(proxima[0]);
+
+        for (Transferencia t : pendentes.values()) {
+            Banco daOrigem = particao(t.origem);
+            if (daOrigem.pernaLancada(t.id, DEBITO) && !daOrigem.pernaLancada(t.id, ESTORNO)
+                    && !particao(t.destino).pernaLancada(t.id, CREDITO)) {
+                creditar(t);
+            }
+        }
+        compactar();
+        for (Banco particao : particoes) particao.esquecerPernas();
+    }
+
+    // Passa a gravar num segmento novo que começa com o próximo identificador e as
+    // transferências em andamento, e apaga os anteriores
+    private void compactar() throws IOException {
+        long lsn;
+        compactacao.writeLock().lock();
+        try {
+            registro.rotacionar();
+            // A rotação levou ao disco a conclusão de tudo o que está na fila. Só então os lados
+            // podem ser esquecidos: com a conclusão perdida, uma partição que tivesse esquecido o
+            // crédito (e gravado um checkpoint) o receberia de novo na recuperação.
+            for (Transferencia t; (t = aEsquecer.poll()) != null; ) {
+                particao(t.origem).esquecerPerna(t.id, DEBITO);
+                particao(t.origem).esquecerPerna(t.id, ESTORNO);
+                particao(t.destino).esquecerPerna(t.id, CREDITO);
+            }
+            lsn = registro.registrarProximaTransferencia(proximaTransferencia.get());
+            for (Transferencia t : emAndamento.values()) {
+                lsn = registro.registrarTransferenciaIniciada(t.id, t.origem, t.destino, t.centavos);
+            }
+        } finally {
+            compactacao.writeLock().unlock();
+        }
+        registro.aguardar(lsn);
+        registro.descartarSegmentosAnteriores();
+    }
+
+    // Executa a movimentação na thread da partição da conta e devolve o LSN (ou -1)
+    private long executar(int numero, LongSupplier movimentacao) {
+        try {
+            return CompletableFuture.supplyAsync(movimentacao::getAsLong, trabalhadores[indice(numero)]).join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException) throw (RuntimeException) e.getCause();
+            throw e;
+        }
+    }
+
+    private static boolean aguardar(Banco particao, long lsn) {
+        if (lsn < 0) return false;
+        particao.aguardarDiario(lsn);
+        return true;
+    }
+
+    // Termina as movimentações em andamento e fecha os diários
+    void fechar() {
+        for (ExecutorService trabalhador : trabalhadores) trabalhador.shutdown();
+        try {
+            for (ExecutorService trabalhador : trabalhadores) trabalhador.awaitTermination(1, TimeUnit.MINUTES);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        try {
+            registro.close();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        for (Banco particao : particoes) particao.fechar();
+    }
+}
@@ -0,0 +1,110 @@
+package br.com.agencia;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.BooleanSupplier;
+
+// Resultados recentes de operações identificadas por uma chave de idempotência.
+// Uma requisição repetida com a mesma chave (o cliente tentou de novo após um timeout)
+// recebe o resultado da primeira execução em vez de executar outra vez; se a primeira
+// ainda está em andamento, a repetição espera por ela.
+//
+// As chaves ficam num ConcurrentHashMap e numa fila em ordem de chegada. Como todas têm a
+// mesma validade, a mais antiga está sempre no início da fila: o despejo por tempo ou por
+// capacidade só olha o início, em O(1) amortizado por operação.
+class CacheIdempotencia {
+    private static final class Entrada {
+        final String chave;
+        final String operacao;
+        final long criadaEm;
+        final CompletableFuture<Boolean> resultado = new CompletableFuture<>();
+
+        Entrada(String chave, String operacao, long criadaEm) {
+            this.chave = chave;
+            this.operacao = operacao;
+            this.criadaEm = criadaEm;
+        }
+    }
+
+    private final ConcurrentHashMap<String, Entrada> entradas;
+    private final ConcurrentLinkedQueue<Entrada> ordem = new ConcurrentLinkedQueue<>();
+    private final AtomicInteger tamanhoOrdem = new AtomicInteger();
+    // Um despejo por vez: quem não consegue a trava deixa o trabalho para quem a tem
+    private final ReentrantLock despejo = new ReentrantLock();
+    private final int capacidade;
+    private final long validadeMillis;
+
+    CacheIdempotencia(int capacidade, long validadeMillis) {
+        this.capacidade = capacidade;
+        this.validadeMillis = validadeMillis;
+        this.entradas = new ConcurrentHashMap<>(Math.min(capacidade, 1 << 16));
+    }
+
+    // Executa 'acao' uma única vez por chave dentro da validade. 'operacao' descreve a
+    // requisição (tipo, contas e valor): reutilizar a chave para outra operação é erro.
+    // Se a ação lançar exceção, a chave guarda a falha até vencer: o efeito pode ter sido
+    // aplicado sem confirmação (o diário falhou depois de gravar), então uma repetição recebe
+    // a mesma falha em vez de executar outra vez. Para tentar de novo o cliente confere o
+    // saldo e usa outra chave.
+    boolean executar(String chave, String operacao, BooleanSupplier acao) {
+        long agora = System.currentTimeMillis();
+        Entrada nova = new Entrada(chave, operacao, agora);
+        Entrada existente;
+        while ((existente = entradas.putIfAbsent(chave, nova)) != null) {
+            if (agora - existente.criadaEm > validadeMillis) {
+                entradas.remove(chave, existente);
+                continue;
+            }
+            if (!existente.operacao.equals(operacao)) {
+                throw new IllegalArgumentException("Chave de idempotência já usada em outra operação: " + chave);
+            }
+            return aguardar(existente.resultado);
+        }
+        ordem.add(nova);
+        tamanhoOrdem.incrementAndGet();
+        despejar(agora);
+
+        try {
+            boolean resultado = acao.getAsBoolean();
+            nova.resultado.complete(resultado);
+            return resultado;
+        } catch (RuntimeException | Error e) {
+            nova.resultado.completeExceptionally(e);
+            throw e;
+        }
+    }
+
+    private static boolean aguardar(CompletableFuture<Boolean> resultado) {
+        try {
+            return resultado.join();
+        } catch (CompletionException e) {
+            Throwable causa = e.getCause();
+            if (causa instanceof RuntimeException) throw (RuntimeException) causa;
+            if (causa instanceof Error) throw (Error) causa;
+            throw e;
+        }
+    }
+
+    private void despejar(long agora) {
+        if (!despejo.tryLock()) return;
+        try {
+            Entrada antiga;
+            while ((antiga = ordem.peek()) != null
+                    && (agora - antiga.criadaEm > validadeMillis || tamanhoOrdem.get() > capacidade)) {
+                ordem.poll();
+                tamanhoOrdem.decrementAndGet();
+                entradas.remove(antiga.chave, antiga);
+            }
+        } finally {
+            despejo.unlock();
+        }
+    }
+
+    int tamanho() {
+        return entradas.size();
+    }
+}
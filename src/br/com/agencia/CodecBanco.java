@@ -0,0 +1,251 @@
+package br.com.agencia;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.zip.CRC32C;
+
+// Formato binário dos dados do banco (substitui a serialização Java do dados_banco.ser).
+//
+//   cabeçalho: magic "AGBK" | versão int | lsn long
+//   usuários:  quantidade int | por usuário: tamanho int | login | senha (hash, ou texto puro em arquivos antigos) | nome
+//   contas:    quantidade int | por conta: tamanho int | numero int | titular | saldo long
+//              | n int | instantes long[n] | tipos byte[n] | valores long[n] | contrapartes int[n]
+//
+// Textos são gravados como tamanho int + bytes UTF-8. Cada registro traz o próprio
+// tamanho para que leitores possam pular registros que não precisam.
+class CodecBanco {
+    static final int MAGIC = 0x4147424B; // "AGBK"
+    static final int VERSAO = 1;
+    private static final int TAMANHO_BUFFER = 1 << 20;
+
+    // Conteúdo lido de um arquivo de dados
+    static class Imagem {
+        final List<Conta> contas;
+        final List<Usuario> usuarios;
+        final long lsn;
+
+        Imagem(List<Conta> contas, List<Usuario> usuarios, long lsn) {
+            this.contas = contas;
+            this.usuarios = usuarios;
+            this.lsn = lsn;
+        }
+    }
+
+    static void gravar(Path arquivo, List<Conta> contas, List<Usuario> usuarios, long lsn) throws IOException {
+        try (FileChannel canal = FileChannel.open(arquivo, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING)) {
+            Saida saida = new Saida(canal);
+            saida.garantir(16);
+            saida.buffer.putInt(MAGIC).putInt(VERSAO).putLong(lsn);
+
+            saida.garantir(4);
+            saida.buffer.putInt(usuarios.size());
+            for (Usuario usuario : usuarios) {
+                byte[] login = utf8(usuario.getLogin());
+                byte[] senha = utf8(usuario.getSenhaCodificada());
+                byte[] nome = utf8(usuario.getNome());
+                int tamanho = 12 + login.length + senha.length + nome.length;
+                saida.garantir(4 + tamanho);
+                saida.buffer.putInt(tamanho);
+                saida.texto(login);
+                saida.texto(senha);
+                saida.texto(nome);
+            }
+
+            saida.garantir(4);
+            saida.buffer.putInt(contas.size());
+            for (Conta conta : contas) {
+                gravarConta(saida, conta);
+            }
+            saida.descarregar();
+        }
+    }
+
+    private static void gravarConta(Saida saida, Conta conta) throws IOException {
+        byte[] titular = utf8(conta.getTitular());
+        Lancamentos lancamentos = conta.getLancamentos();
+        int n = lancamentos.tamanho();
+        int tamanho = 4 + 4 + titular.length + 8 + 4 + n * 21;
+        saida.garantir(4 + 4 + 4 + titular.length + 8 + 4);
+        saida.buffer.putInt(tamanho);
+        saida.buffer.putInt(conta.getNumero());
+        saida.texto(titular);
+        saida.buffer.putLong(conta.getSaldoCentavos());
+        saida.buffer.putInt(n);
+        for (int i = 0; i < n; i++) {
+            saida.garantir(8);
+            saida.buffer.putLong(lancamentos.instante(i));
+        }
+        for (int i = 0; i < n; i++) {
+            saida.garantir(1);
+            saida.buffer.put(lancamentos.tipo(i));
+        }
+        for (int i = 0; i < n; i++) {
+            saida.garantir(8);
+            saida.buffer.putLong(lancamentos.valor(i));
+        }
+        for (int i = 0; i < n; i++) {
+            saida.garantir(4);
+            saida.buffer.putInt(lancamentos.contraparte(i));
+        }
+    }
+
+    static Imagem ler(Path arquivo) throws IOException {
+        try (FileChannel canal = FileChannel.open(arquivo, StandardOpenOption.READ)) {
+            Entrada entrada = new Entrada(canal);
+            entrada.garantir(16);
+            if (entrada.buffer.getInt() != MAGIC) throw new IOException("Arquivo de dados inválido: " + arquivo);
+            int versao = entrada.buffer.getInt();
+            if (versao != VERSAO) throw new IOException("Versão do arquivo de dados não suportada: " + versao);
+            long lsn = entrada.buffer.getLong();
+
+            entrada.garantir(4);
+            int quantidadeUsuarios = entrada.buffer.getInt();
+            List<Usuario> usuarios = new ArrayList<>(quantidadeUsuarios);
+            for (int i = 0; i < quantidadeUsuarios; i++) {
+                entrada.garantir(4);
+                entrada.buffer.getInt();
+                usuarios.add(new Usuario(entrada.texto(), entrada.texto(), entrada.texto()));
+            }
+
+            entrada.garantir(4);
+            int quantidadeContas = entrada.buffer.getInt();
+            List<Conta> contas = new ArrayList<>(quantidadeContas);
+            for (int i = 0; i < quantidadeContas; i++) {
+                contas.add(lerConta(entrada));
+            }
+            return new Imagem(contas, usuarios, lsn);
+        }
+    }
+
+    private static Conta lerConta(Entrada entrada) throws IOException {
+        entrada.garantir(8);
+        entrada.buffer.getInt();
+        int numero = entrada.buffer.getInt();
+        String titular = entrada.texto();
+        entrada.garantir(12);
+        long saldo = entrada.buffer.getLong();
+        int n = entrada.buffer.getInt();
+        long[] instantes = new long[n];
+        byte[] tipos = new byte[n];
+        long[] valores = new long[n];
+        int[] contrapartes = new int[n];
+        for (int i = 0; i < n; i++) {
+            entrada.garantir(8);
+            instantes[i] = entrada.buffer.getLong();
+        }
+        for (int i = 0; i < n; i++) {
+            entrada.garantir(1);
+            tipos[i] = entrada.buffer.get();
+        }
+        for (int i = 0; i < n; i++) {
+            entrada.garantir(8);
+            valores[i] = entrada.buffer.getLong();
+        }
+        for (int i = 0; i < n; i++) {
+            entrada.garantir(4);
+            contrapartes[i] = entrada.buffer.getInt();
+        }
+        return new Conta(numero, titular, saldo, new Lancamentos(instantes, tipos, valores, contrapartes, n));
+    }
+
+    // Importa um dados_banco.ser gravado com serialização Java (formato anterior)
+    @SuppressWarnings("unchecked")
+    static Imagem importarSerializado(Path arquivo) throws IOException {
+        try (ObjectInputStream in = new ObjectInputStream(new BufferedInputStream(new FileInputStream(arquivo.toFile())))) {
+            Object[] dados = (Object[]) in.readObject();
+            long lsn = dados.length > 2 ? (Long) dados[2] : 0;
+            return new Imagem((List<Conta>) dados[0], (List<Usuario>) dados[1], lsn);
+        } catch (ClassNotFoundException | ClassCastException e) {
+            throw new IOException("Arquivo serializado inválido: " + arquivo, e);
+        }
+    }
+
+    static byte[] utf8(String texto) {
+        return texto.getBytes(StandardCharsets.UTF_8);
+    }
+
+    // Escrita bufferizada num FileChannel
+    static class Saida {
+        final FileChannel canal;
+        final ByteBuffer buffer = ByteBuffer.allocateDirect(TAMANHO_BUFFER);
+        // De tudo o que já foi gravado
+        final CRC32C soma = new CRC32C();
+        private final Escrita escrita;
+
+        Saida(FileChannel canal) {
+            this(canal, Escrita.DIRETA);
+        }
+
+        Saida(FileChannel canal, Escrita escrita) {
+            this.canal = canal;
+            this.escrita = escrita;
+        }
+
+        void garantir(int bytes) throws IOException {
+            if (buffer.remaining() < bytes) descarregar();
+            if (buffer.remaining() < bytes) throw new IOException("Registro maior que o buffer de gravação");
+        }
+
+        void texto(byte[] bytes) throws IOException {
+            garantir(4 + bytes.length);
+            buffer.putInt(bytes.length).put(bytes);
+        }
+
+        // Copia o conteúdo restante de 'origem' (por exemplo, um trecho de arquivo mapeado)
+        void copiar(ByteBuffer origem) throws IOException {
+            if (origem.remaining() > buffer.remaining()) {
+                descarregar();
+                if (origem.remaining() > buffer.capacity()) {
+                    soma.update(origem.duplicate());
+                    while (origem.hasRemaining()) escrita.escrever(canal, origem);
+                    return;
+                }
+            }
+            buffer.put(origem);
+        }
+
+        void descarregar() throws IOException {
+            buffer.flip();
+            soma.update(buffer.duplicate());
+            while (buffer.hasRemaining()) escrita.escrever(canal, buffer);
+            buffer.clear();
+        }
+    }
+
+    // Leitura bufferizada de um FileChannel
+    private static class Entrada {
+        final FileChannel canal;
+        final ByteBuffer buffer = ByteBuffer.allocateDirect(TAMANHO_BUFFER);
+
+        Entrada(FileChannel canal) {
+            this.canal = canal;
+            buffer.limit(0);
+        }
+
+        void garantir(int bytes) throws IOException {
+            if (buffer.remaining() >= bytes) return;
+            if (bytes > buffer.capacity()) throw new IOException("Registro maior que o buffer de leitura");
+            buffer.compact();
+            while (buffer.position() < bytes) {
+                if (canal.read(buffer) < 0) throw new EOFException("Fim inesperado do arquivo de dados");
+            }
+            buffer.flip();
+        }
+
+        String texto() throws IOException {
+            garantir(4);
+            int tamanho = buffer.getInt();
+            garantir(tamanho);
+            byte[] bytes = new byte[tamanho];
+            buffer.get(bytes);
+            return new String(bytes, StandardCharsets.UTF_8);
+        }
+    }
+}
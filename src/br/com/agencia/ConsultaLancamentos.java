@@ -0,0 +1,142 @@
+package br.com.agencia;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.RecursiveTask;
+
+// Filtro de lançamentos por período, tipo e valor mínimo. O histórico de cada conta está em
+// ordem de instante, então o período vira um intervalo de índices achado por busca binária;
+// tipo e valor são conferidos só dentro dele. Só as 'limite' primeiras ocorrências viram
+// objetos; as demais são apenas contadas.
+class ConsultaLancamentos {
+    static final int TODOS_OS_TIPOS = tipo(Lancamentos.DEPOSITO) | tipo(Lancamentos.SAQUE)
+            | tipo(Lancamentos.TRANSFERENCIA_ENVIADA) | tipo(Lancamentos.TRANSFERENCIA_RECEBIDA);
+
+    // Lançamento encontrado na consulta sobre todas as contas
+    static final class Ocorrencia {
+        final int numero;
+        final Transacao transacao;
+
+        Ocorrencia(int numero, Transacao transacao) {
+            this.numero = numero;
+            this.transacao = transacao;
+        }
+    }
+
+    // Até 'limite' ocorrências, na ordem da consulta, e quantas passaram no filtro ao todo
+    static final class Resultado {
+        final List<Ocorrencia> ocorrencias;
+        final long total;
+
+        Resultado(List<Ocorrencia> ocorrencias, long total) {
+            this.ocorrencias = ocorrencias;
+            this.total = total;
+        }
+    }
+
+    // 'desde' inclusivo e 'ate' exclusivo, em milissegundos (Long.MIN_VALUE/MAX_VALUE não
+    // limitam); 'tipos' é uma combinação de tipo(...); 'valorMinimo' em centavos
+    final long desde;
+    final long ate;
+    final int tipos;
+    final long valorMinimo;
+    final int limite;
+
+    ConsultaLancamentos(long desde, long ate, int tipos, long valorMinimo) {
+        this(desde, ate, tipos, valorMinimo, Integer.MAX_VALUE);
+    }
+
+    ConsultaLancamentos(long desde, long ate, int tipos, long valorMinimo, int limite) {
+        this.desde = desde;
+        this.ate = ate;
+        this.tipos = tipos;
+        this.valorMinimo = valorMinimo;
+        this.limite = limite;
+    }
+
+    static int tipo(byte tipo) {
+        return 1 << tipo;
+    }
+
+    boolean aceita(byte tipo, long valor) {
+        return (tipos & (1 << tipo)) != 0 && valor >= valorMinimo;
+    }
+
+    // A consulta no histórico de uma conta
+    Resultado consultar(int numero, Lancamentos lancamentos) {
+        List<Ocorrencia> ocorrencias = new ArrayList<>();
+        long total = filtrar(numero, lancamentos, limite, ocorrencias);
+        return new Resultado(ocorrencias, total);
+    }
+
+    // Põe em 'destino', em ordem de instante, até 'maximo' lançamentos do histórico que passam
+    // no filtro; devolve quantos passam ao todo
+    private long filtrar(int numero, Lancamentos lancamentos, int maximo, List<Ocorrencia> destino) {
+        long total = 0;
+        int fim = fim(lancamentos);
+        for (int i = inicio(lancamentos); i < fim; i++) {
+            if (!aceita(lancamentos.tipo(i), lancamentos.valor(i))) continue;
+            if (total < maximo) destino.add(new Ocorrencia(numero, lancamentos.transacao(i)));
+            total++;
+        }
+        return total;
+    }
+
+    private int inicio(Lancamentos lancamentos) {
+        return desde == Long.MIN_VALUE ? 0 : lancamentos.primeiroAPartirDe(desde);
+    }
+
+    private int fim(Lancamentos lancamentos) {
+        return ate == Long.MAX_VALUE ? lancamentos.tamanho() : lancamentos.primeiroAPartirDe(ate);
+    }
+
+    // Histórico de uma conta para a consulta sobre todas elas; null se a conta deixou de existir
+    interface Fonte {
+        Lancamentos lancamentos(int indice);
+    }
+
+    // Divide as contas ao meio até LIMIAR delas e junta os resultados na ordem das contas.
+    // Cada parte monta no máximo 'limite' ocorrências e, ao juntar, a da direita só completa
+    // o que faltar na da esquerda.
+    static final class Busca extends RecursiveTask<Resultado> {
+        private static final long serialVersionUID = 1L;
+        private static final int LIMIAR = 256;
+
+        private final ConsultaLancamentos consulta;
+        private final int[] numeros;
+        private final Fonte fonte;
+        private final int inicio;
+        private final int fim;
+
+        Busca(ConsultaLancamentos consulta, int[] numeros, Fonte fonte, int inicio, int fim) {
+            this.consulta = consulta;
+            this.numeros = numeros;
+            this.fonte = fonte;
+            this.inicio = inicio;
+            this.fim = fim;
+        }
+
+        @Override
+        protected Resultado compute() {
+            if (fim - inicio > LIMIAR) {
+                int meio = (inicio + fim) >>> 1;
+                Busca esquerda = new Busca(consulta, numeros, fonte, inicio, meio);
+                esquerda.fork();
+                Resultado direita = new Busca(consulta, numeros, fonte, meio, fim).compute();
+                Resultado resultado = esquerda.join();
+                List<Ocorrencia> ocorrencias = resultado.ocorrencias;
+                int faltam = consulta.limite - ocorrencias.size();
+                if (faltam > 0) ocorrencias.addAll(direita.ocorrencias.subList(0, Math.min(faltam, direita.ocorrencias.size())));
+                return new Resultado(ocorrencias, resultado.total + direita.total);
+            }
+            List<Ocorrencia> ocorrencias = new ArrayList<>();
+            long total = 0;
+            for (int k = inicio; k < fim; k++) {
+                Lancamentos lancamentos = fonte.lancamentos(k);
+                if (lancamentos == null) continue;
+                total += consulta.filtrar(numeros[k], lancamentos, consulta.limite - ocorrencias.size(), ocorrencias);
+            }
+            return new Resultado(ocorrencias, total);
+        }
+    }
+}
@@ -0,0 +1,246 @@
+package br.com.agencia;
+
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.Serializable;
+import java.util.AbstractList;
+import java.util.List;
+import java.util.function.IntFunction;
+
+// Classe Conta
+class Conta implements Serializable {
+    private static final long serialVersionUID = 1L;
+    private int numero;
+    // Lido sem travas nas telas e nos extratos; trocado só pelo Banco (alterarTitular)
+    private volatile String titular;
+    // Saldo em centavos
+    private volatile long saldoCentavos;
+    private Lancamentos lancamentos = new Lancamentos();
+    private transient boolean encerrada;
+    // Saldo ou histórico alterados desde o último checkpoint
+    private transient boolean modificada;
+    // Época da última alteração e estados anteriores guardados para instantâneos abertos
+    // (Instantaneo); só mudam e só são lidos com a faixa da conta travada
+    private transient long epoca;
+    private transient Instantaneo.Versao versoes;
+
+    public Conta(int numero, String titular) {
+        this.numero = numero;
+        this.titular = titular;
+        this.saldoCentavos = 0;
+    }
+
+    Conta(int numero, String titular, long saldoCentavos, Lancamentos lancamentos) {
+        this.numero = numero;
+        this.titular = titular;
+        this.saldoCentavos = saldoCentavos;
+        this.lancamentos = lancamentos;
+    }
+
+    public int getNumero() { return numero; }
+    public String getTitular() { return titular; }
+    public long getSaldoCentavos() { return saldoCentavos; }
+    Lancamentos getLancamentos() { return lancamentos; }
+
+    // Visão somente leitura do histórico; cada Transacao é criada ao ser acessada
+    public List<Transacao> getTransacoes() {
+        return new AbstractList<Transacao>() {
+            @Override
+            public Transacao get(int i) {
+                return lancamentos.transacao(i);
+            }
+
+            @Override
+            public int size() {
+                return lancamentos.tamanho();
+            }
+        };
+    }
+    boolean isEncerrada() { return encerrada; }
+    boolean isModificada() { return modificada; }
+
+    void marcarGravada() {
+        modificada = false;
+    }
+
+    void setTitular(String titular) {
+        this.titular = titular;
+        modificada = true;
+    }
+
+    void encerrar() {
+        encerrada = true;
+    }
+
+    // Cópia com o saldo e o histórico de agora, que o checkpoint grava depois de soltar as
+    // travas; o histórico é congelado, sem copiar lançamentos. Faixa travada.
+    Conta retrato() {
+        return new Conta(numero, titular, saldoCentavos, lancamentos.congelar(lancamentos.tamanho()));
+    }
+
+    // Depois do checkpoint: o histórico até onde foi gravado passa a ser lido do armazém.
+    // Faixa travada; lançamentos feitos depois da gravação continuam em memória.
+    void trocarLancamentos(Lancamentos gravado) {
+        if (gravado.tamanho() <= lancamentos.tamanho()) lancamentos = lancamentos.sobre(gravado);
+    }
+
+    // Chamador tem a faixa travada e vai alterar a conta na época 'atual'. Com instantâneos
+    // abertos, a primeira alteração da época guarda o estado de antes; versões que nenhum
+    // instantâneo aberto lê mais são descartadas.
+    void versionar(long atual, long maisAntiga) {
+        if (maisAntiga == Long.MAX_VALUE) {
+            versoes = null;
+        } else {
+            if (epoca != atual && maisAntiga < atual) {
+                versoes = new Instantaneo.Versao(atual - 1, saldoCentavos, lancamentos.tamanho(), versoes);
+            }
+            if (versoes != null && versoes.ate < maisAntiga) {
+                versoes = null;
+            } else if (versoes != null) {
+                Instantaneo.Versao v = versoes;
+                while (v.anterior != null && v.anterior.ate >= maisAntiga) v = v.anterior;
+                v.anterior = null;
+            }
+        }
+        epoca = atual;
+    }
+
+    // Estado visto pelo instantâneo da época 'epoca', ou null se for o atual; faixa travada
+    Instantaneo.Versao versao(long epoca) {
+        if (this.epoca <= epoca) return null;
+        Instantaneo.Versao escolhida = null;
+        for (Instantaneo.Versao v = versoes; v != null && v.ate >= epoca; v = v.anterior) {
+            escolhida = v;
+        }
+        return escolhida;
+    }
+
+    public void depositar(long centavos) {
+        depositar(centavos, System.currentTimeMillis());
+    }
+
+    void depositar(long centavos, long instante) {
+        if (centavos > 0) {
+            saldoCentavos = Dinheiro.somar(saldoCentavos, centavos);
+            lancamentos.adicionar(instante, Lancamentos.DEPOSITO, centavos, Lancamentos.SEM_CONTRAPARTE);
+            modificada = true;
+        }
+    }
+
+    public boolean sacar(long centavos) {
+        return sacar(centavos, System.currentTimeMillis());
+    }
+
+    boolean sacar(long centavos, long instante) {
+        if (centavos > 0 && saldoCentavos >= centavos) {
+            saldoCentavos = Dinheiro.subtrair(saldoCentavos, centavos);
+            lancamentos.adicionar(instante, Lancamentos.SAQUE, centavos, Lancamentos.SEM_CONTRAPARTE);
+            modificada = true;
+            return true;
+        }
+        return false;
+    }
+
+    public boolean transferir(Conta destino, long centavos) {
+        return transferir(destino, centavos, System.currentTimeMillis());
+    }
+
+    boolean transferir(Conta destino, long centavos, long instante) {
+        if (!enviarTransferencia(destino.numero, centavos, instante)) return false;
+        destino.receberTransferencia(numero, centavos, instante);
+        return true;
+    }
+
+    // Cada lado de uma transferência separado, para quando as contas estão em partições
+    // diferentes (BancoParticionado)
+    boolean enviarTransferencia(int destino, long centavos, long instante) {
+        if (!sacar(centavos, instante)) return false;
+        lancamentos.adicionar(instante, Lancamentos.TRANSFERENCIA_ENVIADA, centavos, destino);
+        return true;
+    }
+
+    void receberTransferencia(int origem, long centavos, long instante) {
+        depositar(centavos, instante);
+        lancamentos.adicionar(instante, Lancamentos.TRANSFERENCIA_RECEBIDA, centavos, origem);
+    }
+
+    public String getExtrato() {
+        return getExtrato(null);
+    }
+
+    // 'titulares' resolve o nome atual das contas de contrapartida nas transferências
+    String getExtrato(IntFunction<String> titulares) {
+        // Cerca de 80 caracteres por linha: evita copiar o texto a cada vez que ele dobraria
+        int tamanho = lancamentos.tamanho();
+        StringBuilder sb = new StringBuilder((int) Math.min(Integer.MAX_VALUE - 16, 256 + 80L * tamanho));
+        escreverCabecalhoExtrato(sb);
+
+        for (int i = 0; i < tamanho; i++) {
+            formatarLinhaExtrato(i, sb, titulares).append('\n');
+        }
+
+        escreverRodapeExtrato(sb);
+        return sb.toString();
+    }
+
+    void escreverCabecalhoExtrato(StringBuilder sb) {
+        sb.append("Extrato da Conta ").append(numero).append("\n");
+        sb.append("Titular: ").append(titular).append("\n\n");
+        sb.append("Data/Hora               Tipo          Valor       Descrição\n");
+        sb.append("------------------------------------------------------------\n");
+    }
+
+    void escreverRodapeExtrato(StringBuilder sb) {
+        sb.append("\nSaldo Atual: R$ ");
+        Dinheiro.formatar(saldoCentavos, sb);
+    }
+
+    // Formata o lançamento i numa linha do extrato (sem quebra de linha)
+    StringBuilder formatarLinhaExtrato(int i, StringBuilder sb, IntFunction<String> titulares) {
+        int inicio = sb.length();
+        DataHora.formatar(lancamentos.instante(i), sb);
+        completar(sb, inicio, 20);
+        sb.append(' ');
+        inicio = sb.length();
+        sb.append(Lancamentos.rotulo(lancamentos.tipo(i)));
+        completar(sb, inicio, 12);
+        sb.append(" R$ ");
+        inicio = sb.length();
+        Dinheiro.formatar(lancamentos.valor(i), sb);
+        completar(sb, inicio, 10);
+        sb.append(' ');
+        return lancamentos.descrever(i, sb, titulares);
+    }
+
+    // Alinha à esquerda o campo iniciado em 'inicio', completando com espaços até 'largura'
+    private static void completar(StringBuilder sb, int inicio, int largura) {
+        for (int i = sb.length() - inicio; i < largura; i++) {
+            sb.append(' ');
+        }
+    }
+
+    // Arquivos antigos guardam o saldo como double em "saldo" e o histórico
+    // como List<Transacao> em "transacoes"; ambos são convertidos na leitura
+    @SuppressWarnings("unchecked")
+    private void readObject(ObjectInputStream in) throws IOException, ClassNotFoundException {
+        ObjectInputStream.GetField campos = in.readFields();
+        numero = campos.get("numero", 0);
+        titular = (String) campos.get("titular", null);
+        if (campos.defaulted("lancamentos")) {
+            lancamentos = new Lancamentos();
+            List<Transacao> transacoes = (List<Transacao>) campos.get("transacoes", null);
+            if (transacoes != null) {
+                for (Transacao t : transacoes) {
+                    lancamentos.adicionar(t);
+                }
+            }
+        } else {
+            lancamentos = (Lancamentos) campos.get("lancamentos", null);
+        }
+        if (campos.defaulted("saldoCentavos")) {
+            saldoCentavos = Dinheiro.deReais(campos.get("saldo", 0.0));
+        } else {
+            saldoCentavos = campos.get("saldoCentavos", 0L);
+        }
+    }
+}
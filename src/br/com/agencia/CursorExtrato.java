@@ -0,0 +1,98 @@
+package br.com.agencia;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.util.Arrays;
+import java.util.List;
+import java.util.function.IntFunction;
+
+// Cursor sobre o extrato de uma conta num intervalo de datas.
+// O intervalo é fixado na abertura; as linhas são formatadas uma página por vez,
+// com a conta travada apenas enquanto a página é lida. Pode ser lido de mais de uma thread
+// (a tela pede páginas ao ExecutorBancario): a página guardada é protegida pelo próprio cursor.
+class CursorExtrato {
+    static final int TAMANHO_PAGINA = 256;
+
+    private final Conta conta;
+    private final MotorTransacoes motor;
+    private final IntFunction<String> titulares;
+    private final StringBuilder sb = new StringBuilder(128);
+    private final int inicio;
+    private final int tamanho;
+
+    private final String[] pagina = new String[TAMANHO_PAGINA];
+    private int paginaAtual = -1;
+
+    CursorExtrato(Conta conta, MotorTransacoes motor, IntFunction<String> titulares, long desde, long ate) {
+        this.conta = conta;
+        this.motor = motor;
+        this.titulares = titulares;
+        motor.travar(conta.getNumero());
+        try {
+            Lancamentos lancamentos = conta.getLancamentos();
+            this.inicio = lancamentos.primeiroAPartirDe(desde);
+            int fim = ate == Long.MAX_VALUE ? lancamentos.tamanho() : lancamentos.primeiroAPartirDe(ate);
+            this.tamanho = Math.max(0, fim - inicio);
+        } finally {
+            motor.destravar(conta.getNumero());
+        }
+    }
+
+    int tamanho() { return tamanho; }
+
+    synchronized String linha(int i) {
+        if (i < 0 || i >= tamanho) throw new IndexOutOfBoundsException("Linha " + i + " de " + tamanho);
+        int numeroPagina = i / TAMANHO_PAGINA;
+        if (numeroPagina != paginaAtual) carregarPagina(numeroPagina);
+        return pagina[i % TAMANHO_PAGINA];
+    }
+
+    synchronized List<String> pagina(int primeiraLinha, int quantidade) {
+        int fim = Math.min(tamanho, primeiraLinha + quantidade);
+        String[] linhas = new String[Math.max(0, fim - primeiraLinha)];
+        for (int i = 0; i < linhas.length; i++) {
+            linhas[i] = linha(primeiraLinha + i);
+        }
+        return Arrays.asList(linhas);
+    }
+
+    private void carregarPagina(int numeroPagina) {
+        int primeira = numeroPagina * TAMANHO_PAGINA;
+        int quantidade = Math.min(TAMANHO_PAGINA, tamanho - primeira);
+        motor.travar(conta.getNumero());
+        try {
+            for (int i = 0; i < quantidade; i++) {
+                sb.setLength(0);
+                conta.formatarLinhaExtrato(inicio + primeira + i, sb, titulares);
+                pagina[i] = sb.toString();
+            }
+        } finally {
+            motor.destravar(conta.getNumero());
+        }
+        paginaAtual = numeroPagina;
+    }
+
+    String cabecalho() {
+        StringBuilder cabecalho = new StringBuilder();
+        conta.escreverCabecalhoExtrato(cabecalho);
+        return cabecalho.toString();
+    }
+
+    String rodape() {
+        StringBuilder rodape = new StringBuilder();
+        conta.escreverRodapeExtrato(rodape);
+        return rodape.toString();
+    }
+
+    // Grava o extrato completo em 'saida', página a página, sem montar tudo em memória
+    void escrever(Writer saida) throws IOException {
+        saida.write(cabecalho());
+        for (int i = 0; i < tamanho; i++) {
+            saida.write(linha(i));
+            saida.write('\n');
+        }
+        saida.write(rodape());
+        saida.write('\n');
+        saida.flush();
+    }
+}
@@ -0,0 +1,72 @@
+package br.com.agencia;
+
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.ZoneId;
+import java.time.format.DateTimeFormatter;
+import java.time.zone.ZoneOffsetTransition;
+
+// Data e hora no formato dd/MM/yyyy HH:mm:ss, no fuso do sistema, para extratos e tela.
+// Pode ser usado por várias threads ao mesmo tempo. Quase todos os instantes formatados em
+// sequência caem no mesmo dia: a data dele fica pronta em cache e a hora é calculada
+// direto dos milissegundos, sem criar objetos.
+final class DataHora {
+    static final DateTimeFormatter FORMATO = DateTimeFormatter.ofPattern("dd/MM/yyyy HH:mm:ss");
+    private static final DateTimeFormatter FORMATO_DATA = DateTimeFormatter.ofPattern("dd/MM/yyyy ");
+    private static final ZoneId ZONA = ZoneId.systemDefault();
+
+    // Dia sem mudança de fuso (horário de verão): a hora é o tempo desde 'inicio'
+    private static final class Dia {
+        final long inicio;
+        final long fim;
+        final String data;
+
+        Dia(long inicio, long fim, String data) {
+            this.inicio = inicio;
+            this.fim = fim;
+            this.data = data;
+        }
+    }
+
+    // Imutável: threads que o leem desatualizado apenas calculam o dia de novo
+    private static volatile Dia recente;
+
+    private DataHora() {}
+
+    // Acrescenta o instante (milissegundos) formatado em 'sb'
+    static StringBuilder formatar(long instante, StringBuilder sb) {
+        Dia dia = recente;
+        if (dia == null || instante < dia.inicio || instante >= dia.fim) {
+            dia = dia(instante);
+            if (dia == null) {
+                FORMATO.formatTo(Instant.ofEpochMilli(instante).atZone(ZONA), sb);
+                return sb;
+            }
+            recente = dia;
+        }
+        int segundos = (int) ((instante - dia.inicio) / 1000);
+        sb.append(dia.data);
+        doisDigitos(sb, segundos / 3600).append(':');
+        doisDigitos(sb, segundos / 60 % 60).append(':');
+        return doisDigitos(sb, segundos % 60);
+    }
+
+    static String formatar(long instante) {
+        return formatar(instante, new StringBuilder(19)).toString();
+    }
+
+    // null quando o fuso muda durante o dia, inclusive à meia-noite (aí o dia pode começar às
+    // 00:30, por exemplo); esses instantes vão pelo DateTimeFormatter
+    private static Dia dia(long instante) {
+        LocalDate data = Instant.ofEpochMilli(instante).atZone(ZONA).toLocalDate();
+        long inicio = data.atStartOfDay(ZONA).toInstant().toEpochMilli();
+        long fim = data.plusDays(1).atStartOfDay(ZONA).toInstant().toEpochMilli();
+        ZoneOffsetTransition mudanca = ZONA.getRules().nextTransition(Instant.ofEpochMilli(inicio - 1));
+        if (mudanca != null && mudanca.getInstant().toEpochMilli() < fim) return null;
+        return new Dia(inicio, fim, FORMATO_DATA.format(data));
+    }
+
+    private static StringBuilder doisDigitos(StringBuilder sb, int valor) {
+        return sb.append((char) ('0' + valor / 10)).append((char) ('0' + valor % 10));
+    }
+}
@@ -0,0 +1,504 @@
+package br.com.agencia;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.*;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.zip.CRC32;
+
+// Diário de operações (write-ahead log) do Banco; também é o registro de recuperação das
+// transferências entre partições do BancoParticionado.
+// Cada mutação é anexada como um registro compacto; uma única thread grava
+// os registros pendentes em lote e faz um fsync por lote (group commit).
+// Formato do registro: [tamanho int][crc32 int][lsn long][tipo byte][dados].
+class Diario implements Closeable {
+    static final byte CONTA_CRIADA = 1;
+    static final byte CONTA_REMOVIDA = 2;
+    static final byte DEPOSITO = 3;
+    static final byte SAQUE = 4;
+    static final byte TRANSFERENCIA = 5;
+    static final byte USUARIO_CADASTRADO = 6;
+    static final byte SENHA_ALTERADA = 7;
+    static final byte TITULAR_ALTERADO = 8;
+    // Transferências entre partições: o lado lançado numa partição e os que ela ainda precisa
+    // lembrar após um checkpoint; no registro do BancoParticionado, o início e o fim de cada uma
+    static final byte PERNA_TRANSFERENCIA = 9;
+    static final byte PERNA_PENDENTE = 10;
+    static final byte TRANSFERENCIA_INICIADA = 11;
+    static final byte TRANSFERENCIA_CONCLUIDA = 12;
+    static final byte PROXIMA_TRANSFERENCIA = 13;
+
+    private static final int TAMANHO_MAXIMO_REGISTRO = 1 << 20;
+
+    interface Leitor {
+        void aplicar(long lsn, byte tipo, DataInputStream dados) throws IOException;
+    }
+
+    // ByteArrayOutputStream que expõe o array interno, evitando cópias
+    private static class Buffer extends ByteArrayOutputStream {
+        Buffer() { super(8192); }
+        byte[] array() { return buf; }
+    }
+
+    private final Path diretorio;
+    private final String prefixo;
+    private final ReentrantLock canal = new ReentrantLock();
+    private final Buffer pendente = new Buffer();
+    private final DataOutputStream saida = new DataOutputStream(pendente);
+    private final CRC32 crc = new CRC32();
+    private byte[] gravando = new byte[8192];
+    private FileChannel arquivo;
+    private long segmento;
+    private long ultimoLsn;
+    private long lsnDuravel;
+    private long bytesDesdeRotacao;
+    // Total gravado desde a abertura, para as métricas
+    private long bytesGravados;
+    private int inicioRegistro;
+    // Primeira falha de gravação: depois dela nada mais é gravado nem registrado, pois não se
+    // sabe o que do lote chegou ao disco
+    private volatile IOException falha;
+    private boolean fechado;
+    private Thread gravador;
+    private final Escrita escrita;
+
+    Diario(Path arquivoBase) {
+        this(arquivoBase, Escrita.DIRETA);
+    }
+
+    Diario(Path arquivoBase, Escrita escrita) {
+        Path absoluto = arquivoBase.toAbsolutePath();
+        this.diretorio = absoluto.getParent();
+        this.prefixo = absoluto.getFileName().toString() + ".";
+        this.escrita = escrita;
+    }
+
+    // Reaplica os registros com LSN maior que lsnMinimo e abre um novo segmento para escrita.
+    // A leitura de um segmento para no primeiro registro incompleto ou com soma errada; no
+    // último segmento ele é o fim de uma gravação interrompida e é cortado ali. Os LSNs são
+    // seguidos: um salto depois disso (registros confirmados que ficaram ilegíveis) impede a
+    // abertura, em vez de reaplicar os posteriores sem eles.
+    void abrir(long lsnMinimo, Leitor leitor) throws IOException {
+        ultimoLsn = lsnMinimo;
+        List<Long> existentes = segmentosExistentes();
+        for (int i = 0; i < existentes.size(); i++) {
+            segmento = existentes.get(i);
+            Path caminho = caminho(segmento);
+            long tamanho = Files.size(caminho);
+            if (tamanho == 0) {
+                Files.delete(caminho);
+                continue;
+            }
+            long legivel = reproduzirSegmento(caminho, lsnMinimo, leitor);
+            if (legivel < tamanho && i == existentes.size() - 1) {
+                try (FileChannel canal = FileChannel.open(caminho, StandardOpenOption.WRITE)) {
+                    canal.truncate(legivel);
+                    canal.force(true);
+                }
+            }
+        }
+        lsnDuravel = ultimoLsn;
+        segmento++;
+        arquivo = abrirSegmento(segmento);
+
+        gravador = new Thread(this::gravarContinuamente, "diario-banco");
+        gravador.setDaemon(true);
+        gravador.start();
+    }
+
+    // Devolve quantos bytes do começo do segmento são registros legíveis
+    private long reproduzirSegmento(Path caminho, long lsnMinimo, Leitor leitor) throws IOException {
+        long legivel = 0;
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(caminho)))) {
+            byte[] corpo = new byte[256];
+            while (true) {
+                int tamanho;
+                int soma;
+                try {
+                    tamanho = in.readInt();
+                    soma = in.readInt();
+                } catch (EOFException e) {
+                    return legivel;
+                }
+                if (tamanho < 9 || tamanho > TAMANHO_MAXIMO_REGISTRO) return legivel;
+                if (corpo.length < tamanho) corpo = new byte[tamanho];
+                try {
+                    in.readFully(corpo, 0, tamanho);
+                } catch (EOFException e) {
+                    return legivel; // registro incompleto no fim do segmento (escrita interrompida)
+                }
+                crc.reset();
+                crc.update(corpo, 0, tamanho);
+                if ((int) crc.getValue() != soma) return legivel;
+
+                DataInputStream dados = new DataInputStream(new ByteArrayInputStream(corpo, 0, tamanho));
+                long lsn = dados.readLong();
+                byte tipo = dados.readByte();
+                if (lsn > lsnMinimo) {
+                    // Depois de uma queda o segmento novo repete o LSN do registro cortado no
+                    // anterior; sem checkpoint (lsnMinimo 0) o primeiro pode ser qualquer um,
+                    // pois o diário pode ter sido compactado
+                    boolean primeiro = ultimoLsn == lsnMinimo;
+                    if (lsn != ultimoLsn + 1 && !(primeiro && lsnMinimo == 0)) {
+                        throw new IOException("Diário corrompido em " + caminho + ": registro " + lsn
+                                + " depois do " + ultimoLsn + "; os intermediários estão ilegíveis");
+                    }
+                    leitor.aplicar(lsn, tipo, dados);
+                    ultimoLsn = lsn;
+                }
+                legivel += 8 + tamanho;
+            }
+        }
+    }
+
+    synchronized long registrarContaCriada(int numero, String titular) {
+        try {
+            long lsn = iniciar(CONTA_CRIADA);
+            saida.writeInt(numero);
+            saida.writeUTF(titular);
+            return concluir(lsn);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    synchronized long registrarContaRemovida(int numero) {
+        try {
+            long lsn = iniciar(CONTA_REMOVIDA);
+            saida.writeInt(numero);
+            return concluir(lsn);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    synchronized long registrarDeposito(int numero, long centavos, long instante) {
+        return registrarMovimento(DEPOSITO, numero, centavos, instante);
+    }
+
+    synchronized long registrarSaque(int numero, long centavos, long instante) {
+        return registrarMovimento(SAQUE, numero, centavos, instante);
+    }
+
+    private long registrarMovimento(byte tipo, int numero, long centavos, long instante) {
+        try {
+            long lsn = iniciar(tipo);
+            saida.writeInt(numero);
+            saida.writeLong(centavos);
+            saida.writeLong(instante);
+            return concluir(lsn);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    synchronized long registrarTransferencia(int origem, int destino, long centavos, long instante) {
+        try {
+            long lsn = iniciar(TRANSFERENCIA);
+            saida.writeInt(origem);
+            saida.writeInt(destino);
+            saida.writeLong(centavos);
+            saida.writeLong(instante);
+            return concluir(lsn);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    // Só o hash da senha vai para o diário, nunca o texto digitado
+    synchronized long registrarUsuario(String login, String senhaCodificada, String nome) {
+        try {
+            long lsn = iniciar(USUARIO_CADASTRADO);
+            saida.writeUTF(login);
+            saida.writeUTF(senhaCodificada);
+            saida.writeUTF(nome);
+            return concluir(lsn);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    synchronized long registrarSenha(String login, String senhaCodificada) {
+        try {
+            long lsn = iniciar(SENHA_ALTERADA);
+            saida.writeUTF(login);
+            saida.writeUTF(senhaCodificada);
+            return concluir(lsn);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    synchronized long registrarTitular(int numero, String titular) {
+        try {
+            long lsn = iniciar(TITULAR_ALTERADO);
+            saida.writeInt(numero);
+            saida.writeUTF(titular);
+            return concluir(lsn);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    synchronized long registrarPerna(byte perna, long transferencia, int numero, int contraparte, long centavos,
+                                     long instante) {
+        try {
+            long lsn = iniciar(PERNA_TRANSFERENCIA);
+            saida.writeByte(perna);
+            saida.writeLong(transferencia);
+            saida.writeInt(numero);
+            saida.writeInt(contraparte);
+            saida.writeLong(centavos);
+            saida.writeLong(instante);
+            return concluir(lsn);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    synchronized long registrarPernaPendente(long chave) {
+        try {
+            long lsn = iniciar(PERNA_PENDENTE);
+            saida.writeLong(chave);
+            return concluir(lsn);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    synchronized long registrarTransferenciaIniciada(long transferencia, int origem, int destino, long centavos) {
+        try {
+            long lsn = iniciar(TRANSFERENCIA_INICIADA);
+            saida.writeLong(transferencia);
+            saida.writeInt(origem);
+            saida.writeInt(destino);
+            saida.writeLong(centavos);
+            return concluir(lsn);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    synchronized long registrarTransferenciaConcluida(long transferencia) {
+        try {
+            long lsn = iniciar(TRANSFERENCIA_CONCLUIDA);
+            saida.writeLong(transferencia);
+            return concluir(lsn);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    synchronized long registrarProximaTransferencia(long transferencia) {
+        try {
+            long lsn = iniciar(PROXIMA_TRANSFERENCIA);
+            saida.writeLong(transferencia);
+            return concluir(lsn);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private long iniciar(byte tipo) throws IOException {
+        if (fechado) throw new IllegalStateException("Diário fechado");
+        if (falha != null) throw new IOException("Diário indisponível após falha de gravação", falha);
+        inicioRegistro = pendente.size();
+        saida.writeInt(0);
+        saida.writeInt(0);
+        long lsn = ++ultimoLsn;
+        saida.writeLong(lsn);
+        saida.writeByte(tipo);
+        return lsn;
+    }
+
+    private long concluir(long lsn) {
+        byte[] buf = pendente.array();
+        int corpo = inicioRegistro + 8;
+        int tamanho = pendente.size() - corpo;
+        crc.reset();
+        crc.update(buf, corpo, tamanho);
+        escreverInt(buf, inicioRegistro, tamanho);
+        escreverInt(buf, inicioRegistro + 4, (int) crc.getValue());
+        notifyAll();
+        return lsn;
+    }
+
+    private static void escreverInt(byte[] buf, int pos, int valor) {
+        buf[pos] = (byte) (valor >>> 24);
+        buf[pos + 1] = (byte) (valor >>> 16);
+        buf[pos + 2] = (byte) (valor >>> 8);
+        buf[pos + 3] = (byte) valor;
+    }
+
+    // Lança UncheckedIOException se o diário já falhou. O Banco chama antes de alterar as contas:
+    // uma operação que o diário não pode mais registrar é recusada em vez de ficar só em memória.
+    void verificar() {
+        IOException f = falha;
+        if (f != null) throw new UncheckedIOException("Diário indisponível após falha de gravação", f);
+    }
+
+    // Bloqueia até que o registro com o LSN informado esteja em disco
+    synchronized void aguardar(long lsn) {
+        while (lsnDuravel < lsn) {
+            if (falha != null) throw new UncheckedIOException(falha);
+            try {
+                wait();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new UncheckedIOException(new InterruptedIOException("Interrompido aguardando o diário"));
+            }
+        }
+    }
+
+    synchronized long getUltimoLsn() { return ultimoLsn; }
+
+    synchronized long getBytesDesdeRotacao() { return bytesDesdeRotacao + pendente.size(); }
+
+    synchronized long getBytesGravados() { return bytesGravados; }
+
+    private void gravarContinuamente() {
+        try {
+            while (true) {
+                synchronized (this) {
+                    while (pendente.size() == 0 && !fechado) wait();
+                    if (pendente.size() == 0) return;
+                }
+                canal.lock();
+                try {
+                    descarregar();
+                } catch (IOException e) {
+                    return;
+                } finally {
+                    canal.unlock();
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    // Grava todo o lote pendente no segmento atual. Deve ser chamado com o canal travado.
+    // Uma falha fica registrada em 'falha' e vale para todas as chamadas seguintes.
+    private void descarregar() throws IOException {
+        int n;
+        long lsn;
+        synchronized (this) {
+            if (falha != null) throw new IOException("Diário indisponível após falha de gravação", falha);
+            n = pendente.size();
+            if (n == 0) return;
+            if (gravando.length < n) gravando = new byte[Math.max(n, gravando.length * 2)];
+            System.arraycopy(pendente.array(), 0, gravando, 0, n);
+            pendente.reset();
+            lsn = ultimoLsn;
+        }
+        ByteBuffer bb = ByteBuffer.wrap(gravando, 0, n);
+        try {
+            while (bb.hasRemaining()) escrita.escrever(arquivo, bb);
+            arquivo.force(false);
+        } catch (IOException | RuntimeException e) {
+            synchronized (this) {
+                falha = e instanceof IOException ? (IOException) e : new IOException(e);
+                notifyAll();
+            }
+            throw e;
+        }
+        synchronized (this) {
+            bytesDesdeRotacao += n;
+            bytesGravados += n;
+            if (lsn > lsnDuravel) lsnDuravel = lsn;
+            notifyAll();
+        }
+    }
+
+    // Fecha o segmento atual e passa a gravar num novo. Retorna o último LSN
+    // contido nos segmentos anteriores. O chamador deve impedir novos registros
+    // durante a chamada para que o estado capturado corresponda a esse LSN.
+    long rotacionar() throws IOException {
+        canal.lock();
+        try {
+            descarregar();
+            arquivo.close();
+            segmento++;
+            arquivo = abrirSegmento(segmento);
+            synchronized (this) {
+                bytesDesdeRotacao = 0;
+                return ultimoLsn;
+            }
+        } finally {
+            canal.unlock();
+        }
+    }
+
+    // Apaga os segmentos já cobertos por um checkpoint gravado com sucesso
+    void descartarSegmentosAnteriores() throws IOException {
+        descartarSegmentosAntes(segmentoAtual());
+    }
+
+    // Segmento em que os registros estão sendo gravados
+    long segmentoAtual() {
+        canal.lock();
+        try {
+            return segmento;
+        } finally {
+            canal.unlock();
+        }
+    }
+
+    void descartarSegmentosAntes(long limite) throws IOException {
+        for (long n : segmentosExistentes()) {
+            if (n < limite) Files.deleteIfExists(caminho(n));
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        synchronized (this) {
+            fechado = true;
+            notifyAll();
+        }
+        try {
+            if (gravador != null) gravador.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        canal.lock();
+        try {
+            descarregar();
+        } finally {
+            try {
+                if (arquivo != null) arquivo.close();
+            } finally {
+                canal.unlock();
+            }
+        }
+    }
+
+    private FileChannel abrirSegmento(long n) throws IOException {
+        return FileChannel.open(caminho(n), StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.APPEND);
+    }
+
+    private Path caminho(long n) {
+        return diretorio.resolve(prefixo + String.format("%06d", n));
+    }
+
+    private List<Long> segmentosExistentes() throws IOException {
+        List<Long> segmentos = new ArrayList<>();
+        try (DirectoryStream<Path> arquivos = Files.newDirectoryStream(diretorio, prefixo + "*")) {
+            for (Path p : arquivos) {
+                String sufixo = p.getFileName().toString().substring(prefixo.length());
+                try {
+                    segmentos.add(Long.parseLong(sufixo));
+                } catch (NumberFormatException e) {
+                    // arquivo que não é segmento do diário
+                }
+            }
+        }
+        Collections.sort(segmentos);
+        return segmentos;
+    }
+}
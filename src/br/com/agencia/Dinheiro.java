@@ -0,0 +1,91 @@
+package br.com.agencia;
+
+// Valores monetários representados como long em centavos.
+// Todas as operações trabalham direto sobre o primitivo, sem criar objetos.
+final class Dinheiro {
+    private Dinheiro() {}
+
+    static long somar(long a, long b) {
+        return Math.addExact(a, b);
+    }
+
+    static long subtrair(long a, long b) {
+        return Math.subtractExact(a, b);
+    }
+
+    // Converte valores antigos em double (reais) para centavos, arredondando
+    static long deReais(double reais) {
+        return Math.round(reais * 100.0);
+    }
+
+    // Interpreta "1234", "1234,5", "1234.56", "1.234,56" ou "1,234.56".
+    // O último separador seguido de 1 ou 2 dígitos é o decimal; os demais são de milhar.
+    static long interpretar(CharSequence texto) {
+        if (texto == null) throw new NumberFormatException("null");
+        int inicio = 0;
+        int fim = texto.length();
+        while (inicio < fim && Character.isWhitespace(texto.charAt(inicio))) inicio++;
+        while (fim > inicio && Character.isWhitespace(texto.charAt(fim - 1))) fim--;
+        boolean negativo = inicio < fim && texto.charAt(inicio) == '-';
+        if (negativo) inicio++;
+        if (inicio == fim) throw new NumberFormatException("Valor vazio");
+
+        int separadorDecimal = -1;
+        for (int i = fim - 1; i >= inicio; i--) {
+            char c = texto.charAt(i);
+            if (c == ',' || c == '.') {
+                int casas = fim - i - 1;
+                if (casas == 1 || casas == 2) separadorDecimal = i;
+                break;
+            }
+        }
+
+        long reais = 0;
+        int limiteReais = separadorDecimal < 0 ? fim : separadorDecimal;
+        boolean temDigito = false;
+        for (int i = inicio; i < limiteReais; i++) {
+            char c = texto.charAt(i);
+            if (c >= '0' && c <= '9') {
+                reais = Math.addExact(Math.multiplyExact(reais, 10), c - '0');
+                temDigito = true;
+            } else if (c != '.' && c != ',') {
+                throw new NumberFormatException("Valor inválido: " + texto);
+            }
+        }
+
+        long centavos = 0;
+        if (separadorDecimal >= 0) {
+            int casas = fim - separadorDecimal - 1;
+            for (int i = separadorDecimal + 1; i < fim; i++) {
+                char c = texto.charAt(i);
+                if (c < '0' || c > '9') throw new NumberFormatException("Valor inválido: " + texto);
+                centavos = centavos * 10 + (c - '0');
+            }
+            if (casas == 1) centavos *= 10;
+            temDigito = true;
+        }
+        if (!temDigito) throw new NumberFormatException("Valor inválido: " + texto);
+
+        long total = Math.addExact(Math.multiplyExact(reais, 100), centavos);
+        return negativo ? -total : total;
+    }
+
+    // Acrescenta o valor no formato 1234,56 sem alocar objetos intermediários
+    static StringBuilder formatar(long centavos, StringBuilder sb) {
+        if (centavos < 0) {
+            sb.append('-');
+            if (centavos == Long.MIN_VALUE) {
+                return sb.append(-(centavos / 100)).append(',').append('0').append('8');
+            }
+            centavos = -centavos;
+        }
+        long resto = centavos % 100;
+        sb.append(centavos / 100).append(',');
+        if (resto < 10) sb.append('0');
+        return sb.append(resto);
+    }
+
+    static String formatar(long centavos) {
+        return formatar(centavos, new StringBuilder(16)).toString();
+    }
+}
@@ -0,0 +1,20 @@
+package br.com.agencia;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+
+// Toda gravação da persistência (diário, segmentos, arquivo morto e manifesto) passa por uma
+// Escrita. Fora dos testes de queda é DIRETA, só o write do canal; o InjecaoFalhas (módulo
+// bench) entrega ao Banco uma subclasse que simula a morte do processo num byte escolhido.
+class Escrita {
+    static final Escrita DIRETA = new Escrita();
+
+    int escrever(FileChannel canal, ByteBuffer origem) throws IOException {
+        return canal.write(origem);
+    }
+
+    int escrever(FileChannel canal, ByteBuffer origem, long posicao) throws IOException {
+        return canal.write(origem, posicao);
+    }
+}
@@ -0,0 +1,63 @@
+package br.com.agencia;
+
+import javax.swing.*;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+
+// Executa operações bancárias e de persistência fora da Event Dispatch Thread.
+// O resultado (ou o erro) é sempre entregue de volta na thread do Swing.
+class ExecutorBancario {
+    private final ExecutorService trabalhadores;
+
+    ExecutorBancario() {
+        this(Math.max(2, Runtime.getRuntime().availableProcessors()));
+    }
+
+    ExecutorBancario(int threads) {
+        AtomicInteger contador = new AtomicInteger();
+        trabalhadores = Executors.newFixedThreadPool(threads, r -> {
+            Thread t = new Thread(r, "operacoes-banco-" + contador.incrementAndGet());
+            t.setDaemon(true);
+            return t;
+        });
+    }
+
+    <T> CompletableFuture<T> executar(Callable<T> operacao, Consumer<? super T> naTela) {
+        return executar(operacao, naTela, causa -> JOptionPane.showMessageDialog(null,
+                "Erro ao processar a operação: " + causa.getMessage(), "Erro", JOptionPane.ERROR_MESSAGE));
+    }
+
+    // Com 'naFalha', quem chamou trata o erro (também na thread do Swing) em vez do aviso padrão
+    <T> CompletableFuture<T> executar(Callable<T> operacao, Consumer<? super T> naTela,
+            Consumer<? super Throwable> naFalha) {
+        CompletableFuture<T> futuro = CompletableFuture.supplyAsync(() -> {
+            try {
+                return operacao.call();
+            } catch (RuntimeException e) {
+                throw e;
+            } catch (Exception e) {
+                throw new CompletionException(e);
+            }
+        }, trabalhadores);
+
+        futuro.whenComplete((resultado, erro) -> SwingUtilities.invokeLater(() -> {
+            if (erro == null) {
+                naTela.accept(resultado);
+            } else {
+                Throwable causa = erro instanceof CompletionException && erro.getCause() != null ? erro.getCause() : erro;
+                if (causa.getCause() != null && causa.getMessage() == null) causa = causa.getCause();
+                naFalha.accept(causa);
+            }
+        }));
+        return futuro;
+    }
+
+    void encerrar() {
+        trabalhadores.shutdown();
+    }
+}
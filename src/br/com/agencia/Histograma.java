@@ -0,0 +1,82 @@
+package br.com.agencia;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+// Histograma de latências em escala log-linear, no estilo do HdrHistogram: cada potência de
+// dois é dividida em 2^BITS_PRECISAO faixas, então um percentil tem erro relativo de no máximo
+// 1/2^BITS_PRECISAO (cerca de 3%). Valores abaixo de 2^(BITS_PRECISAO+1) são exatos.
+// Registrar é um incremento atômico num array de tamanho fixo: nada é alocado.
+class Histograma {
+    private static final int BITS_PRECISAO = 5;
+    private static final int SUBFAIXAS = 1 << BITS_PRECISAO;
+
+    private final AtomicLongArray contagens = new AtomicLongArray((64 - BITS_PRECISAO) * SUBFAIXAS);
+    private final LongAdder quantidade = new LongAdder();
+    private final LongAdder soma = new LongAdder();
+    private final LongAccumulator maximo = new LongAccumulator(Math::max, 0);
+
+    void registrar(long valor) {
+        if (valor < 0) valor = 0;
+        contagens.incrementAndGet(faixa(valor));
+        quantidade.increment();
+        soma.add(valor);
+        maximo.accumulate(valor);
+    }
+
+    // Índice da faixa: os BITS_PRECISAO + 1 bits mais altos do valor, deslocados pelo expoente
+    static int faixa(long valor) {
+        if (valor < 2 * SUBFAIXAS) return (int) valor;
+        int expoente = 63 - Long.numberOfLeadingZeros(valor);
+        int deslocamento = expoente - BITS_PRECISAO;
+        return deslocamento * SUBFAIXAS + (int) (valor >>> deslocamento);
+    }
+
+    // Maior valor que cai na faixa
+    static long limite(int faixa) {
+        if (faixa < 2 * SUBFAIXAS) return faixa;
+        int deslocamento = faixa / SUBFAIXAS - 1;
+        long mantissa = SUBFAIXAS + faixa % SUBFAIXAS;
+        return ((mantissa + 1) << deslocamento) - 1;
+    }
+
+    long quantidade() {
+        return quantidade.sum();
+    }
+
+    long maximo() {
+        return maximo.get();
+    }
+
+    double media() {
+        long n = quantidade.sum();
+        return n == 0 ? 0 : (double) soma.sum() / n;
+    }
+
+    // Valor abaixo do qual estão 'fracao' (0 a 1) dos registros. As faixas são lidas uma a uma,
+    // sem parar os registros: com gravações em andamento o resultado é aproximado.
+    long percentil(double fracao) {
+        long total = 0;
+        for (int i = 0; i < contagens.length(); i++) {
+            total += contagens.get(i);
+        }
+        if (total == 0) return 0;
+        long alvo = Math.max(1, (long) Math.ceil(fracao * total));
+        long acumulado = 0;
+        for (int i = 0; i < contagens.length(); i++) {
+            acumulado += contagens.get(i);
+            if (acumulado >= alvo) return Math.min(limite(i), maximo());
+        }
+        return maximo();
+    }
+
+    void zerar() {
+        for (int i = 0; i < contagens.length(); i++) {
+            contagens.set(i, 0);
+        }
+        quantidade.reset();
+        soma.reset();
+        maximo.reset();
+    }
+}
@@ -0,0 +1,177 @@
+package br.com.agencia;
+
+import java.lang.invoke.VarHandle;
+
+// Índice número da conta -> Conta com endereçamento aberto e chaves int primitivas
+// (sem boxing em Integer). Remoções usam deslocamento para trás, sem marcadores.
+class IndiceContas {
+    private static final float FATOR_CARGA = 0.6f;
+
+    // Chaves e valores de uma mesma capacidade. O redimensionamento monta uma tabela nova e a
+    // publica de uma vez: quem lê sem trava nunca combina as chaves de uma com os valores de outra.
+    private static final class Tabela {
+        final int[] chaves;
+        final Conta[] valores;
+
+        Tabela(int capacidade) {
+            chaves = new int[capacidade];
+            valores = new Conta[capacidade];
+        }
+    }
+
+    private volatile Tabela tabela;
+    // Ímpar enquanto uma inclusão ou remoção mexe na tabela publicada (ver buscarSemTrava)
+    private volatile int versao;
+    private int tamanho;
+    private int limite;
+
+    IndiceContas() {
+        this(16);
+    }
+
+    IndiceContas(int capacidadeEsperada) {
+        tabela = new Tabela(capacidadePara(capacidadeEsperada));
+        limite = (int) (tabela.chaves.length * FATOR_CARGA);
+    }
+
+    private static int capacidadePara(int elementos) {
+        int capacidade = 16;
+        while (capacidade * FATOR_CARGA < elementos) capacidade <<= 1;
+        return capacidade;
+    }
+
+    private static int espalhar(int chave) {
+        int h = chave * 0x9E3779B9;
+        return h ^ (h >>> 16);
+    }
+
+    // Tolera leitura concorrente com uma escrita (o chamador valida com leitura otimista):
+    // nunca lança exceção nem entra em laço infinito, no máximo devolve um resultado inválido.
+    Conta buscar(int numero) {
+        Tabela t = tabela;
+        int[] c = t.chaves;
+        Conta[] v = t.valores;
+        int mascara = c.length - 1;
+        int i = espalhar(numero) & mascara;
+        Conta conta;
+        for (int tentativas = 0; tentativas <= mascara && (conta = v[i]) != null; tentativas++) {
+            // A chave pode ter mudado de posição depois de lido o valor (deslocamento)
+            if (c[i] == numero) return conta.getNumero() == numero ? conta : null;
+            i = (i + 1) & mascara;
+        }
+        return null;
+    }
+
+    // Para quem não pode validar com a trava de estrutura (está com a faixa de uma conta
+    // travada): repete a busca se uma inclusão ou remoção mexeu na tabela durante ela. Quem
+    // altera o índice não espera por faixa nenhuma, então a espera é curta.
+    Conta buscarSemTrava(int numero) {
+        while (true) {
+            int antes = versao;
+            if ((antes & 1) == 0) {
+                Conta conta = buscar(numero);
+                VarHandle.acquireFence();
+                if (versao == antes) return conta;
+            }
+            Thread.onSpinWait();
+        }
+    }
+
+    void inserir(Conta conta) {
+        if (tamanho >= limite) redimensionar(tabela.chaves.length << 1);
+        iniciarAlteracao();
+        try {
+            colocar(tabela, conta);
+        } finally {
+            versao++;
+        }
+    }
+
+    private void colocar(Tabela t, Conta conta) {
+        int[] chaves = t.chaves;
+        Conta[] valores = t.valores;
+        int numero = conta.getNumero();
+        int mascara = chaves.length - 1;
+        int i = espalhar(numero) & mascara;
+        while (valores[i] != null) {
+            if (chaves[i] == numero) {
+                valores[i] = conta;
+                return;
+            }
+            i = (i + 1) & mascara;
+        }
+        chaves[i] = numero;
+        valores[i] = conta;
+        tamanho++;
+    }
+
+    Conta remover(int numero) {
+        int[] chaves = tabela.chaves;
+        Conta[] valores = tabela.valores;
+        int mascara = chaves.length - 1;
+        int i = espalhar(numero) & mascara;
+        while (valores[i] != null) {
+            if (chaves[i] == numero) {
+                Conta removida = valores[i];
+                iniciarAlteracao();
+                try {
+                    deslocarApos(chaves, valores, i, mascara);
+                } finally {
+                    versao++;
+                }
+                tamanho--;
+                return removida;
+            }
+            i = (i + 1) & mascara;
+        }
+        return null;
+    }
+
+    // Só um escritor por vez (o chamador tem a trava de estrutura); as gravações na tabela
+    // não podem ser vistas antes de a versão ficar ímpar
+    private void iniciarAlteracao() {
+        versao++;
+        VarHandle.storeStoreFence();
+    }
+
+    // Fecha o buraco deixado na posição livre, puxando para trás as entradas que colidiram
+    private static void deslocarApos(int[] chaves, Conta[] valores, int livre, int mascara) {
+        int i = livre;
+        while (true) {
+            i = (i + 1) & mascara;
+            Conta conta = valores[i];
+            if (conta == null) break;
+            int ideal = espalhar(chaves[i]) & mascara;
+            boolean podeMover = livre <= i ? (ideal <= livre || ideal > i) : (ideal <= livre && ideal > i);
+            if (podeMover) {
+                chaves[livre] = chaves[i];
+                valores[livre] = conta;
+                livre = i;
+            }
+        }
+        valores[livre] = null;
+        chaves[livre] = 0;
+    }
+
+    private void redimensionar(int capacidade) {
+        Tabela nova = new Tabela(capacidade);
+        tamanho = 0;
+        for (Conta conta : tabela.valores) {
+            if (conta != null) colocar(nova, conta);
+        }
+        limite = (int) (capacidade * FATOR_CARGA);
+        tabela = nova;
+    }
+
+    int tamanho() { return tamanho; }
+
+    // Contas presentes, em ordem arbitrária
+    Conta[] listar() {
+        Conta[] contas = new Conta[tamanho];
+        int k = 0;
+        for (Conta conta : tabela.valores) {
+            if (conta != null) contas[k++] = conta;
+        }
+        return contas;
+    }
+}
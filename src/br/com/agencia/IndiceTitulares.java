@@ -0,0 +1,107 @@
+package br.com.agencia;
+
+import java.text.Normalizer;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.TreeMap;
+
+// Índice de busca por prefixo do nome do titular, sem diferenciar maiúsculas nem acentos
+// ("joão" encontra "Joao" e vice-versa). Cada nome entra uma vez para cada palavra, a partir
+// dela até o fim: "Ana Maria Silva" entra como "ana maria silva", "maria silva" e "silva",
+// então tanto "ana m" quanto "silva" o encontram. A busca é um intervalo da árvore ordenada.
+// Não é thread-safe: o Banco o protege com a trava de estrutura.
+class IndiceTitulares {
+    // Contas com a mesma chave (nomes repetidos, sobrenomes comuns)
+    private static final class Numeros {
+        int[] numeros = new int[2];
+        int tamanho;
+
+        void incluir(int numero) {
+            if (tamanho == numeros.length) numeros = Arrays.copyOf(numeros, tamanho * 2);
+            numeros[tamanho++] = numero;
+        }
+
+        boolean remover(int numero) {
+            for (int i = 0; i < tamanho; i++) {
+                if (numeros[i] == numero) {
+                    numeros[i] = numeros[--tamanho];
+                    return true;
+                }
+            }
+            return false;
+        }
+    }
+
+    private final TreeMap<String, Numeros> chaves = new TreeMap<>();
+
+    // Minúsculas, sem acentos e com um único espaço entre as palavras
+    static String normalizar(String texto) {
+        if (texto == null) return "";
+        String decomposto = texto;
+        for (int i = 0; i < texto.length(); i++) {
+            if (texto.charAt(i) >= 0x80) {
+                decomposto = Normalizer.normalize(texto, Normalizer.Form.NFD);
+                break;
+            }
+        }
+        StringBuilder sb = new StringBuilder(decomposto.length());
+        boolean espaco = false;
+        for (int i = 0; i < decomposto.length(); i++) {
+            char c = decomposto.charAt(i);
+            if (Character.isWhitespace(c)) {
+                espaco = sb.length() > 0;
+            } else if (Character.getType(c) != Character.NON_SPACING_MARK) {
+                if (espaco) sb.append(' ');
+                espaco = false;
+                sb.append(Character.toLowerCase(c));
+            }
+        }
+        return sb.toString();
+    }
+
+    void incluir(int numero, String titular) {
+        String nome = normalizar(titular);
+        for (int i = 0; i < nome.length(); i++) {
+            if (i == 0 || nome.charAt(i - 1) == ' ') chaves.computeIfAbsent(nome.substring(i), k -> new Numeros()).incluir(numero);
+        }
+    }
+
+    void remover(int numero, String titular) {
+        String nome = normalizar(titular);
+        for (int i = 0; i < nome.length(); i++) {
+            if (i == 0 || nome.charAt(i - 1) == ' ') {
+                String chave = nome.substring(i);
+                Numeros numeros = chaves.get(chave);
+                if (numeros != null && numeros.remover(numero) && numeros.tamanho == 0) chaves.remove(chave);
+            }
+        }
+    }
+
+    // Até 'limite' números de contas cujo titular tem uma palavra começando por 'prefixo'
+    // (que pode ter várias palavras), em ordem alfabética do trecho encontrado
+    int[] buscar(String prefixo, int limite) {
+        String chave = normalizar(prefixo);
+        if (chave.isEmpty() || limite <= 0) return new int[0];
+        int[] encontrados = new int[Math.min(limite, 64)];
+        int quantidade = 0;
+        for (Map.Entry<String, Numeros> e : chaves.subMap(chave, true, chave + Character.MAX_VALUE, false).entrySet()) {
+            Numeros numeros = e.getValue();
+            for (int i = 0; i < numeros.tamanho && quantidade < limite; i++) {
+                int numero = numeros.numeros[i];
+                // Um nome com a mesma palavra duas vezes ("Ana Ana") aparece por duas chaves
+                if (contem(encontrados, quantidade, numero)) continue;
+                if (quantidade == encontrados.length) encontrados = Arrays.copyOf(encontrados, Math.min(limite, quantidade * 2));
+                encontrados[quantidade++] = numero;
+            }
+            if (quantidade == limite) break;
+        }
+        return Arrays.copyOf(encontrados, quantidade);
+    }
+
+    private static boolean contem(int[] numeros, int quantidade, int numero) {
+        for (int i = 0; i < quantidade; i++) {
+            if (numeros[i] == numero) return true;
+        }
+        return false;
+    }
+}
@@ -0,0 +1,156 @@
+package br.com.agencia;
+
+import java.util.AbstractList;
+import java.util.List;
+import java.util.TreeMap;
+import java.util.concurrent.ForkJoinPool;
+
+// Imagem consistente do banco no momento da abertura: saldos e históricos de todas as contas
+// como estavam, sem nenhuma operação pela metade. Depósitos, saques e transferências seguem
+// normalmente enquanto ela é lida, de uma ou de várias threads ao mesmo tempo.
+//
+// Cada abertura encerra uma época (Epocas). A primeira alteração de uma conta numa época mais
+// nova, com algum instantâneo aberto, guarda o saldo e o tamanho do histórico de antes
+// (Versao); o instantâneo lê a versão da sua época. O histórico só cresce no fim, então o da
+// imagem é o começo do atual, sem cópia. Contas ainda só no armazém são lidas dos arquivos
+// mapeados, que não mudam depois de gravados.
+//
+// O titular é sempre o atual. Feche o instantâneo (try-with-resources) para que as contas
+// parem de guardar versões para ele.
+class Instantaneo implements AutoCloseable {
+    // Estado de uma conta antes de ser alterada na época seguinte a 'ate'; vale para os
+    // instantâneos das épocas de 'ate' para trás, até a versão anterior
+    static final class Versao {
+        final long ate;
+        final long saldo;
+        final int tamanho;
+        Versao anterior;
+
+        Versao(long ate, long saldo, int tamanho, Versao anterior) {
+            this.ate = ate;
+            this.saldo = saldo;
+            this.tamanho = tamanho;
+            this.anterior = anterior;
+        }
+    }
+
+    // Época atual e a do instantâneo aberto mais antigo. As operações leem as duas com a faixa
+    // da conta travada, antes de alterá-la: uma operação ainda em andamento na abertura fica
+    // com a época do instantâneo, e o instantâneo, ao ler a conta, espera a faixa ser liberada.
+    static final class Epocas {
+        private volatile long atual = 1;
+        // Long.MAX_VALUE quando não há instantâneo aberto
+        private volatile long maisAntiga = Long.MAX_VALUE;
+        // época -> instantâneos abertos nela
+        private final TreeMap<Long, Integer> abertas = new TreeMap<>();
+
+        long atual() { return atual; }
+        long maisAntiga() { return maisAntiga; }
+
+        synchronized long abrir() {
+            long epoca = atual;
+            abertas.merge(epoca, 1, Integer::sum);
+            maisAntiga = abertas.firstKey();
+            atual = epoca + 1;
+            return epoca;
+        }
+
+        synchronized void fechar(long epoca) {
+            abertas.computeIfPresent(epoca, (e, n) -> n > 1 ? n - 1 : null);
+            maisAntiga = abertas.isEmpty() ? Long.MAX_VALUE : abertas.firstKey();
+        }
+    }
+
+    private final Epocas epocas;
+    private final long epoca;
+    private final MotorTransacoes motor;
+    // Por posição, em ordem de número: a conta em memória ou o arquivo e a posição nele
+    private final int[] numeros;
+    private final Conta[] contas;
+    private final ArmazemContas[] arquivos;
+    private final int[] posicoes;
+    private boolean fechado;
+
+    Instantaneo(Epocas epocas, long epoca, MotorTransacoes motor,
+                int[] numeros, Conta[] contas, ArmazemContas[] arquivos, int[] posicoes) {
+        this.epocas = epocas;
+        this.epoca = epoca;
+        this.motor = motor;
+        this.numeros = numeros;
+        this.contas = contas;
+        this.arquivos = arquivos;
+        this.posicoes = posicoes;
+    }
+
+    int quantidade() {
+        return numeros.length;
+    }
+
+    int numero(int i) {
+        return numeros[i];
+    }
+
+    String titular(int i) {
+        return contas[i] != null ? contas[i].getTitular() : arquivos[i].titular(posicoes[i]);
+    }
+
+    long saldo(int i) {
+        if (contas[i] == null) return arquivos[i].saldo(posicoes[i]);
+        motor.travar(numeros[i]);
+        try {
+            Versao versao = contas[i].versao(epoca);
+            return versao != null ? versao.saldo : contas[i].getSaldoCentavos();
+        } finally {
+            motor.destravar(numeros[i]);
+        }
+    }
+
+    // Histórico da conta na imagem; só leitura
+    Lancamentos lancamentos(int i) {
+        if (contas[i] == null) return arquivos[i].lancamentos(posicoes[i]);
+        motor.travar(numeros[i]);
+        try {
+            Lancamentos lancamentos = contas[i].getLancamentos();
+            Versao versao = contas[i].versao(epoca);
+            return lancamentos.congelar(versao != null ? versao.tamanho : lancamentos.tamanho());
+        } finally {
+            motor.destravar(numeros[i]);
+        }
+    }
+
+    List<Transacao> transacoes(int i) {
+        Lancamentos lancamentos = lancamentos(i);
+        return new AbstractList<Transacao>() {
+            @Override
+            public Transacao get(int k) {
+                return lancamentos.transacao(k);
+            }
+
+            @Override
+            public int size() {
+                return lancamentos.tamanho();
+            }
+        };
+    }
+
+    long saldoTotal() {
+        long total = 0;
+        for (int i = 0; i < numeros.length; i++) {
+            total = Dinheiro.somar(total, saldo(i));
+        }
+        return total;
+    }
+
+    // Consulta em todas as contas da imagem, dividida entre as threads do pool.
+    // Ordem: por conta e, nela, por instante.
+    ConsultaLancamentos.Resultado consultar(ConsultaLancamentos consulta, ForkJoinPool pool) {
+        return pool.invoke(new ConsultaLancamentos.Busca(consulta, numeros, this::lancamentos, 0, numeros.length));
+    }
+
+    @Override
+    public synchronized void close() {
+        if (fechado) return;
+        fechado = true;
+        epocas.fechar(epoca);
+    }
+}
@@ -0,0 +1,269 @@
+package br.com.agencia;
+
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.Serializable;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.function.IntFunction;
+
+// Histórico de transações de uma conta em colunas de arrays primitivos.
+// Cada lançamento ocupa 21 bytes (instante, tipo, valor em centavos e conta
+// de contrapartida); a descrição só é montada quando o extrato é exibido.
+//
+// Contas lidas do armazém mapeado começam com uma base somente leitura apontando
+// direto para as colunas no arquivo (instantes | tipos | valores | contrapartes);
+// os lançamentos novos vão para os arrays em memória, depois da base. Os mais antigos
+// podem estar antes dela, comprimidos no arquivo morto (ArquivoHistorico):
+//
+//   arquivados [0, tamanhoArquivado) | base | memória
+class Lancamentos implements Serializable {
+    private static final long serialVersionUID = 1L;
+
+    static final byte DEPOSITO = 0;
+    static final byte SAQUE = 1;
+    static final byte TRANSFERENCIA_ENVIADA = 2;
+    static final byte TRANSFERENCIA_RECEBIDA = 3;
+
+    static final int SEM_CONTRAPARTE = -1;
+
+    private static final int CAPACIDADE_INICIAL = 4;
+
+    private transient long[] instantes;
+    private transient byte[] tipos;
+    private transient long[] valores;
+    private transient int[] contrapartes;
+    private transient int tamanho;
+
+    private transient ArquivoHistorico.Arquivados arquivados;
+    private transient int tamanhoArquivado;
+    private transient ByteBuffer base;
+    private transient int tamanhoBase;
+    // Índice do primeiro lançamento nos arrays em memória
+    private transient int inicioMemoria;
+    // Começo de outro histórico visto por um Instantaneo: não recebe lançamentos
+    private transient boolean congelado;
+
+    Lancamentos() {
+        alocar(0);
+    }
+
+    // Usa diretamente os arrays informados (já preenchidos até 'tamanho')
+    Lancamentos(long[] instantes, byte[] tipos, long[] valores, int[] contrapartes, int tamanho) {
+        this.instantes = instantes;
+        this.tipos = tipos;
+        this.valores = valores;
+        this.contrapartes = contrapartes;
+        this.tamanho = tamanho;
+    }
+
+    // Histórico com 'tamanho' lançamentos lidos sob demanda das colunas em 'base'
+    Lancamentos(ByteBuffer base, int tamanho) {
+        this(null, base, tamanho);
+    }
+
+    // Os lançamentos de 'arquivados' (pode ser null) seguidos dos 'tamanhoBase' de 'base'
+    Lancamentos(ArquivoHistorico.Arquivados arquivados, ByteBuffer base, int tamanhoBase) {
+        alocar(0);
+        this.arquivados = arquivados;
+        this.tamanhoArquivado = arquivados == null ? 0 : arquivados.quantidade;
+        this.base = base;
+        this.tamanhoBase = tamanhoBase;
+        this.inicioMemoria = tamanhoArquivado + tamanhoBase;
+        this.tamanho = inicioMemoria;
+    }
+
+    private void alocar(int capacidade) {
+        instantes = new long[capacidade];
+        tipos = new byte[capacidade];
+        valores = new long[capacidade];
+        contrapartes = new int[capacidade];
+    }
+
+    // O instante nunca fica antes do lançamento anterior (relógio do sistema ajustado para
+    // trás, perna de transferência vinda de outra partição): as buscas por período
+    // (primeiroAPartirDe) contam com o histórico em ordem
+    void adicionar(long instante, byte tipo, long centavos, int contraparte) {
+        if (congelado) throw new IllegalStateException("Histórico somente leitura");
+        if (tamanho > 0) instante = Math.max(instante, instante(tamanho - 1));
+        int i = tamanho - inicioMemoria;
+        if (i == tipos.length) crescer();
+        instantes[i] = instante;
+        tipos[i] = tipo;
+        valores[i] = centavos;
+        contrapartes[i] = contraparte;
+        tamanho++;
+    }
+
+    private void crescer() {
+        int capacidade = Math.max(CAPACIDADE_INICIAL, tipos.length + (tipos.length >> 1));
+        instantes = Arrays.copyOf(instantes, capacidade);
+        tipos = Arrays.copyOf(tipos, capacidade);
+        valores = Arrays.copyOf(valores, capacidade);
+        contrapartes = Arrays.copyOf(contrapartes, capacidade);
+    }
+
+    int tamanho() { return tamanho; }
+
+    ArquivoHistorico.Arquivados arquivados() { return arquivados; }
+    int tamanhoArquivado() { return tamanhoArquivado; }
+
+    // Este histórico gravado até 'gravado.tamanho()' (arquivo morto e base do segmento novo)
+    // passa a ser lido de lá; só os lançamentos posteriores são copiados para a memória
+    Lancamentos sobre(Lancamentos gravado) {
+        for (int i = gravado.tamanho; i < tamanho; i++) {
+            gravado.adicionar(instante(i), tipo(i), valor(i), contraparte(i));
+        }
+        return gravado;
+    }
+
+    long instante(int i) {
+        if (i >= inicioMemoria) return instantes[i - inicioMemoria];
+        if (i < tamanhoArquivado) return arquivados.instante(i);
+        return base.getLong((i - tamanhoArquivado) * 8);
+    }
+
+    byte tipo(int i) {
+        if (i >= inicioMemoria) return tipos[i - inicioMemoria];
+        if (i < tamanhoArquivado) return arquivados.tipo(i);
+        return base.get(tamanhoBase * 8 + i - tamanhoArquivado);
+    }
+
+    long valor(int i) {
+        if (i >= inicioMemoria) return valores[i - inicioMemoria];
+        if (i < tamanhoArquivado) return arquivados.valor(i);
+        return base.getLong(tamanhoBase * 9 + (i - tamanhoArquivado) * 8);
+    }
+
+    int contraparte(int i) {
+        if (i >= inicioMemoria) return contrapartes[i - inicioMemoria];
+        if (i < tamanhoArquivado) return arquivados.contraparte(i);
+        return base.getInt(tamanhoBase * 17 + (i - tamanhoArquivado) * 4);
+    }
+
+    // Colunas da base já no formato do arquivo, quando não há lançamentos em memória depois dela
+    ByteBuffer colunasMapeadas() {
+        return base != null && tamanho == inicioMemoria ? base.duplicate() : null;
+    }
+
+    // Os primeiros 'tamanho' lançamentos, sem cópia: os arrays atuais são compartilhados, e
+    // lançamentos novos só são escritos depois do fim deles (ou em arrays novos, ao crescer).
+    // O chamador tem a faixa da conta travada.
+    Lancamentos congelar(int tamanho) {
+        Lancamentos inicio = new Lancamentos(instantes, tipos, valores, contrapartes, tamanho);
+        // As colunas da base têm posições calculadas pelo tamanho dela, que não muda
+        inicio.arquivados = arquivados;
+        inicio.tamanhoArquivado = tamanhoArquivado;
+        inicio.base = base;
+        inicio.tamanhoBase = tamanhoBase;
+        inicio.inicioMemoria = inicioMemoria;
+        inicio.congelado = true;
+        return inicio;
+    }
+
+    // Primeiro índice cujo instante é >= 'instante' (busca binária; adicionar mantém a ordem)
+    int primeiroAPartirDe(long instante) {
+        return primeiroAPartirDe(instante, 0);
+    }
+
+    // O mesmo, procurando só a partir de 'inicio'
+    int primeiroAPartirDe(long instante, int inicio) {
+        int baixo = inicio;
+        int alto = tamanho;
+        while (baixo < alto) {
+            int meio = (baixo + alto) >>> 1;
+            if (instante(meio) < instante) {
+                baixo = meio + 1;
+            } else {
+                alto = meio;
+            }
+        }
+        return baixo;
+    }
+
+    static String rotulo(byte tipo) {
+        switch (tipo) {
+            case DEPOSITO: return "DEPÓSITO";
+            case SAQUE: return "SAQUE";
+            default: return "TRANSFERÊNCIA";
+        }
+    }
+
+    // Monta a descrição do lançamento; 'titulares' (opcional) resolve o nome da contrapartida
+    StringBuilder descrever(int i, StringBuilder sb, IntFunction<String> titulares) {
+        byte tipo = tipo(i);
+        switch (tipo) {
+            case DEPOSITO:
+                return sb.append("Depósito em conta");
+            case SAQUE:
+                return sb.append("Saque em conta");
+            default:
+                int contraparte = contraparte(i);
+                sb.append(tipo == TRANSFERENCIA_ENVIADA ? "Transferência para conta " : "Transferência da conta ");
+                if (contraparte == SEM_CONTRAPARTE) return sb.append('?');
+                sb.append(contraparte);
+                String titular = titulares == null ? null : titulares.apply(contraparte);
+                return titular == null ? sb : sb.append(" - ").append(titular);
+        }
+    }
+
+    Transacao transacao(int i) {
+        return new Transacao(rotulo(tipo(i)), valor(i), descrever(i, new StringBuilder(48), null).toString(),
+                new Date(instante(i)));
+    }
+
+    // Converte um lançamento do formato antigo (objeto Transacao com descrição pronta)
+    void adicionar(Transacao t) {
+        String descricao = t.getDescricao() == null ? "" : t.getDescricao();
+        byte tipo;
+        int contraparte = SEM_CONTRAPARTE;
+        if ("SAQUE".equals(t.getTipo())) {
+            tipo = SAQUE;
+        } else if ("DEPÓSITO".equals(t.getTipo())) {
+            tipo = DEPOSITO;
+        } else {
+            tipo = descricao.startsWith("Transferência para") ? TRANSFERENCIA_ENVIADA : TRANSFERENCIA_RECEBIDA;
+            contraparte = numeroNaDescricao(descricao);
+        }
+        adicionar(t.getData().getTime(), tipo, t.getValorCentavos(), contraparte);
+    }
+
+    private static int numeroNaDescricao(String descricao) {
+        int i = descricao.indexOf("conta ");
+        if (i < 0) return SEM_CONTRAPARTE;
+        i += "conta ".length();
+        int numero = 0;
+        int inicio = i;
+        while (i < descricao.length() && Character.isDigit(descricao.charAt(i)) && i - inicio < 9) {
+            numero = numero * 10 + (descricao.charAt(i) - '0');
+            i++;
+        }
+        return i == inicio ? SEM_CONTRAPARTE : numero;
+    }
+
+    private void writeObject(ObjectOutputStream out) throws IOException {
+        out.defaultWriteObject();
+        out.writeInt(tamanho);
+        for (int i = 0; i < tamanho; i++) {
+            out.writeLong(instante(i));
+            out.writeByte(tipo(i));
+            out.writeLong(valor(i));
+            out.writeInt(contraparte(i));
+        }
+    }
+
+    private void readObject(ObjectInputStream in) throws IOException, ClassNotFoundException {
+        in.defaultReadObject();
+        int n = in.readInt();
+        alocar(n);
+        for (int i = 0; i < n; i++) {
+            instantes[i] = in.readLong();
+            tipos[i] = in.readByte();
+            valores[i] = in.readLong();
+            contrapartes[i] = in.readInt();
+        }
+        tamanho = n;
+    }
+}
@@ -0,0 +1,155 @@
+package br.com.agencia;
+
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import javax.management.StandardMBean;
+import java.lang.management.ManagementFactory;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.LongSupplier;
+
+// Contadores e histogramas de latência das operações do Banco, mais os bytes gravados e a
+// duração da última carga. O caminho de registro (System.nanoTime, LongAdder e Histograma)
+// não aloca nem trava; a leitura fica para o JMX e para o relatório periódico.
+class Metricas {
+    static final class Operacao implements MetricasOperacaoMBean {
+        final String nome;
+        private final Histograma latencias = new Histograma();
+        private final LongAdder recusadas = new LongAdder();
+
+        private Operacao(String nome) {
+            this.nome = nome;
+        }
+
+        // 'inicio' é o System.nanoTime() do começo da operação; 'aceita' false conta como
+        // recusada (saldo insuficiente, conta inexistente, senha errada)
+        void registrar(long inicio, boolean aceita) {
+            latencias.registrar(System.nanoTime() - inicio);
+            if (!aceita) recusadas.increment();
+        }
+
+        void registrar(long inicio) {
+            latencias.registrar(System.nanoTime() - inicio);
+        }
+
+        @Override public long getQuantidade() { return latencias.quantidade(); }
+        @Override public long getRecusadas() { return recusadas.sum(); }
+        @Override public double getMediaMicros() { return latencias.media() / 1e3; }
+        @Override public double getP50Micros() { return latencias.percentil(0.50) / 1e3; }
+        @Override public double getP90Micros() { return latencias.percentil(0.90) / 1e3; }
+        @Override public double getP99Micros() { return latencias.percentil(0.99) / 1e3; }
+        @Override public double getP999Micros() { return latencias.percentil(0.999) / 1e3; }
+        @Override public double getMaximoMicros() { return latencias.maximo() / 1e3; }
+
+        @Override
+        public void zerar() {
+            latencias.zerar();
+            recusadas.reset();
+        }
+    }
+
+    private final class Persistencia implements MetricasPersistenciaMBean {
+        @Override public long getBytesDiario() { return bytesDiario.getAsLong(); }
+        @Override public long getBytesCheckpoint() { return bytesCheckpoint.sum(); }
+        @Override public long getCheckpoints() { return checkpoints.sum(); }
+        @Override public double getUltimaCargaMillis() { return ultimaCargaNanos / 1e6; }
+        @Override public long getFalhasDados() { return falhasDados.sum(); }
+        @Override public String getUltimaFalhaDados() { return ultimaFalhaDados; }
+        @Override public long getFalhasCompactacao() { return falhasCompactacao.sum(); }
+        @Override public String getUltimaFalhaCompactacao() { return ultimaFalhaCompactacao; }
+    }
+
+    final Operacao deposito = new Operacao("deposito");
+    final Operacao saque = new Operacao("saque");
+    final Operacao transferencia = new Operacao("transferencia");
+    final Operacao extrato = new Operacao("extrato");
+    final Operacao autenticacao = new Operacao("autenticacao");
+    final Operacao salvar = new Operacao("salvar");
+    final Operacao carregar = new Operacao("carregar");
+    private final Operacao[] operacoes = {deposito, saque, transferencia, extrato, autenticacao, salvar, carregar};
+
+    private final LongAdder bytesCheckpoint = new LongAdder();
+    private final LongAdder checkpoints = new LongAdder();
+    private volatile long ultimaCargaNanos;
+    private final LongAdder falhasDados = new LongAdder();
+    private volatile String ultimaFalhaDados;
+    private final LongAdder falhasCompactacao = new LongAdder();
+    private volatile String ultimaFalhaCompactacao;
+    private final LongSupplier bytesDiario;
+
+    // 'bytesDiario' lê o total gravado pelo diário, que é trocado a cada carga
+    Metricas(LongSupplier bytesDiario) {
+        this.bytesDiario = bytesDiario;
+    }
+
+    void checkpointGravado(long inicio, long bytes) {
+        salvar.registrar(inicio);
+        bytesCheckpoint.add(bytes);
+        checkpoints.increment();
+    }
+
+    // Avisos do armazém (ArmazemSegmentado.avisar)
+    void falhaDeDados(String descricao) {
+        ultimaFalhaDados = descricao;
+        falhasDados.increment();
+    }
+
+    // Compactação do registro que falhou e fica para a próxima (BancoParticionado)
+    void falhaDeCompactacao(String descricao) {
+        ultimaFalhaCompactacao = descricao;
+        falhasCompactacao.increment();
+    }
+
+    void cargaConcluida(long inicio) {
+        ultimaCargaNanos = System.nanoTime() - inicio;
+        carregar.registrar(inicio);
+    }
+
+    // Registra as MBeans no servidor da plataforma. Com mais de um Banco na mesma JVM
+    // (benchmarks, testes) o último a registrar fica exposto.
+    void registrarJmx() {
+        registrarJmx("");
+    }
+
+    // 'chaves' entra no nome de cada MBean (",particao=3"), para as métricas de vários
+    // bancos da mesma JVM aparecerem lado a lado
+    void registrarJmx(String chaves) {
+        try {
+            MBeanServer servidor = ManagementFactory.getPlatformMBeanServer();
+            for (Operacao operacao : operacoes) {
+                registrar(servidor, new ObjectName("br.com.agencia:type=Operacao" + chaves + ",name=" + operacao.nome),
+                        new StandardMBean(operacao, MetricasOperacaoMBean.class));
+            }
+            registrar(servidor, new ObjectName("br.com.agencia:type=Persistencia" + chaves),
+                    new StandardMBean(new Persistencia(), MetricasPersistenciaMBean.class));
+        } catch (JMException e) {
+            // sem JMX as métricas continuam no relatório periódico
+        }
+    }
+
+    private static void registrar(MBeanServer servidor, ObjectName nome, Object mbean) throws JMException {
+        if (servidor.isRegistered(nome)) servidor.unregisterMBean(nome);
+        servidor.registerMBean(mbean, nome);
+    }
+
+    String relatorio() {
+        StringBuilder sb = new StringBuilder(1024);
+        sb.append(String.format("%-14s %11s %10s %11s %11s %11s %11s %11s %11s%n", "operação", "quantidade",
+                "recusadas", "média (µs)", "p50", "p90", "p99", "p99,9", "máx"));
+        for (Operacao o : operacoes) {
+            sb.append(String.format("%-14s %11d %10d %11.1f %11.1f %11.1f %11.1f %11.1f %11.1f%n", o.nome,
+                    o.getQuantidade(), o.getRecusadas(), o.getMediaMicros(), o.getP50Micros(), o.getP90Micros(),
+                    o.getP99Micros(), o.getP999Micros(), o.getMaximoMicros()));
+        }
+        sb.append(String.format("diário: %d bytes gravados; checkpoints: %d, %d bytes gravados; última carga: %.1f ms%n",
+                bytesDiario.getAsLong(), checkpoints.sum(), bytesCheckpoint.sum(), ultimaCargaNanos / 1e6));
+        if (falhasDados.sum() > 0) {
+            sb.append(String.format("dados ilegíveis contornados: %d; último: %s%n", falhasDados.sum(), ultimaFalhaDados));
+        }
+        if (falhasCompactacao.sum() > 0) {
+            sb.append(String.format("compactações adiadas por falha: %d; última: %s%n", falhasCompactacao.sum(),
+                    ultimaFalhaCompactacao));
+        }
+        return sb.toString();
+    }
+}
@@ -0,0 +1,23 @@
+package br.com.agencia;
+
+// Métricas de uma operação do Banco expostas por JMX (br.com.agencia:type=Operacao,name=...).
+// Latências em microssegundos.
+public interface MetricasOperacaoMBean {
+    long getQuantidade();
+
+    long getRecusadas();
+
+    double getMediaMicros();
+
+    double getP50Micros();
+
+    double getP90Micros();
+
+    double getP99Micros();
+
+    double getP999Micros();
+
+    double getMaximoMicros();
+
+    void zerar();
+}
@@ -0,0 +1,23 @@
+package br.com.agencia;
+
+// Gravação e carga dos dados do Banco expostas por JMX (br.com.agencia:type=Persistencia)
+public interface MetricasPersistenciaMBean {
+    long getBytesDiario();
+
+    long getBytesCheckpoint();
+
+    long getCheckpoints();
+
+    double getUltimaCargaMillis();
+
+    // Dados ilegíveis contornados: volta ao checkpoint anterior, arquivo ou bloco corrompido
+    long getFalhasDados();
+
+    // Descrição da última delas, ou null
+    String getUltimaFalhaDados();
+
+    // Compactações do registro de transferências que falharam e ficaram para a próxima
+    long getFalhasCompactacao();
+
+    String getUltimaFalhaCompactacao();
+}
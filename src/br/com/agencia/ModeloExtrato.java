@@ -0,0 +1,66 @@
+package br.com.agencia;
+
+import javax.swing.*;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+// Modelo da lista do extrato. Formatar uma página trava a faixa da conta e pode ler o arquivo
+// morto, então as páginas são pedidas ao ExecutorBancario; até a página chegar, suas linhas
+// mostram CARREGANDO. Só as páginas vistas mais recentemente ficam guardadas.
+// Usado apenas na thread do Swing.
+class ModeloExtrato extends AbstractListModel<String> {
+    private static final long serialVersionUID = 1L;
+
+    static final String CARREGANDO = "Carregando...";
+    private static final int PAGINAS_GUARDADAS = 32;
+
+    private final CursorExtrato cursor;
+    private final ExecutorBancario executor;
+    private final Map<Integer, List<String>> paginas = new LinkedHashMap<>(64, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<Integer, List<String>> maisAntiga) {
+            return size() > PAGINAS_GUARDADAS;
+        }
+    };
+    private final Set<Integer> pedidas = new HashSet<>();
+
+    ModeloExtrato(CursorExtrato cursor, ExecutorBancario executor) {
+        this.cursor = cursor;
+        this.executor = executor;
+    }
+
+    @Override
+    public int getSize() {
+        return cursor.tamanho();
+    }
+
+    @Override
+    public String getElementAt(int i) {
+        int numeroPagina = i / CursorExtrato.TAMANHO_PAGINA;
+        List<String> pagina = paginas.get(numeroPagina);
+        if (pagina != null) return pagina.get(i % CursorExtrato.TAMANHO_PAGINA);
+        carregar(numeroPagina);
+        return CARREGANDO;
+    }
+
+    private void carregar(int numeroPagina) {
+        if (!pedidas.add(numeroPagina)) return;
+        int primeira = numeroPagina * CursorExtrato.TAMANHO_PAGINA;
+        int quantidade = Math.min(CursorExtrato.TAMANHO_PAGINA, cursor.tamanho() - primeira);
+        executor.executar(() -> cursor.pagina(primeira, quantidade), linhas -> mostrar(numeroPagina, linhas),
+                // Sem aviso por página: as linhas mostram o erro e a página é pedida de novo
+                // quando sair da memória e voltar à tela
+                erro -> mostrar(numeroPagina, Collections.nCopies(quantidade, "Erro ao ler o extrato: " + erro.getMessage())));
+    }
+
+    private void mostrar(int numeroPagina, List<String> linhas) {
+        pedidas.remove(numeroPagina);
+        paginas.put(numeroPagina, linhas);
+        int primeira = numeroPagina * CursorExtrato.TAMANHO_PAGINA;
+        fireContentsChanged(this, primeira, primeira + linhas.size() - 1);
+    }
+}
@@ -0,0 +1,77 @@
+package br.com.agencia;
+
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.concurrent.locks.StampedLock;
+
+// Controle de concorrência das operações do Banco.
+// Cada conta é protegida por uma de várias travas (faixas) escolhida pelo número,
+// de modo que operações em contas distintas rodam em paralelo. Transferências
+// travam as duas faixas sempre em ordem crescente de índice, evitando deadlock.
+// Mudanças estruturais (criar/remover contas, usuários, checkpoint) usam a trava
+// de estrutura, que sempre é adquirida antes de qualquer faixa.
+class MotorTransacoes {
+    private final ReentrantLock[] faixas;
+    private final int mascara;
+    final StampedLock estrutura = new StampedLock();
+
+    MotorTransacoes() {
+        this(Runtime.getRuntime().availableProcessors() * 64);
+    }
+
+    MotorTransacoes(int faixasDesejadas) {
+        int n = 1;
+        while (n < faixasDesejadas) n <<= 1;
+        faixas = new ReentrantLock[n];
+        for (int i = 0; i < n; i++) {
+            faixas[i] = new ReentrantLock();
+        }
+        mascara = n - 1;
+    }
+
+    private int indice(int numero) {
+        int h = numero * 0x9E3779B9;
+        return (h ^ (h >>> 16)) & mascara;
+    }
+
+    void travar(int numero) {
+        faixas[indice(numero)].lock();
+    }
+
+    void destravar(int numero) {
+        faixas[indice(numero)].unlock();
+    }
+
+    void travarPar(int a, int b) {
+        int ia = indice(a);
+        int ib = indice(b);
+        if (ia == ib) {
+            faixas[ia].lock();
+        } else {
+            faixas[Math.min(ia, ib)].lock();
+            faixas[Math.max(ia, ib)].lock();
+        }
+    }
+
+    void destravarPar(int a, int b) {
+        int ia = indice(a);
+        int ib = indice(b);
+        faixas[ia].unlock();
+        if (ia != ib) faixas[ib].unlock();
+    }
+
+    // Trava a estrutura e todas as faixas: nenhuma operação fica em andamento
+    long travarTudo() {
+        long stamp = estrutura.writeLock();
+        for (ReentrantLock faixa : faixas) {
+            faixa.lock();
+        }
+        return stamp;
+    }
+
+    void destravarTudo(long stamp) {
+        for (int i = faixas.length - 1; i >= 0; i--) {
+            faixas[i].unlock();
+        }
+        estrutura.unlockWrite(stamp);
+    }
+}
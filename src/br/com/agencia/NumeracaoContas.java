@@ -0,0 +1,43 @@
+package br.com.agencia;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+// Números de conta sequenciais, nunca repetidos, nem os de contas já removidas.
+// Reservar é um getAndAdd: criações simultâneas e importações em lote pegam blocos de números
+// sem disputa e sem percorrer as contas. O que precisa sobreviver a uma parada é só o maior
+// número que já teve conta: ele vai no manifesto a cada checkpoint, e as contas criadas depois
+// estão no diário. Números reservados e não usados antes de uma parada podem voltar, pois
+// quem os reservou não existe mais.
+class NumeracaoContas {
+    // Um além do maior número de conta possível
+    static final long FIM = Integer.MAX_VALUE + 1L;
+
+    private final AtomicLong proximo = new AtomicLong(1);
+    // Um além do maior número que já teve conta; só muda sob a trava de estrutura para escrita
+    private long usados = 1;
+
+    // Primeiro de 'quantidade' números consecutivos, só do chamador
+    long reservar(int quantidade) {
+        if (quantidade <= 0) throw new IllegalArgumentException("Quantidade de números inválida: " + quantidade);
+        long primeiro = proximo.getAndAdd(quantidade);
+        if (primeiro + quantidade > FIM) throw new IllegalStateException("Números de conta esgotados");
+        return primeiro;
+    }
+
+    // Conta incluída com o número (criada, importada ou reaplicada do diário)
+    void usado(int numero) {
+        if (numero >= usados) usados = numero + 1L;
+        proximo.accumulateAndGet(numero + 1L, Math::max);
+    }
+
+    // Na carga: números abaixo de 'fim' já tiveram conta
+    void iniciar(long fim) {
+        usados = Math.max(1, fim);
+        proximo.set(usados);
+    }
+
+    // Gravado no manifesto pelo checkpoint
+    long usados() {
+        return usados;
+    }
+}
@@ -0,0 +1,51 @@
+package br.com.agencia;
+
+import java.util.List;
+
+// Uma página da consulta de contas (Banco.listarContas(inicio, quantidade, ordem)).
+// As linhas copiam titular e saldo no momento da leitura; as contas ainda só no armazém
+// não são carregadas para a memória.
+class PaginaContas {
+    enum Ordem {
+        NUMERO("Número"),
+        TITULAR("Titular"),
+        MAIOR_SALDO("Maior saldo");
+
+        final String rotulo;
+
+        Ordem(String rotulo) {
+            this.rotulo = rotulo;
+        }
+
+        @Override
+        public String toString() {
+            return rotulo;
+        }
+    }
+
+    static final class Linha {
+        final int numero;
+        final String titular;
+        final long saldoCentavos;
+
+        Linha(int numero, String titular, long saldoCentavos) {
+            this.numero = numero;
+            this.titular = titular;
+            this.saldoCentavos = saldoCentavos;
+        }
+    }
+
+    final Ordem ordem;
+    // Posição da primeira linha na consulta inteira
+    final int inicio;
+    // Contas existentes quando a página foi lida
+    final int total;
+    final List<Linha> linhas;
+
+    PaginaContas(Ordem ordem, int inicio, int total, List<Linha> linhas) {
+        this.ordem = ordem;
+        this.inicio = inicio;
+        this.total = total;
+        this.linhas = linhas;
+    }
+}
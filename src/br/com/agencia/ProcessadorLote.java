@@ -0,0 +1,249 @@
+package br.com.agencia;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.Reader;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ForkJoinPool;
+
+// Processamento em lote de arquivos de lançamentos (folha de pagamento, fechamento do dia).
+//
+// Uma operação por linha; linhas em branco ou iniciadas por '#' são ignoradas.
+//   CSV (separador ';'):  tipo;conta;valor[;destino]
+//   largura fixa:         tipo (1) | conta (10) | valor (15) | destino (10, só em transferências)
+// tipo: D = depósito, S = saque, T = transferência. Valores como "1234,56" ou "1.234,56".
+//
+// O arquivo é lido como fluxo, em blocos. Cada bloco é interpretado e validado em paralelo
+// (formato, valor e existência das contas) enquanto os anteriores são aplicados, sempre na
+// ordem do arquivo, pela thread que chamou processar. O saldo só é conferido na aplicação.
+class ProcessadorLote {
+    static final int LINHAS_POR_BLOCO = 4096;
+
+    static final byte DEPOSITO = 'D';
+    static final byte SAQUE = 'S';
+    static final byte TRANSFERENCIA = 'T';
+
+    enum Formato {
+        CSV, LARGURA_FIXA;
+
+        static Formato pelaExtensao(String nomeArquivo) {
+            return nomeArquivo.toLowerCase().endsWith(".csv") ? CSV : LARGURA_FIXA;
+        }
+    }
+
+    static class Rejeicao {
+        final long linha;
+        final String conteudo;
+        final String motivo;
+
+        Rejeicao(long linha, String conteudo, String motivo) {
+            this.linha = linha;
+            this.conteudo = conteudo;
+            this.motivo = motivo;
+        }
+
+        @Override
+        public String toString() {
+            return "Linha " + linha + ": " + motivo + " [" + conteudo + "]";
+        }
+    }
+
+    static class Resultado {
+        final long linhas;
+        final long aplicadas;
+        final List<Rejeicao> rejeicoes;
+        final long nanos;
+
+        Resultado(long linhas, long aplicadas, List<Rejeicao> rejeicoes, long nanos) {
+            this.linhas = linhas;
+            this.aplicadas = aplicadas;
+            this.rejeicoes = rejeicoes;
+            this.nanos = nanos;
+        }
+
+        double linhasPorSegundo() {
+            return nanos == 0 ? 0 : linhas * 1e9 / nanos;
+        }
+
+        String resumo() {
+            return String.format("%d linhas em %.1f s (%.0f linhas/s): %d aplicadas, %d rejeitadas",
+                    linhas, nanos / 1e9, linhasPorSegundo(), aplicadas, rejeicoes.size());
+        }
+    }
+
+    // Linhas de um bloco em colunas; 'motivos[i]' != null marca a linha como rejeitada
+    private static final class Bloco {
+        final long[] numerosLinha = new long[LINHAS_POR_BLOCO];
+        final String[] textos = new String[LINHAS_POR_BLOCO];
+        final byte[] tipos = new byte[LINHAS_POR_BLOCO];
+        final int[] contas = new int[LINHAS_POR_BLOCO];
+        final int[] destinos = new int[LINHAS_POR_BLOCO];
+        final long[] valores = new long[LINHAS_POR_BLOCO];
+        final String[] motivos = new String[LINHAS_POR_BLOCO];
+        int tamanho;
+
+        void adicionar(long numeroLinha, String texto) {
+            numerosLinha[tamanho] = numeroLinha;
+            textos[tamanho] = texto;
+            tamanho++;
+        }
+    }
+
+    private final Banco banco;
+    private final Formato formato;
+    private final List<Rejeicao> rejeicoes = new ArrayList<>();
+    private long aplicadas;
+    private long ultimoLsn = -1;
+
+    ProcessadorLote(Banco banco, Formato formato) {
+        this.banco = banco;
+        this.formato = formato;
+    }
+
+    Resultado processar(Reader entrada) throws IOException {
+        long inicio = System.nanoTime();
+        BufferedReader leitor = entrada instanceof BufferedReader
+                ? (BufferedReader) entrada : new BufferedReader(entrada, 1 << 16);
+        // Limita os blocos lidos à frente da aplicação, para o arquivo não ir todo para a memória
+        int maximoEmValidacao = Math.max(2, 2 * ForkJoinPool.getCommonPoolParallelism());
+        ArrayDeque<CompletableFuture<Bloco>> emValidacao = new ArrayDeque<>();
+
+        long linhas = 0;
+        long numeroLinha = 0;
+        Bloco bloco = new Bloco();
+        String texto;
+        while ((texto = leitor.readLine()) != null) {
+            numeroLinha++;
+            if (texto.isBlank() || texto.startsWith("#")) continue;
+            linhas++;
+            bloco.adicionar(numeroLinha, texto);
+            if (bloco.tamanho == LINHAS_POR_BLOCO) {
+                emValidacao.add(validarEmParalelo(bloco));
+                bloco = new Bloco();
+                if (emValidacao.size() >= maximoEmValidacao) aplicar(emValidacao.poll().join());
+            }
+        }
+        if (bloco.tamanho > 0) emValidacao.add(validarEmParalelo(bloco));
+        while (!emValidacao.isEmpty()) {
+            aplicar(emValidacao.poll().join());
+        }
+
+        if (ultimoLsn >= 0) banco.aguardarDiario(ultimoLsn);
+        return new Resultado(linhas, aplicadas, rejeicoes, System.nanoTime() - inicio);
+    }
+
+    private CompletableFuture<Bloco> validarEmParalelo(Bloco bloco) {
+        return CompletableFuture.supplyAsync(() -> {
+            for (int i = 0; i < bloco.tamanho; i++) {
+                bloco.motivos[i] = validar(bloco, i);
+            }
+            return bloco;
+        });
+    }
+
+    // Interpreta a linha i do bloco; devolve o motivo da rejeição ou null se a linha é válida
+    private String validar(Bloco bloco, int i) {
+        String texto = bloco.textos[i];
+        try {
+            if (formato == Formato.CSV) {
+                interpretarCsv(bloco, i, texto);
+            } else {
+                interpretarLarguraFixa(bloco, i, texto);
+            }
+        } catch (IllegalArgumentException | ArithmeticException e) {
+            return e.getMessage() == null ? "Linha mal formada" : e.getMessage();
+        }
+
+        byte tipo = bloco.tipos[i];
+        if (tipo != DEPOSITO && tipo != SAQUE && tipo != TRANSFERENCIA) {
+            return "Tipo de operação desconhecido: " + (char) tipo;
+        }
+        if (bloco.valores[i] <= 0) return "Valor deve ser positivo";
+        if (banco.buscarConta(bloco.contas[i]) == null) return "Conta " + bloco.contas[i] + " não encontrada";
+        if (tipo == TRANSFERENCIA) {
+            if (bloco.destinos[i] == bloco.contas[i]) return "Transferência para a mesma conta";
+            if (banco.buscarConta(bloco.destinos[i]) == null) return "Conta " + bloco.destinos[i] + " não encontrada";
+        }
+        return null;
+    }
+
+    private static void interpretarCsv(Bloco bloco, int i, String texto) {
+        int fimTipo = texto.indexOf(';');
+        int fimConta = fimTipo < 0 ? -1 : texto.indexOf(';', fimTipo + 1);
+        if (fimConta < 0) throw new IllegalArgumentException("Esperado tipo;conta;valor[;destino]");
+        int fimValor = texto.indexOf(';', fimConta + 1);
+
+        String tipo = texto.substring(0, fimTipo).trim();
+        if (tipo.length() != 1) throw new IllegalArgumentException("Tipo de operação inválido: " + tipo);
+        bloco.tipos[i] = (byte) Character.toUpperCase(tipo.charAt(0));
+        bloco.contas[i] = numeroConta(texto, fimTipo + 1, fimConta);
+        bloco.valores[i] = valor(texto.substring(fimConta + 1, fimValor < 0 ? texto.length() : fimValor));
+        if (bloco.tipos[i] == TRANSFERENCIA) {
+            if (fimValor < 0) throw new IllegalArgumentException("Transferência sem conta de destino");
+            bloco.destinos[i] = numeroConta(texto, fimValor + 1, texto.length());
+        }
+    }
+
+    private static void interpretarLarguraFixa(Bloco bloco, int i, String texto) {
+        if (texto.length() < 26) throw new IllegalArgumentException("Linha menor que 26 colunas");
+        bloco.tipos[i] = (byte) Character.toUpperCase(texto.charAt(0));
+        bloco.contas[i] = numeroConta(texto, 1, 11);
+        bloco.valores[i] = valor(texto.substring(11, Math.min(26, texto.length())));
+        if (bloco.tipos[i] == TRANSFERENCIA) {
+            if (texto.length() < 27) throw new IllegalArgumentException("Transferência sem conta de destino");
+            bloco.destinos[i] = numeroConta(texto, 26, Math.min(36, texto.length()));
+        }
+    }
+
+    private static int numeroConta(String texto, int inicio, int fim) {
+        String campo = texto.substring(inicio, fim).trim();
+        try {
+            return Integer.parseInt(campo);
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Número de conta inválido: " + campo);
+        }
+    }
+
+    private static long valor(String campo) {
+        try {
+            return Dinheiro.interpretar(campo);
+        } catch (NumberFormatException | ArithmeticException e) {
+            throw new IllegalArgumentException("Valor inválido: " + campo.trim());
+        }
+    }
+
+    // Aplica as linhas válidas do bloco na ordem do arquivo, sem esperar o diário
+    private void aplicar(Bloco bloco) {
+        for (int i = 0; i < bloco.tamanho; i++) {
+            if (bloco.motivos[i] != null) {
+                rejeitar(bloco, i, bloco.motivos[i]);
+                continue;
+            }
+            long lsn;
+            switch (bloco.tipos[i]) {
+                case DEPOSITO:
+                    lsn = banco.lancarDeposito(bloco.contas[i], bloco.valores[i]);
+                    break;
+                case SAQUE:
+                    lsn = banco.lancarSaque(bloco.contas[i], bloco.valores[i]);
+                    break;
+                default:
+                    lsn = banco.lancarTransferencia(bloco.contas[i], bloco.destinos[i], bloco.valores[i]);
+                    break;
+            }
+            if (lsn < 0) {
+                rejeitar(bloco, i, bloco.tipos[i] == DEPOSITO ? "Conta encerrada" : "Saldo insuficiente ou conta encerrada");
+            } else {
+                aplicadas++;
+                ultimoLsn = Math.max(ultimoLsn, lsn);
+            }
+        }
+    }
+
+    private void rejeitar(Bloco bloco, int i, String motivo) {
+        rejeicoes.add(new Rejeicao(bloco.numerosLinha[i], bloco.textos[i], motivo));
+    }
+}
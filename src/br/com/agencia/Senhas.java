@@ -0,0 +1,84 @@
+package br.com.agencia;
+
+import javax.crypto.SecretKeyFactory;
+import javax.crypto.spec.PBEKeySpec;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.security.MessageDigest;
+import java.security.SecureRandom;
+import java.util.Base64;
+
+// Senhas guardadas como hash PBKDF2 (HmacSHA256) com sal aleatório, no formato
+//   pbkdf2-sha256$<iterações>$<sal base64>$<hash base64>
+// As iterações ficam junto do hash, então mudar o custo só afeta senhas gravadas depois.
+// Arquivos de antes do hash guardam a senha em texto puro; ela ainda é aceita e o
+// Banco a troca pelo hash no primeiro login.
+final class Senhas {
+    // Custo do hash: cada iteração a mais encarece igualmente o login e a força bruta.
+    // Ajustável com -Dbanco.senha.iteracoes; BenchmarkSenhas mede logins/s por custo.
+    static final int ITERACOES = Integer.getInteger("banco.senha.iteracoes", 210_000);
+
+    private static final String PREFIXO = "pbkdf2-sha256$";
+    private static final String ALGORITMO = "PBKDF2WithHmacSHA256";
+    private static final int BYTES_SAL = 16;
+    private static final int BITS_HASH = 256;
+    private static final SecureRandom RANDOM = new SecureRandom();
+
+    private Senhas() {}
+
+    static String codificar(String senha) {
+        return codificar(senha, ITERACOES);
+    }
+
+    static String codificar(String senha, int iteracoes) {
+        byte[] sal = new byte[BYTES_SAL];
+        RANDOM.nextBytes(sal);
+        Base64.Encoder base64 = Base64.getEncoder().withoutPadding();
+        return PREFIXO + iteracoes + '$' + base64.encodeToString(sal) + '$'
+                + base64.encodeToString(derivar(senha, sal, iteracoes, BITS_HASH));
+    }
+
+    // A comparação final leva o mesmo tempo qualquer que seja o primeiro byte diferente
+    static boolean verificar(String senha, String codificada) {
+        if (senha == null || codificada == null) return false;
+        if (emTextoPuro(codificada)) {
+            return MessageDigest.isEqual(senha.getBytes(StandardCharsets.UTF_8), codificada.getBytes(StandardCharsets.UTF_8));
+        }
+        String[] partes = codificada.substring(PREFIXO.length()).split("\\$");
+        if (partes.length != 3) return false;
+        try {
+            int iteracoes = Integer.parseInt(partes[0]);
+            byte[] sal = Base64.getDecoder().decode(partes[1]);
+            byte[] esperado = Base64.getDecoder().decode(partes[2]);
+            return MessageDigest.isEqual(derivar(senha, sal, iteracoes, esperado.length * 8), esperado);
+        } catch (IllegalArgumentException e) {
+            return false;
+        }
+    }
+
+    static boolean emTextoPuro(String codificada) {
+        return !codificada.startsWith(PREFIXO);
+    }
+
+    // Para login inexistente: gasta o tempo de uma verificação de verdade, para que a
+    // demora da resposta não revele quais usuários existem
+    static void verificarFicticia(String senha) {
+        verificar(senha == null ? "" : senha, Ficticia.CODIFICADA);
+    }
+
+    // Calculada só no primeiro uso
+    private static final class Ficticia {
+        static final String CODIFICADA = codificar("", ITERACOES);
+    }
+
+    private static byte[] derivar(String senha, byte[] sal, int iteracoes, int bits) {
+        PBEKeySpec spec = new PBEKeySpec(senha.toCharArray(), sal, iteracoes, bits);
+        try {
+            return SecretKeyFactory.getInstance(ALGORITMO).generateSecret(spec).getEncoded();
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException("PBKDF2 indisponível", e);
+        } finally {
+            spec.clearPassword();
+        }
+    }
+}
@@ -0,0 +1,504 @@
+package br.com.agencia;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+// Modo servidor, sem interface gráfica: expõe as operações do Banco por HTTP/JSON.
+// As conexões são atendidas pelo seletor NIO do HttpServer e as requisições rodam num
+// pool de threads; como cada operação espera o diário, muitas requisições simultâneas
+// são gravadas juntas no mesmo fsync.
+//
+//   POST /contas?titular=Nome                        cria a conta
+//   GET  /contas?inicio=0&quantidade=50[&ordem=numero|titular|saldo]   página de contas e totais
+//   GET  /contas?titular=joao[&quantidade=50]        contas cujo titular tem palavra com esse começo
+//   PUT  /contas/{n}?titular=Nome                    troca o titular
+//   GET  /contas/{n}                                 saldo
+//   POST /contas/{n}/deposito?valor=10,50
+//   POST /contas/{n}/saque?valor=10,50
+//   POST /transferencias?origem=1&destino=2&valor=10,50
+//   GET  /contas/{n}/extrato?inicio=0&quantidade=100[&desde=ms&ate=ms]
+//   GET  /lancamentos?[conta=n&][desde=ms&][ate=ms&][tipos=deposito,saque,transferencia,recebida&]
+//        [valorMinimo=10000,00&][limite=1000]         lançamentos filtrados, de uma conta ou de todas
+//   POST /sessoes (corpo: login=...&senha=...)        abre uma sessão e devolve o token
+//   DELETE /sessoes                                   encerra a sessão do cabeçalho Authorization
+//   GET  /metricas                                   contadores e latências por operação (texto)
+//
+// Depósitos, saques e transferências aceitam o cabeçalho Idempotency-Key: repetir a
+// requisição com a mesma chave devolve o resultado original sem executar de novo; se a
+// primeira tentativa falhou, a repetição recebe a mesma falha (o efeito é incerto).
+// Com 'exigirSessao', as operações sobre contas pedem "Authorization: Bearer <token>";
+// o token é conferido sem recalcular o hash da senha.
+//
+// Uso: java br.com.agencia.ServidorBanco [porta] [diretorio] [threads] [exigirSessao]
+public class ServidorBanco {
+    private static final int MAXIMO_LINHAS_EXTRATO = 1000;
+    private static final int MAXIMO_CONTAS_PAGINA = 1000;
+    private static final int MAXIMO_LANCAMENTOS = 10_000;
+    private static final String PORTADOR = "Bearer ";
+
+    private final Banco banco;
+    private final HttpServer servidor;
+    private final ExecutorService trabalhadores;
+    private final boolean exigirSessao;
+
+    ServidorBanco(Banco banco, InetSocketAddress endereco, int threads) throws IOException {
+        this(banco, endereco, threads, false);
+    }
+
+    ServidorBanco(Banco banco, InetSocketAddress endereco, int threads, boolean exigirSessao) throws IOException {
+        this.banco = banco;
+        this.exigirSessao = exigirSessao;
+        AtomicInteger contador = new AtomicInteger();
+        trabalhadores = Executors.newFixedThreadPool(threads, r -> new Thread(r, "servidor-banco-" + contador.incrementAndGet()));
+        servidor = HttpServer.create(endereco, 1024);
+        servidor.setExecutor(trabalhadores);
+        servidor.createContext("/contas", this::atenderContas);
+        servidor.createContext("/transferencias", this::atenderTransferencias);
+        servidor.createContext("/lancamentos", this::atenderLancamentos);
+        servidor.createContext("/sessoes", this::atenderSessoes);
+        servidor.createContext("/metricas", this::atenderMetricas);
+    }
+
+    void iniciar() {
+        servidor.start();
+    }
+
+    void parar() {
+        servidor.stop(1);
+        trabalhadores.shutdown();
+    }
+
+    int getPorta() {
+        return servidor.getAddress().getPort();
+    }
+
+    private void atenderContas(HttpExchange troca) throws IOException {
+        try {
+            exigirSessao(troca);
+            String[] partes = troca.getRequestURI().getPath().split("/");
+            Map<String, String> parametros = parametros(troca);
+            String metodo = troca.getRequestMethod();
+            // partes: ["", "contas", numero?, operacao?]
+            if (partes.length == 2 && "GET".equals(metodo)) {
+                responderContas(troca, parametros);
+                return;
+            }
+            if (partes.length == 2) {
+                exigirMetodo(metodo, "POST");
+                String titular = parametros.get("titular");
+                if (titular == null || titular.isBlank()) throw new RequisicaoInvalida(400, "Informe o titular");
+                int numero = banco.criarConta(titular.trim());
+                responder(troca, 201, "{\"numero\":" + numero + "}");
+                return;
+            }
+            int numero = inteiro(partes[2], "número da conta");
+            String operacao = partes.length > 3 ? partes[3] : "";
+            switch (operacao) {
+                case "":
+                    if ("PUT".equals(metodo)) {
+                        String titular = parametros.get("titular");
+                        if (titular == null || titular.isBlank()) throw new RequisicaoInvalida(400, "Informe o titular");
+                        if (!banco.alterarTitular(numero, titular.trim())) throw new RequisicaoInvalida(404, "Conta não encontrada");
+                    } else {
+                        exigirMetodo(metodo, "GET");
+                    }
+                    responderSaldo(troca, numero);
+                    break;
+                case "deposito":
+                    exigirMetodo(metodo, "POST");
+                    if (!banco.depositar(numero, valor(parametros), chave(troca))) recusar(numero, "Conta não encontrada");
+                    responderSaldo(troca, numero);
+                    break;
+                case "saque":
+                    exigirMetodo(metodo, "POST");
+                    if (!banco.sacar(numero, valor(parametros), chave(troca))) recusar(numero, "Saldo insuficiente ou valor inválido");
+                    responderSaldo(troca, numero);
+                    break;
+                case "extrato":
+                    exigirMetodo(metodo, "GET");
+                    responderExtrato(troca, numero, parametros);
+                    break;
+                default:
+                    throw new RequisicaoInvalida(404, "Operação desconhecida: " + operacao);
+            }
+        } catch (RequisicaoInvalida e) {
+            responderErro(troca, e.status, e.getMessage());
+        } catch (IllegalArgumentException e) {
+            responderErro(troca, 422, e.getMessage());
+        } catch (UncheckedIOException e) {
+            responderErro(troca, 503, "Falha ao gravar a operação: " + e.getCause().getMessage());
+        } catch (RuntimeException e) {
+            responderErro(troca, 500, String.valueOf(e.getMessage()));
+        }
+    }
+
+    private void atenderTransferencias(HttpExchange troca) throws IOException {
+        try {
+            exigirSessao(troca);
+            exigirMetodo(troca.getRequestMethod(), "POST");
+            Map<String, String> parametros = parametros(troca);
+            int origem = inteiro(parametros.get("origem"), "conta de origem");
+            int destino = inteiro(parametros.get("destino"), "conta de destino");
+            long centavos = valor(parametros);
+            if (!banco.transferir(origem, destino, centavos, chave(troca))) {
+                if (banco.buscarConta(origem) == null || banco.buscarConta(destino) == null) {
+                    throw new RequisicaoInvalida(404, "Conta(s) não encontrada(s)");
+                }
+                throw new RequisicaoInvalida(409, "Saldo insuficiente ou transferência inválida");
+            }
+            responder(troca, 200, "{\"origem\":" + origem + ",\"destino\":" + destino + ",\"valor\":\""
+                    + Dinheiro.formatar(centavos) + "\"}");
+        } catch (RequisicaoInvalida e) {
+            responderErro(troca, e.status, e.getMessage());
+        } catch (IllegalArgumentException e) {
+            responderErro(troca, 422, e.getMessage());
+        } catch (UncheckedIOException e) {
+            responderErro(troca, 503, "Falha ao gravar a operação: " + e.getCause().getMessage());
+        } catch (RuntimeException e) {
+            responderErro(troca, 500, String.valueOf(e.getMessage()));
+        }
+    }
+
+    private void atenderLancamentos(HttpExchange troca) throws IOException {
+        try {
+            exigirSessao(troca);
+            exigirMetodo(troca.getRequestMethod(), "GET");
+            Map<String, String> parametros = parametros(troca);
+            long desde = parametros.containsKey("desde") ? longo(parametros.get("desde"), "desde") : Long.MIN_VALUE;
+            long ate = parametros.containsKey("ate") ? longo(parametros.get("ate"), "ate") : Long.MAX_VALUE;
+            long valorMinimo = parametros.containsKey("valorMinimo") ? valor(parametros.get("valorMinimo")) : 0;
+            int limite = parametros.containsKey("limite") ? inteiro(parametros.get("limite"), "limite") : 1000;
+            limite = Math.max(0, Math.min(limite, MAXIMO_LANCAMENTOS));
+            // Só as 'limite' primeiras ocorrências são montadas; o total vem da contagem
+            ConsultaLancamentos consulta = new ConsultaLancamentos(desde, ate, tipos(parametros.get("tipos")),
+                    valorMinimo, limite);
+
+            ConsultaLancamentos.Resultado resultado;
+            if (parametros.containsKey("conta")) {
+                resultado = banco.consultarLancamentos(inteiro(parametros.get("conta"), "conta"), consulta);
+                if (resultado == null) throw new RequisicaoInvalida(404, "Conta não encontrada");
+            } else {
+                resultado = banco.consultarLancamentos(consulta);
+            }
+
+            List<ConsultaLancamentos.Ocorrencia> ocorrencias = resultado.ocorrencias;
+            StringBuilder sb = new StringBuilder(64 + ocorrencias.size() * 128);
+            sb.append("{\"total\":").append(resultado.total).append(",\"lancamentos\":[");
+            for (int i = 0; i < ocorrencias.size(); i++) {
+                ConsultaLancamentos.Ocorrencia o = ocorrencias.get(i);
+                if (i > 0) sb.append(',');
+                sb.append("{\"conta\":").append(o.numero).append(",\"instante\":").append(o.transacao.getData().getTime())
+                        .append(",\"tipo\":");
+                json(o.transacao.getTipo(), sb);
+                sb.append(",\"valor\":\"");
+                Dinheiro.formatar(o.transacao.getValorCentavos(), sb);
+                sb.append("\",\"descricao\":");
+                json(o.transacao.getDescricao(), sb);
+                sb.append('}');
+            }
+            responder(troca, 200, sb.append("]}").toString());
+        } catch (RequisicaoInvalida e) {
+            responderErro(troca, e.status, e.getMessage());
+        } catch (UncheckedIOException e) {
+            responderErro(troca, 503, "Falha ao ler os lançamentos: " + e.getCause().getMessage());
+        } catch (RuntimeException e) {
+            responderErro(troca, 500, String.valueOf(e.getMessage()));
+        }
+    }
+
+    private static int tipos(String texto) {
+        if (texto == null || texto.isBlank()) return ConsultaLancamentos.TODOS_OS_TIPOS;
+        int tipos = 0;
+        for (String nome : texto.split(",")) {
+            switch (nome.trim()) {
+                case "deposito": tipos |= ConsultaLancamentos.tipo(Lancamentos.DEPOSITO); break;
+                case "saque": tipos |= ConsultaLancamentos.tipo(Lancamentos.SAQUE); break;
+                case "transferencia": tipos |= ConsultaLancamentos.tipo(Lancamentos.TRANSFERENCIA_ENVIADA); break;
+                case "recebida": tipos |= ConsultaLancamentos.tipo(Lancamentos.TRANSFERENCIA_RECEBIDA); break;
+                default: throw new RequisicaoInvalida(400, "Tipo de lançamento desconhecido: " + nome);
+            }
+        }
+        return tipos;
+    }
+
+    private void atenderSessoes(HttpExchange troca) throws IOException {
+        try {
+            if ("DELETE".equals(troca.getRequestMethod())) {
+                banco.encerrarSessao(token(troca));
+                troca.sendResponseHeaders(204, -1);
+                troca.close();
+                return;
+            }
+            exigirMetodo(troca.getRequestMethod(), "POST");
+            // Login e senha só no corpo: a query string acaba em logs de acesso e no histórico
+            Map<String, String> parametros = new HashMap<>();
+            lerParametros(new String(troca.getRequestBody().readAllBytes(), StandardCharsets.UTF_8), parametros);
+            String token = banco.abrirSessao(parametros.get("login"), parametros.get("senha"));
+            if (token == null) throw new RequisicaoInvalida(401, "Usuário ou senha inválidos");
+            responder(troca, 201, "{\"token\":\"" + token + "\"}");
+        } catch (RequisicaoInvalida e) {
+            responderErro(troca, e.status, e.getMessage());
+        } catch (UncheckedIOException e) {
+            responderErro(troca, 503, "Falha ao gravar a operação: " + e.getCause().getMessage());
+        } catch (RuntimeException e) {
+            responderErro(troca, 500, String.valueOf(e.getMessage()));
+        }
+    }
+
+    private void atenderMetricas(HttpExchange troca) throws IOException {
+        if (!"GET".equals(troca.getRequestMethod())) {
+            responderErro(troca, 405, "Use GET");
+            return;
+        }
+        byte[] corpo = banco.getMetricas().relatorio().getBytes(StandardCharsets.UTF_8);
+        troca.getResponseHeaders().set("Content-Type", "text/plain; charset=utf-8");
+        troca.sendResponseHeaders(200, corpo.length);
+        try (OutputStream saida = troca.getResponseBody()) {
+            saida.write(corpo);
+        }
+    }
+
+    private void exigirSessao(HttpExchange troca) {
+        if (exigirSessao && banco.usuarioDaSessao(token(troca)) == null) {
+            throw new RequisicaoInvalida(401, "Sessão inválida ou expirada");
+        }
+    }
+
+    private static String token(HttpExchange troca) {
+        String autorizacao = troca.getRequestHeaders().getFirst("Authorization");
+        if (autorizacao == null || !autorizacao.regionMatches(true, 0, PORTADOR, 0, PORTADOR.length())) return null;
+        return autorizacao.substring(PORTADOR.length()).trim();
+    }
+
+    private void recusar(int numero, String motivo) {
+        throw banco.buscarConta(numero) == null
+                ? new RequisicaoInvalida(404, "Conta não encontrada")
+                : new RequisicaoInvalida(409, motivo);
+    }
+
+    private void responderSaldo(HttpExchange troca, int numero) throws IOException {
+        Conta conta = banco.buscarConta(numero);
+        if (conta == null) throw new RequisicaoInvalida(404, "Conta não encontrada");
+        StringBuilder sb = new StringBuilder(96);
+        sb.append("{\"numero\":").append(numero).append(",\"titular\":");
+        json(conta.getTitular(), sb);
+        sb.append(",\"saldo\":\"");
+        Dinheiro.formatar(conta.getSaldoCentavos(), sb);
+        responder(troca, 200, sb.append("\"}").toString());
+    }
+
+    private void responderContas(HttpExchange troca, Map<String, String> parametros) throws IOException {
+        int inicio = parametros.containsKey("inicio") ? inteiro(parametros.get("inicio"), "inicio") : 0;
+        int quantidade = parametros.containsKey("quantidade")
+                ? inteiro(parametros.get("quantidade"), "quantidade") : 50;
+        quantidade = Math.max(0, Math.min(quantidade, MAXIMO_CONTAS_PAGINA));
+        PaginaContas.Ordem ordem;
+        switch (parametros.getOrDefault("ordem", "numero")) {
+            case "numero": ordem = PaginaContas.Ordem.NUMERO; break;
+            case "titular": ordem = PaginaContas.Ordem.TITULAR; break;
+            case "saldo": ordem = PaginaContas.Ordem.MAIOR_SALDO; break;
+            default: throw new RequisicaoInvalida(400, "Ordem inválida: " + parametros.get("ordem"));
+        }
+
+        List<PaginaContas.Linha> linhas;
+        StringBuilder sb = new StringBuilder(256);
+        if (parametros.containsKey("titular")) {
+            linhas = banco.buscarPorTitular(parametros.get("titular"), quantidade);
+            sb.append("{\"encontradas\":").append(linhas.size()).append(",\"contas\":[");
+        } else {
+            PaginaContas pagina = banco.listarContas(inicio, quantidade, ordem);
+            linhas = pagina.linhas;
+            sb.append("{\"total\":").append(pagina.total).append(",\"saldoTotal\":\"");
+            Dinheiro.formatar(banco.saldoTotal(), sb);
+            sb.append("\",\"inicio\":").append(pagina.inicio).append(",\"contas\":[");
+        }
+        for (int i = 0; i < linhas.size(); i++) {
+            PaginaContas.Linha linha = linhas.get(i);
+            if (i > 0) sb.append(',');
+            sb.append("{\"numero\":").append(linha.numero).append(",\"titular\":");
+            json(linha.titular, sb);
+            sb.append(",\"saldo\":\"");
+            Dinheiro.formatar(linha.saldoCentavos, sb);
+            sb.append("\"}");
+        }
+        responder(troca, 200, sb.append("]}").toString());
+    }
+
+    private void responderExtrato(HttpExchange troca, int numero, Map<String, String> parametros) throws IOException {
+        long desde = parametros.containsKey("desde") ? longo(parametros.get("desde"), "desde") : Long.MIN_VALUE;
+        long ate = parametros.containsKey("ate") ? longo(parametros.get("ate"), "ate") : Long.MAX_VALUE;
+        int inicio = parametros.containsKey("inicio") ? inteiro(parametros.get("inicio"), "inicio") : 0;
+        int quantidade = parametros.containsKey("quantidade")
+                ? inteiro(parametros.get("quantidade"), "quantidade") : 100;
+        quantidade = Math.max(0, Math.min(quantidade, MAXIMO_LINHAS_EXTRATO));
+
+        CursorExtrato cursor = banco.abrirExtrato(numero, desde, ate);
+        if (cursor == null) throw new RequisicaoInvalida(404, "Conta não encontrada");
+        List<String> linhas = cursor.pagina(Math.max(0, inicio), quantidade);
+        StringBuilder sb = new StringBuilder(64 + linhas.size() * 96);
+        sb.append("{\"numero\":").append(numero).append(",\"total\":").append(cursor.tamanho())
+                .append(",\"inicio\":").append(inicio).append(",\"linhas\":[");
+        for (int i = 0; i < linhas.size(); i++) {
+            if (i > 0) sb.append(',');
+            json(linhas.get(i), sb);
+        }
+        responder(troca, 200, sb.append("]}").toString());
+    }
+
+    private static String chave(HttpExchange troca) {
+        String chave = troca.getRequestHeaders().getFirst("Idempotency-Key");
+        return chave == null || chave.isBlank() ? null : chave.trim();
+    }
+
+    private static void exigirMetodo(String metodo, String esperado) {
+        if (!esperado.equals(metodo)) throw new RequisicaoInvalida(405, "Use " + esperado);
+    }
+
+    // Parâmetros da query string e, em POST e PUT, do corpo application/x-www-form-urlencoded
+    private static Map<String, String> parametros(HttpExchange troca) throws IOException {
+        Map<String, String> parametros = new HashMap<>();
+        lerParametros(troca.getRequestURI().getRawQuery(), parametros);
+        if ("POST".equals(troca.getRequestMethod()) || "PUT".equals(troca.getRequestMethod())) {
+            byte[] corpo = troca.getRequestBody().readAllBytes();
+            if (corpo.length > 0) lerParametros(new String(corpo, StandardCharsets.UTF_8), parametros);
+        }
+        return parametros;
+    }
+
+    private static void lerParametros(String texto, Map<String, String> parametros) {
+        if (texto == null || texto.isEmpty()) return;
+        for (String par : texto.split("&")) {
+            int igual = par.indexOf('=');
+            String nome = igual < 0 ? par : par.substring(0, igual);
+            String valor = igual < 0 ? "" : par.substring(igual + 1);
+            parametros.put(URLDecoder.decode(nome, StandardCharsets.UTF_8), URLDecoder.decode(valor, StandardCharsets.UTF_8));
+        }
+    }
+
+    private static long valor(Map<String, String> parametros) {
+        return valor(parametros.get("valor"));
+    }
+
+    private static long valor(String texto) {
+        if (texto == null) throw new RequisicaoInvalida(400, "Informe o valor");
+        long centavos;
+        try {
+            centavos = Dinheiro.interpretar(texto);
+        } catch (NumberFormatException | ArithmeticException e) {
+            throw new RequisicaoInvalida(400, "Valor inválido: " + texto);
+        }
+        if (centavos <= 0) throw new RequisicaoInvalida(400, "O valor deve ser positivo");
+        return centavos;
+    }
+
+    private static int inteiro(String texto, String campo) {
+        try {
+            return Integer.parseInt(texto);
+        } catch (NumberFormatException e) {
+            throw new RequisicaoInvalida(400, "Valor inválido para " + campo + ": " + texto);
+        }
+    }
+
+    private static long longo(String texto, String campo) {
+        try {
+            return Long.parseLong(texto);
+        } catch (NumberFormatException e) {
+            throw new RequisicaoInvalida(400, "Valor inválido para " + campo + ": " + texto);
+        }
+    }
+
+    private static void json(String texto, StringBuilder sb) {
+        sb.append('"');
+        for (int i = 0; i < texto.length(); i++) {
+            char c = texto.charAt(i);
+            switch (c) {
+                case '"': sb.append("\\\""); break;
+                case '\\': sb.append("\\\\"); break;
+                case '\n': sb.append("\\n"); break;
+                case '\r': sb.append("\\r"); break;
+                case '\t': sb.append("\\t"); break;
+                default:
+                    if (c < 0x20) {
+                        sb.append(String.format("\\u%04x", (int) c));
+                    } else {
+                        sb.append(c);
+                    }
+            }
+        }
+        sb.append('"');
+    }
+
+    private static void responderErro(HttpExchange troca, int status, String mensagem) throws IOException {
+        StringBuilder sb = new StringBuilder("{\"erro\":");
+        json(mensagem, sb);
+        responder(troca, status, sb.append('}').toString());
+    }
+
+    private static void responder(HttpExchange troca, int status, String json) throws IOException {
+        byte[] corpo = json.getBytes(StandardCharsets.UTF_8);
+        troca.getResponseHeaders().set("Content-Type", "application/json; charset=utf-8");
+        troca.sendResponseHeaders(status, corpo.length);
+        try (OutputStream saida = troca.getResponseBody()) {
+            saida.write(corpo);
+        }
+    }
+
+    // Erro de requisição já com o status HTTP da resposta
+    private static class RequisicaoInvalida extends RuntimeException {
+        private static final long serialVersionUID = 1L;
+
+        final int status;
+
+        RequisicaoInvalida(int status, String mensagem) {
+            super(mensagem);
+            this.status = status;
+        }
+    }
+
+    public static void main(String[] args) throws IOException {
+        int porta = args.length > 0 ? Integer.parseInt(args[0]) : 8080;
+        Path diretorio = Paths.get(args.length > 1 ? args[1] : "");
+        int threads = args.length > 2 ? Integer.parseInt(args[2])
+                : Math.max(64, Runtime.getRuntime().availableProcessors() * 16);
+        boolean exigirSessao = args.length > 3 && Boolean.parseBoolean(args[3]);
+
+        // Sem o algoritmo de Nagle: cabeçalho e corpo saem em gravações separadas e, com ACK
+        // atrasado do cliente, cada resposta esperaria dezenas de milissegundos
+        if (System.getProperty("sun.net.httpserver.nodelay") == null) {
+            System.setProperty("sun.net.httpserver.nodelay", "true");
+        }
+
+        Banco banco = new Banco(diretorio);
+        // Só aceita conexões locais: o token da sessão e a senha trafegam sem TLS
+        ServidorBanco servidor = new ServidorBanco(banco, new InetSocketAddress(InetAddress.getLoopbackAddress(), porta),
+                threads, exigirSessao);
+        Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+            servidor.parar();
+            // Sem interface gráfica: a falha vai para o log; o diário já cobre o que foi confirmado
+            try {
+                banco.checkpoint();
+            } catch (IOException | UncheckedIOException e) {
+                System.err.println("Falha ao gravar o checkpoint no encerramento: " + e.getMessage());
+            }
+        }, "encerrar-servidor"));
+        servidor.iniciar();
+        System.out.println("Servidor do banco em http://localhost:" + servidor.getPorta() + " (" + threads + " threads"
+                + (exigirSessao ? ", com sessão" : "") + ")");
+    }
+}
@@ -0,0 +1,71 @@
+package br.com.agencia;
+
+import java.security.SecureRandom;
+import java.util.Base64;
+import java.util.concurrent.ConcurrentHashMap;
+
+// Sessões de operadores já autenticados. O hash da senha é caro de propósito; depois do
+// login cada operação apresenta um token aleatório, conferido com uma consulta ao mapa.
+// Uma sessão expira depois de 'validadeMillis' sem uso.
+class Sessoes {
+    private static final int BYTES_TOKEN = 32;
+
+    private static final class Sessao {
+        final String login;
+        volatile long ultimoUso;
+
+        Sessao(String login, long ultimoUso) {
+            this.login = login;
+            this.ultimoUso = ultimoUso;
+        }
+    }
+
+    private final ConcurrentHashMap<String, Sessao> sessoes = new ConcurrentHashMap<>();
+    private final SecureRandom random = new SecureRandom();
+    private final long validadeMillis;
+
+    Sessoes(long validadeMillis) {
+        this.validadeMillis = validadeMillis;
+    }
+
+    String abrir(String login) {
+        byte[] bytes = new byte[BYTES_TOKEN];
+        random.nextBytes(bytes);
+        String token = Base64.getUrlEncoder().withoutPadding().encodeToString(bytes);
+        sessoes.put(token, new Sessao(login, System.currentTimeMillis()));
+        return token;
+    }
+
+    // Login dono do token, ou null se o token não existe ou expirou
+    String validar(String token) {
+        if (token == null) return null;
+        Sessao sessao = sessoes.get(token);
+        if (sessao == null) return null;
+        long agora = System.currentTimeMillis();
+        if (agora - sessao.ultimoUso > validadeMillis) {
+            sessoes.remove(token, sessao);
+            return null;
+        }
+        sessao.ultimoUso = agora;
+        return sessao.login;
+    }
+
+    void encerrar(String token) {
+        if (token != null) sessoes.remove(token);
+    }
+
+    // Ao trocar a senha, as sessões abertas com a anterior deixam de valer
+    void encerrarDoUsuario(String login) {
+        sessoes.values().removeIf(sessao -> sessao.login.equals(login));
+    }
+
+    // Chamado periodicamente: descarta sessões expiradas que ninguém mais apresentou
+    void expirar() {
+        long agora = System.currentTimeMillis();
+        sessoes.values().removeIf(sessao -> agora - sessao.ultimoUso > validadeMillis);
+    }
+
+    int tamanho() {
+        return sessoes.size();
+    }
+}
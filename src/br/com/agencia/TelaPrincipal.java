@@ -4,216 +4,48 @@ import javax.swing.*;
 import java.awt.*;
 import java.awt.event.*;
 import java.io.*;
-import java.text.SimpleDateFormat;
-import java.util.ArrayList;
-import java.util.Date;
+import java.time.LocalDate;
 import java.util.List;
-
-// Classe Usuario
-class Usuario implements Serializable {
-    private static final long serialVersionUID = 1L;
-    private String login;
-    private String senha;
-    private String nome;
-
-    public Usuario(String login, String senha, String nome) {
-        this.login = login;
-        this.senha = senha;
-        this.nome = nome;
-    }
-
-    public String getLogin() { return login; }
-    public String getSenha() { return senha; }
-    public String getNome() { return nome; }
-
-    public void setSenha(String novaSenha) {
-        this.senha = novaSenha;
-    }
-}
-
-// Classe Conta
-class Conta implements Serializable {
-    private static final long serialVersionUID = 1L;
-    private int numero;
-    private String titular;
-    private double saldo;
-    private List<Transacao> transacoes = new ArrayList<>();
-
-    public Conta(int numero, String titular) {
-        this.numero = numero;
-        this.titular = titular;
-        this.saldo = 0.0;
-    }
-
-    public int getNumero() { return numero; }
-    public String getTitular() { return titular; }
-    public double getSaldo() { return saldo; }
-    public List<Transacao> getTransacoes() { return transacoes; }
-
-    public void depositar(double valor) {
-        if (valor > 0) {
-            saldo += valor;
-            transacoes.add(new Transacao("DEPÓSITO", valor, "Depósito em conta"));
-        }
-    }
-
-    public boolean sacar(double valor) {
-        if (valor > 0 && saldo >= valor) {
-            saldo -= valor;
-            transacoes.add(new Transacao("SAQUE", valor, "Saque em conta"));
-            return true;
-        }
-        return false;
-    }
-
-    public boolean transferir(Conta destino, double valor) {
-        if (this.sacar(valor)) {
-            destino.depositar(valor);
-            transacoes.add(new Transacao("TRANSFERÊNCIA", valor,
-                    "Transferência para conta " + destino.getNumero() + " - " + destino.getTitular()));
-            destino.transacoes.add(new Transacao("TRANSFERÊNCIA", valor,
-                    "Transferência da conta " + this.numero + " - " + this.titular));
-            return true;
-        }
-        return false;
-    }
-
-    public String getExtrato() {
-        StringBuilder sb = new StringBuilder();
-        SimpleDateFormat sdf = new SimpleDateFormat("dd/MM/yyyy HH:mm:ss");
-        sb.append("Extrato da Conta ").append(numero).append("\n");
-        sb.append("Titular: ").append(titular).append("\n\n");
-        sb.append("Data/Hora               Tipo          Valor       Descrição\n");
-        sb.append("------------------------------------------------------------\n");
-
-        for (Transacao t : transacoes) {
-            sb.append(String.format("%-20s %-12s R$ %-10.2f %s\n",
-                    sdf.format(t.getData()),
-                    t.getTipo(),
-                    t.getValor(),
-                    t.getDescricao()));
-        }
-
-        sb.append("\nSaldo Atual: R$ ").append(String.format("%.2f", saldo));
-        return sb.toString();
-    }
-}
-
-// Classe Transacao
-class Transacao implements Serializable {
-    private static final long serialVersionUID = 1L;
-    private Date data;
-    private String tipo;
-    private double valor;
-    private String descricao;
-
-    public Transacao(String tipo, double valor, String descricao) {
-        this.data = new Date();
-        this.tipo = tipo;
-        this.valor = valor;
-        this.descricao = descricao;
-    }
-
-    public Date getData() { return data; }
-    public String getTipo() { return tipo; }
-    public double getValor() { return valor; }
-    public String getDescricao() { return descricao; }
-}
-
-// Classe Banco
-class Banco implements Serializable {
-    private static final long serialVersionUID = 1L;
-    private List<Conta> contas = new ArrayList<>();
-    private List<Usuario> usuarios = new ArrayList<>();
-    private static final String ARQUIVO = "dados_banco.ser";
-
-    public Banco() {
-        carregar();
-        if (usuarios.isEmpty()) {
-            usuarios.add(new Usuario("admin", "1234", "Administrador"));
-            usuarios.add(new Usuario("gerente", "ger123", "Gerente"));
-            usuarios.add(new Usuario("cliente", "cli123", "Cliente"));
-            salvar();
-        }
-    }
-
-    public void adicionarConta(Conta conta) {
-        contas.add(conta);
-        salvar();
-    }
-
-    public Conta buscarConta(int numero) {
-        for (Conta conta : contas) {
-            if (conta.getNumero() == numero) return conta;
-        }
-        return null;
-    }
-
-    public List<Conta> listarContas() {
-        return contas;
-    }
-
-    public Usuario buscarUsuario(String login) {
-        for (Usuario usuario : usuarios) {
-            if (usuario.getLogin().equals(login)) {
-                return usuario;
-            }
-        }
-        return null;
-    }
-
-    public boolean autenticarUsuario(String login, String senha) {
-        Usuario usuario = buscarUsuario(login);
-        return usuario != null && usuario.getSenha().equals(senha);
-    }
-
-    public boolean cadastrarUsuario(String login, String senha, String nome) {
-        if (buscarUsuario(login) != null) {
-            return false;
-        }
-        usuarios.add(new Usuario(login, senha, nome));
-        salvar();
-        return true;
-    }
-
-    public void alterarSenha(String login, String novaSenha) {
-        Usuario usuario = buscarUsuario(login);
-        if (usuario != null) {
-            usuario.setSenha(novaSenha);
-            salvar();
-        }
-    }
-
-    public void salvar() {
-        try (ObjectOutputStream out = new ObjectOutputStream(new FileOutputStream(ARQUIVO))) {
-            Object[] dados = new Object[]{contas, usuarios};
-            out.writeObject(dados);
-        } catch (IOException e) {
-            JOptionPane.showMessageDialog(null, "Erro ao salvar os dados: " + e.getMessage());
-        }
-    }
-
-    @SuppressWarnings("unchecked")
-    public void carregar() {
-        try (ObjectInputStream in = new ObjectInputStream(new FileInputStream(ARQUIVO))) {
-            Object[] dados = (Object[]) in.readObject();
-            contas = (List<Conta>) dados[0];
-            usuarios = (List<Usuario>) dados[1];
-        } catch (Exception e) {
-            contas = new ArrayList<>();
-            usuarios = new ArrayList<>();
-        }
-    }
-}
+import java.util.function.BiConsumer;
+import java.util.function.IntConsumer;
 
 // Tela de Login
 class TelaLogin extends JFrame {
     private Banco banco;
+    private final ExecutorBancario executor = new ExecutorBancario();
+    private JButton btnLogin;
+    private JButton btnCadastrar;
 
     public TelaLogin() {
-        banco = new Banco();
         configurarJanela();
         criarPainelLogin();
+        carregarBanco();
+    }
+
+    // A tela aparece imediatamente; os dados são carregados em segundo plano
+    private void carregarBanco() {
+        btnLogin.setEnabled(false);
+        btnCadastrar.setEnabled(false);
+        btnLogin.setText("Carregando...");
+        executor.executar(Banco::new, b -> {
+            banco = b;
+            btnLogin.setText("Login");
+            btnLogin.setEnabled(true);
+            btnCadastrar.setEnabled(true);
+        }, erro -> {
+            // Sem os dados não há como entrar: tenta de novo ou encerra
+            btnLogin.setText("Login");
+            Object[] opcoes = {"Tentar novamente", "Sair"};
+            int escolha = JOptionPane.showOptionDialog(this,
+                    "Não foi possível carregar os dados do banco:\n" + erro.getMessage(), "Erro",
+                    JOptionPane.DEFAULT_OPTION, JOptionPane.ERROR_MESSAGE, null, opcoes, opcoes[0]);
+            if (escolha == 0) {
+                carregarBanco();
+            } else {
+                dispose();
+                System.exit(1);
+            }
+        });
     }
 
     private void configurarJanela() {
@@ -276,18 +108,16 @@ class TelaLogin extends JFrame {
         lblEsqueciSenha.addMouseListener(new MouseAdapter() {
             @Override
             public void mouseClicked(MouseEvent e) {
+                if (banco == null) return;
+                // A senha é guardada só como hash e não pode ser mostrada; a mensagem é a
+                // mesma para qualquer login, para não revelar quais usuários existem
                 String usuario = JOptionPane.showInputDialog(TelaLogin.this,
                         "Digite seu nome de usuário para recuperar a senha:");
-
-                Usuario user = banco.buscarUsuario(usuario);
-                if (user != null) {
+                if (usuario != null) {
                     JOptionPane.showMessageDialog(TelaLogin.this,
-                            "Sua senha é: " + user.getSenha() +
-                                    "\nPor favor, altere após o login.",
+                            "Por segurança, a senha não pode ser exibida.\n"
+                                    + "Procure o administrador para cadastrar uma nova senha.",
                             "Recuperação de Senha", JOptionPane.INFORMATION_MESSAGE);
-                } else if (usuario != null) {
-                    JOptionPane.showMessageDialog(TelaLogin.this,
-                            "Usuário não encontrado.", "Erro", JOptionPane.ERROR_MESSAGE);
                 }
             }
         });
@@ -299,27 +129,33 @@ class TelaLogin extends JFrame {
         gbc.gridwidth = 2;
         gbc.fill = GridBagConstraints.CENTER;
 
-        JButton btnLogin = new JButton("Login");
+        btnLogin = new JButton("Login");
         btnLogin.setBackground(new Color(0, 47, 108));
         btnLogin.setForeground(Color.WHITE);
         btnLogin.setFocusPainted(false);
         btnLogin.setIcon(UIManager.getIcon("OptionPane.questionIcon"));
 
         btnLogin.addActionListener(e -> {
-            if (banco.autenticarUsuario(txtUsuario.getText(), new String(txtSenha.getPassword()))) {
-                new TelaPrincipal(banco).setVisible(true);
-                dispose();
-            } else {
-                JOptionPane.showMessageDialog(this, "Usuário ou senha inválidos!",
-                        "Erro de Login", JOptionPane.ERROR_MESSAGE);
-            }
+            String login = txtUsuario.getText();
+            String senha = new String(txtSenha.getPassword());
+            btnLogin.setEnabled(false);
+            executor.executar(() -> banco.autenticarUsuario(login, senha), autenticado -> {
+                btnLogin.setEnabled(true);
+                if (autenticado) {
+                    new TelaPrincipal(banco, executor).setVisible(true);
+                    dispose();
+                } else {
+                    JOptionPane.showMessageDialog(this, "Usuário ou senha inválidos!",
+                            "Erro de Login", JOptionPane.ERROR_MESSAGE);
+                }
+            });
         });
 
         panel.add(btnLogin, gbc);
 
         // Botão de Cadastro
         gbc.gridy = 6;
-        JButton btnCadastrar = new JButton("Cadastrar novo usuário");
+        btnCadastrar = new JButton("Cadastrar novo usuário");
         btnCadastrar.setBackground(new Color(0, 100, 0));
         btnCadastrar.setForeground(Color.WHITE);
         btnCadastrar.setFocusPainted(false);
@@ -414,13 +250,15 @@ class TelaLogin extends JFrame {
                 return;
             }
 
-            if (banco.cadastrarUsuario(usuario, senha, nome)) {
-                JOptionPane.showMessageDialog(dialog, "Cadastro realizado com sucesso!\nFaça login para continuar.",
-                        "Sucesso", JOptionPane.INFORMATION_MESSAGE);
-                dialog.dispose();
-            } else {
-                JOptionPane.showMessageDialog(dialog, "Erro ao cadastrar usuário!", "Erro", JOptionPane.ERROR_MESSAGE);
-            }
+            executor.executar(() -> banco.cadastrarUsuario(usuario, senha, nome), cadastrado -> {
+                if (cadastrado) {
+                    JOptionPane.showMessageDialog(dialog, "Cadastro realizado com sucesso!\nFaça login para continuar.",
+                            "Sucesso", JOptionPane.INFORMATION_MESSAGE);
+                    dialog.dispose();
+                } else {
+                    JOptionPane.showMessageDialog(dialog, "Erro ao cadastrar usuário!", "Erro", JOptionPane.ERROR_MESSAGE);
+                }
+            });
         });
 
         dialog.add(btnConfirmar, gbc);
@@ -431,7 +269,10 @@ class TelaLogin extends JFrame {
 
 // Classe principal
 public class TelaPrincipal extends JFrame {
+    private static final int CONTAS_POR_PAGINA = 50;
+    private static final int MAXIMO_CONTAS_BUSCA = 200;
     private Banco banco;
+    private final ExecutorBancario executor;
     private JPanel painelInformacoes;
     private boolean temaEscuro = false;
     private Color corFundoPadrao = new Color(0, 47, 108);
@@ -440,10 +281,20 @@ public class TelaPrincipal extends JFrame {
     private Color corTextoEscuro = Color.WHITE;
 
     public TelaPrincipal(Banco banco) {
+        this(banco, new ExecutorBancario());
+    }
+
+    TelaPrincipal(Banco banco, ExecutorBancario executor) {
         this.banco = banco;
+        this.executor = executor;
         configurarJanela();
         criarPainelPrincipal();
         setVisible(true);
+        // Monta o índice de titulares enquanto o operador ainda não buscou ninguém
+        executor.executar(() -> {
+            banco.prepararBuscaPorTitular();
+            return null;
+        }, nada -> { });
     }
 
     private void configurarJanela() {
@@ -485,12 +336,12 @@ public class TelaPrincipal extends JFrame {
         lblLogo.setForeground(Color.WHITE);
         cabecalho.add(lblLogo, BorderLayout.CENTER);
 
-        JLabel lblDataHora = new JLabel(new SimpleDateFormat("dd/MM/yyyy HH:mm:ss").format(new Date()));
+        JLabel lblDataHora = new JLabel(DataHora.formatar(System.currentTimeMillis()));
         lblDataHora.setFont(new Font("Arial", Font.PLAIN, 14));
         lblDataHora.setForeground(Color.WHITE);
         cabecalho.add(lblDataHora, BorderLayout.EAST);
 
-        new Timer(1000, e -> lblDataHora.setText(new SimpleDateFormat("dd/MM/yyyy HH:mm:ss").format(new Date()))).start();
+        new Timer(1000, e -> lblDataHora.setText(DataHora.formatar(System.currentTimeMillis()))).start();
 
         return cabecalho;
     }
@@ -517,184 +368,144 @@ public class TelaPrincipal extends JFrame {
         JButton btnExcluir = criarBotaoComIcone("EXCLUIR CONTA", "delete.png", fonte, corExcluir);
         JButton btnAlterarSenha = criarBotaoComIcone("ALTERAR SENHA", "password.png", fonte, corSenha);
         JButton btnTema = criarBotaoComIcone(temaEscuro ? "TEMA CLARO" : "TEMA ESCURO", "theme.png", fonte, new Color(200, 200, 200));
+        JButton btnLote = criarBotaoComIcone("IMPORTAR LOTE", "import.png", fonte, corFundo);
         JButton btnSair = criarBotaoComIcone("SAIR", "exit.png", fonte, new Color(204, 0, 0));
 
         // Ações dos botões
         btnCriar.addActionListener(e -> {
             String nome = JOptionPane.showInputDialog(this, "Nome do titular:");
             if (nome != null && !nome.trim().isEmpty()) {
-                int numero = banco.listarContas().size() + 1;
-                banco.adicionarConta(new Conta(numero, nome));
-                atualizarInformacoes("Conta criada com sucesso! Número: " + numero);
+                executor.executar(() -> banco.criarConta(nome),
+                        numero -> atualizarInformacoes("Conta criada com sucesso! Número: " + numero));
             }
         });
 
-        btnDepositar.addActionListener(e -> {
-            int numero = solicitarNumeroConta();
-            Conta conta = banco.buscarConta(numero);
+        btnDepositar.addActionListener(e -> solicitarConta("Informe o número da conta:", (numero, conta) -> {
             if (conta != null) {
-                double valor = solicitarValor("Informe o valor do depósito:");
+                long valor = solicitarValor("Informe o valor do depósito:");
                 if (valor > 0) {
-                    conta.depositar(valor);
-                    banco.salvar();
-                    atualizarInformacoes("Depósito de R$ " + String.format("%.2f", valor) + " realizado com sucesso na conta " + numero);
+                    executor.executar(() -> banco.depositar(numero, valor), realizado -> {
+                        if (realizado) {
+                            atualizarInformacoes("Depósito de R$ " + Dinheiro.formatar(valor) + " realizado com sucesso na conta " + numero);
+                        } else {
+                            atualizarInformacoes("Conta não encontrada!");
+                        }
+                    });
                 } else {
                     atualizarInformacoes("Valor inválido para depósito!");
                 }
             } else {
                 atualizarInformacoes("Conta não encontrada!");
             }
-        });
+        }));
 
-        btnSacar.addActionListener(e -> {
-            int numero = solicitarNumeroConta();
-            Conta conta = banco.buscarConta(numero);
+        btnSacar.addActionListener(e -> solicitarConta("Informe o número da conta:", (numero, conta) -> {
             if (conta != null) {
-                double valor = solicitarValor("Informe o valor do saque:");
+                long valor = solicitarValor("Informe o valor do saque:");
                 if (valor > 0) {
-                    if (conta.sacar(valor)) {
-                        banco.salvar();
-                        atualizarInformacoes("Saque de R$ " + String.format("%.2f", valor) + " realizado com sucesso na conta " + numero);
-                    } else {
-                        atualizarInformacoes("Saldo insuficiente ou valor inválido!");
-                    }
+                    executor.executar(() -> banco.sacar(numero, valor), realizado -> {
+                        if (realizado) {
+                            atualizarInformacoes("Saque de R$ " + Dinheiro.formatar(valor) + " realizado com sucesso na conta " + numero);
+                        } else {
+                            atualizarInformacoes("Saldo insuficiente ou valor inválido!");
+                        }
+                    });
                 } else {
                     atualizarInformacoes("Valor inválido para saque!");
                 }
             } else {
                 atualizarInformacoes("Conta não encontrada!");
             }
-        });
-
-        btnTransferir.addActionListener(e -> {
-            int origem = solicitarNumeroConta("Conta de origem:");
-            int destino = solicitarNumeroConta("Conta de destino:");
-
-            if (origem == destino) {
-                atualizarInformacoes("Não é possível transferir para a mesma conta!");
-                return;
-            }
+        }));
 
-            double valor = solicitarValor("Valor da transferência:");
-            if (valor <= 0) {
-                atualizarInformacoes("Valor inválido para transferência!");
-                return;
-            }
+        btnTransferir.addActionListener(e -> solicitarNumeroConta("Conta de origem:", origem ->
+                solicitarNumeroConta("Conta de destino:", destino -> transferir(origem, destino))));
 
-            Conta cOrigem = banco.buscarConta(origem);
-            Conta cDestino = banco.buscarConta(destino);
+        btnListar.addActionListener(e -> consultarContas(0, PaginaContas.Ordem.NUMERO));
 
-            if (cOrigem != null && cDestino != null) {
-                if (cOrigem.transferir(cDestino, valor)) {
-                    banco.salvar();
-                    atualizarInformacoes("Transferência de R$ " + String.format("%.2f", valor) +
-                            " da conta " + origem + " (" + cOrigem.getTitular() + ") para a conta " +
-                            destino + " (" + cDestino.getTitular() + ") realizada com sucesso!");
+        btnExtrato.addActionListener(e -> solicitarNumeroConta("Informe o número da conta para ver o extrato:", numero ->
+            executor.executar(() -> banco.abrirExtrato(numero, Long.MIN_VALUE, Long.MAX_VALUE), cursor -> {
+                if (cursor != null) {
+                    JOptionPane.showMessageDialog(this, criarVisaoExtrato(cursor), "Extrato da Conta " + numero,
+                            JOptionPane.INFORMATION_MESSAGE);
                 } else {
-                    atualizarInformacoes("Saldo insuficiente para transferência!");
+                    atualizarInformacoes("Conta não encontrada!");
                 }
-            } else {
-                atualizarInformacoes("Conta(s) não encontrada(s)!");
-            }
-        });
+            })));
 
-        btnListar.addActionListener(e -> {
-            painelInformacoes.removeAll();
-            if (banco.listarContas().isEmpty()) {
-                painelInformacoes.add(new JLabel("Nenhuma conta cadastrada no sistema."));
-            } else {
-                for (Conta c : banco.listarContas()) {
-                    JLabel lblConta = new JLabel("Conta " + c.getNumero() + " - Titular: " + c.getTitular() +
-                            " - Saldo: R$ " + String.format("%.2f", c.getSaldo()));
-                    painelInformacoes.add(lblConta);
-                }
-            }
-            painelInformacoes.revalidate();
-            painelInformacoes.repaint();
-        });
-
-        btnExtrato.addActionListener(e -> {
-            int numero = solicitarNumeroConta("Informe o número da conta para ver o extrato:");
-            Conta conta = banco.buscarConta(numero);
-            if (conta != null) {
-                JTextArea textArea = new JTextArea(conta.getExtrato());
-                textArea.setEditable(false);
-                textArea.setFont(new Font("Monospaced", Font.PLAIN, 12));
-
-                JScrollPane scrollPane = new JScrollPane(textArea);
-                scrollPane.setPreferredSize(new Dimension(600, 400));
-
-                JOptionPane.showMessageDialog(this, scrollPane, "Extrato da Conta " + numero,
-                        JOptionPane.INFORMATION_MESSAGE);
-            } else {
-                atualizarInformacoes("Conta não encontrada!");
-            }
-        });
-
-        btnEditar.addActionListener(e -> {
-            int numero = solicitarNumeroConta("Informe o número da conta para editar:");
-            Conta conta = banco.buscarConta(numero);
+        btnEditar.addActionListener(e -> solicitarConta("Informe o número da conta para editar:", (numero, conta) -> {
             if (conta != null) {
                 String novoNome = JOptionPane.showInputDialog(this,
                         "Editar titular da conta " + numero + ":", conta.getTitular());
                 if (novoNome != null && !novoNome.trim().isEmpty()) {
-                    try {
-                        java.lang.reflect.Field field = Conta.class.getDeclaredField("titular");
-                        field.setAccessible(true);
-                        field.set(conta, novoNome);
-                        banco.salvar();
-                        atualizarInformacoes("Conta " + numero + " editada com sucesso!");
-                    } catch (Exception ex) {
-                        atualizarInformacoes("Erro ao editar conta!");
-                    }
+                    executor.executar(() -> banco.alterarTitular(numero, novoNome.trim()), editada -> {
+                        if (editada) {
+                            atualizarInformacoes("Conta " + numero + " editada com sucesso!");
+                        } else {
+                            atualizarInformacoes("Erro ao editar conta!");
+                        }
+                    });
                 }
             } else {
                 atualizarInformacoes("Conta não encontrada!");
             }
-        });
+        }));
 
-        btnExcluir.addActionListener(e -> {
-            int numero = solicitarNumeroConta("Informe o número da conta para excluir:");
-            Conta conta = banco.buscarConta(numero);
+        btnExcluir.addActionListener(e -> solicitarConta("Informe o número da conta para excluir:", (numero, conta) -> {
             if (conta != null) {
                 int confirmacao = JOptionPane.showConfirmDialog(this,
                         "Tem certeza que deseja excluir a conta " + numero + " de " + conta.getTitular() + "?",
                         "Confirmar exclusão", JOptionPane.YES_NO_OPTION);
 
                 if (confirmacao == JOptionPane.YES_OPTION) {
-                    try {
-                        java.lang.reflect.Field field = Banco.class.getDeclaredField("contas");
-                        field.setAccessible(true);
-                        @SuppressWarnings("unchecked")
-                        List<Conta> contas = (List<Conta>) field.get(banco);
-                        contas.remove(conta);
-                        banco.salvar();
-                        atualizarInformacoes("Conta " + numero + " excluída com sucesso!");
-                    } catch (Exception ex) {
-                        atualizarInformacoes("Erro ao excluir conta!");
-                    }
+                    executor.executar(() -> banco.removerConta(numero), excluida -> {
+                        if (excluida) {
+                            atualizarInformacoes("Conta " + numero + " excluída com sucesso!");
+                        } else {
+                            atualizarInformacoes("Erro ao excluir conta!");
+                        }
+                    });
                 }
             } else {
                 atualizarInformacoes("Conta não encontrada!");
             }
-        });
+        }));
 
         btnAlterarSenha.addActionListener(e -> {
             String usuario = JOptionPane.showInputDialog(this, "Digite seu usuário:");
             if (usuario != null) {
                 String senhaAtual = JOptionPane.showInputDialog(this, "Digite sua senha atual:");
-                if (senhaAtual != null && banco.autenticarUsuario(usuario, senhaAtual)) {
-                    String novaSenha = JOptionPane.showInputDialog(this, "Digite a nova senha:");
-                    if (novaSenha != null && !novaSenha.trim().isEmpty()) {
-                        banco.alterarSenha(usuario, novaSenha);
-                        JOptionPane.showMessageDialog(this, "Senha alterada com sucesso!");
+                if (senhaAtual == null) return;
+                executor.executar(() -> banco.autenticarUsuario(usuario, senhaAtual), autenticado -> {
+                    if (autenticado) {
+                        String novaSenha = JOptionPane.showInputDialog(this, "Digite a nova senha:");
+                        if (novaSenha != null && !novaSenha.trim().isEmpty()) {
+                            executor.executar(() -> {
+                                banco.alterarSenha(usuario, novaSenha);
+                                return null;
+                            }, nada -> JOptionPane.showMessageDialog(this, "Senha alterada com sucesso!"));
+                        }
+                    } else {
+                        JOptionPane.showMessageDialog(this, "Usuário ou senha inválidos!", "Erro", JOptionPane.ERROR_MESSAGE);
                     }
-                } else {
-                    JOptionPane.showMessageDialog(this, "Usuário ou senha inválidos!", "Erro", JOptionPane.ERROR_MESSAGE);
-                }
+                });
             }
         });
 
+        btnLote.addActionListener(e -> {
+            JFileChooser seletor = new JFileChooser();
+            seletor.setDialogTitle("Arquivo de lançamentos (CSV ou largura fixa)");
+            if (seletor.showOpenDialog(this) != JFileChooser.APPROVE_OPTION) return;
+            File arquivo = seletor.getSelectedFile();
+            ProcessadorLote.Formato formato = ProcessadorLote.Formato.pelaExtensao(arquivo.getName());
+            atualizarInformacoes("Processando " + arquivo.getName() + "...");
+            executor.executar(() -> {
+                try (Reader entrada = new InputStreamReader(new FileInputStream(arquivo), "UTF-8")) {
+                    return banco.processarLote(entrada, formato);
+                }
+            }, this::mostrarResultadoLote);
+        });
+
         btnTema.addActionListener(e -> alternarTema());
 
         btnSair.addActionListener(e -> {
@@ -715,11 +526,112 @@ public class TelaPrincipal extends JFrame {
         painelBotoes.add(btnExcluir);
         painelBotoes.add(btnAlterarSenha);
         painelBotoes.add(btnTema);
+        painelBotoes.add(btnLote);
         painelBotoes.add(btnSair);
 
         return painelBotoes;
     }
 
+    // Consulta paginada: só as contas da página são lidas e exibidas; os totais do
+    // cabeçalho vêm dos agregados do banco, sem percorrer as contas
+    private void consultarContas(int inicio, PaginaContas.Ordem ordem) {
+        executor.executar(() -> banco.listarContas(inicio, CONTAS_POR_PAGINA, ordem), this::mostrarConsulta);
+    }
+
+    private void mostrarConsulta(PaginaContas pagina) {
+        painelInformacoes.removeAll();
+        Font fonte = new Font("Arial", Font.PLAIN, 14);
+        Agregados.Movimento hoje = banco.movimentoDoDia(LocalDate.now());
+        JLabel lblTotais = new JLabel(pagina.total + " contas - Saldo total: R$ " + Dinheiro.formatar(banco.saldoTotal()));
+        lblTotais.setFont(new Font("Arial", Font.BOLD, 14));
+        painelInformacoes.add(lblTotais);
+        JLabel lblHoje = new JLabel("Hoje: " + hoje.quantidadeDepositos + " depósitos (R$ " + Dinheiro.formatar(hoje.depositos)
+                + "), " + hoje.quantidadeSaques + " saques (R$ " + Dinheiro.formatar(hoje.saques) + "), "
+                + hoje.quantidadeTransferencias + " transferências (R$ " + Dinheiro.formatar(hoje.transferencias) + ")");
+        lblHoje.setFont(fonte);
+        painelInformacoes.add(lblHoje);
+        painelInformacoes.add(Box.createVerticalStrut(10));
+
+        if (pagina.total == 0) {
+            painelInformacoes.add(new JLabel("Nenhuma conta cadastrada no sistema."));
+        } else {
+            for (PaginaContas.Linha linha : pagina.linhas) {
+                JLabel lblConta = new JLabel("Conta " + linha.numero + " - Titular: " + linha.titular +
+                        " - Saldo: R$ " + Dinheiro.formatar(linha.saldoCentavos));
+                lblConta.setFont(fonte);
+                painelInformacoes.add(lblConta);
+            }
+
+            int paginas = (pagina.total + CONTAS_POR_PAGINA - 1) / CONTAS_POR_PAGINA;
+            JPanel navegacao = new JPanel(new FlowLayout(FlowLayout.LEFT));
+            navegacao.setOpaque(false);
+            navegacao.setAlignmentX(Component.LEFT_ALIGNMENT);
+            JComboBox<PaginaContas.Ordem> cmbOrdem = new JComboBox<>(PaginaContas.Ordem.values());
+            cmbOrdem.setSelectedItem(pagina.ordem);
+            cmbOrdem.addActionListener(e -> consultarContas(0, (PaginaContas.Ordem) cmbOrdem.getSelectedItem()));
+            JButton btnAnterior = new JButton("< Anterior");
+            btnAnterior.setEnabled(pagina.inicio > 0);
+            btnAnterior.addActionListener(e -> consultarContas(Math.max(0, pagina.inicio - CONTAS_POR_PAGINA), pagina.ordem));
+            JButton btnProxima = new JButton("Próxima >");
+            btnProxima.setEnabled(pagina.inicio + CONTAS_POR_PAGINA < pagina.total);
+            btnProxima.addActionListener(e -> consultarContas(pagina.inicio + CONTAS_POR_PAGINA, pagina.ordem));
+            navegacao.add(new JLabel("Ordem:"));
+            navegacao.add(cmbOrdem);
+            navegacao.add(btnAnterior);
+            navegacao.add(new JLabel("Página " + (pagina.inicio / CONTAS_POR_PAGINA + 1) + " de " + paginas));
+            navegacao.add(btnProxima);
+            painelInformacoes.add(Box.createVerticalStrut(10));
+            painelInformacoes.add(navegacao);
+        }
+        painelInformacoes.revalidate();
+        painelInformacoes.repaint();
+    }
+
+    // Resumo do lote com as linhas rejeitadas (limitadas às primeiras, para não travar a tela)
+    private void mostrarResultadoLote(ProcessadorLote.Resultado resultado) {
+        atualizarInformacoes(resultado.resumo());
+        if (resultado.rejeicoes.isEmpty()) return;
+        int limite = Math.min(1000, resultado.rejeicoes.size());
+        StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < limite; i++) {
+            sb.append(resultado.rejeicoes.get(i)).append('\n');
+        }
+        if (limite < resultado.rejeicoes.size()) {
+            sb.append("... e mais ").append(resultado.rejeicoes.size() - limite).append(" linhas rejeitadas");
+        }
+        JTextArea texto = new JTextArea(sb.toString(), 20, 70);
+        texto.setEditable(false);
+        texto.setFont(new Font("Monospaced", Font.PLAIN, 12));
+        JOptionPane.showMessageDialog(this, new JScrollPane(texto), "Linhas rejeitadas", JOptionPane.WARNING_MESSAGE);
+    }
+
+    // Lista virtualizada: o JList só pede as linhas visíveis na tela, e o modelo formata
+    // as páginas delas fora da thread do Swing
+    private JPanel criarVisaoExtrato(CursorExtrato cursor) {
+        Font fonte = new Font("Monospaced", Font.PLAIN, 12);
+
+        JTextArea cabecalho = new JTextArea(cursor.cabecalho());
+        cabecalho.setEditable(false);
+        cabecalho.setFont(fonte);
+
+        JList<String> linhas = new JList<>(new ModeloExtrato(cursor, executor));
+        linhas.setFont(fonte);
+        linhas.setFixedCellHeight(linhas.getFontMetrics(fonte).getHeight());
+        linhas.setPrototypeCellValue("00/00/0000 00:00:00  TRANSFERÊNCIA R$ 0000000,00 Transferência da conta 000000");
+
+        JScrollPane scrollPane = new JScrollPane(linhas);
+        scrollPane.setPreferredSize(new Dimension(600, 320));
+
+        JLabel rodape = new JLabel(cursor.rodape().trim());
+        rodape.setFont(fonte);
+
+        JPanel painel = new JPanel(new BorderLayout());
+        painel.add(cabecalho, BorderLayout.NORTH);
+        painel.add(scrollPane, BorderLayout.CENTER);
+        painel.add(rodape, BorderLayout.SOUTH);
+        return painel;
+    }
+
     private JButton criarBotaoComIcone(String texto, String nomeIcone, Font fonte, Color cor) {
         JButton btn = new JButton(texto);
 
@@ -762,6 +674,9 @@ public class TelaPrincipal extends JFrame {
             case "exit.png":
                 icon = UIManager.getIcon("InternalFrame.closeIcon");
                 break;
+            case "import.png":
+                icon = UIManager.getIcon("FileView.computerIcon");
+                break;
         }
 
         if (icon != null) {
@@ -849,23 +764,85 @@ public class TelaPrincipal extends JFrame {
                 BorderFactory.createLineBorder(new Color(0, 47, 108), 2));
     }
 
-    private int solicitarNumeroConta() {
-        return solicitarNumeroConta("Informe o número da conta:");
+    // As duas contas são buscadas fora da EDT antes da transferência
+    private void transferir(int origem, int destino) {
+        if (origem == destino) {
+            atualizarInformacoes("Não é possível transferir para a mesma conta!");
+            return;
+        }
+
+        long valor = solicitarValor("Valor da transferência:");
+        if (valor <= 0) {
+            atualizarInformacoes("Valor inválido para transferência!");
+            return;
+        }
+
+        executor.executar(() -> new Conta[] {banco.buscarConta(origem), banco.buscarConta(destino)}, contas -> {
+            Conta cOrigem = contas[0];
+            Conta cDestino = contas[1];
+            if (cOrigem == null || cDestino == null) {
+                atualizarInformacoes("Conta(s) não encontrada(s)!");
+                return;
+            }
+            executor.executar(() -> banco.transferir(origem, destino, valor), realizada -> {
+                if (realizada) {
+                    atualizarInformacoes("Transferência de R$ " + Dinheiro.formatar(valor) +
+                            " da conta " + origem + " (" + cOrigem.getTitular() + ") para a conta " +
+                            destino + " (" + cDestino.getTitular() + ") realizada com sucesso!");
+                } else {
+                    atualizarInformacoes("Saldo insuficiente para transferência!");
+                }
+            });
+        });
+    }
+
+    // Conta informada pelo operador, buscada fora da EDT: 'naTela' recebe o número e a
+    // conta (null se não existir ou se a escolha foi cancelada)
+    private void solicitarConta(String mensagem, BiConsumer<Integer, Conta> naTela) {
+        solicitarNumeroConta(mensagem, numero ->
+                executor.executar(() -> banco.buscarConta(numero), conta -> naTela.accept(numero, conta)));
     }
 
-    private int solicitarNumeroConta(String mensagem) {
-        String input = JOptionPane.showInputDialog(this, mensagem);
+    // Aceita o número ou o começo do nome do titular; com um nome, a busca corre fora da EDT
+    // e o operador escolhe a conta entre as encontradas. 'naTela' recebe -1 se nada foi escolhido.
+    private void solicitarNumeroConta(String mensagem, IntConsumer naTela) {
+        String input = JOptionPane.showInputDialog(this, mensagem + "\n(número ou começo do nome do titular)");
+        if (input == null || input.trim().isEmpty()) {
+            naTela.accept(-1);
+            return;
+        }
         try {
-            return Integer.parseInt(input);
-        } catch (Exception e) {
+            naTela.accept(Integer.parseInt(input.trim()));
+        } catch (NumberFormatException e) {
+            executor.executar(() -> banco.buscarPorTitular(input, MAXIMO_CONTAS_BUSCA),
+                    encontradas -> naTela.accept(escolherContaPorTitular(input, encontradas)));
+        }
+    }
+
+    private int escolherContaPorTitular(String nome, List<PaginaContas.Linha> encontradas) {
+        if (encontradas.isEmpty()) {
+            JOptionPane.showMessageDialog(this, "Nenhum titular encontrado para \"" + nome.trim() + "\".");
             return -1;
         }
+        String[] opcoes = new String[encontradas.size()];
+        for (int i = 0; i < opcoes.length; i++) {
+            PaginaContas.Linha linha = encontradas.get(i);
+            opcoes[i] = "Conta " + linha.numero + " - " + linha.titular;
+        }
+        Object escolhida = JOptionPane.showInputDialog(this,
+                encontradas.size() == MAXIMO_CONTAS_BUSCA ? "Primeiras " + MAXIMO_CONTAS_BUSCA + " contas encontradas:" : "Contas encontradas:",
+                "Buscar por titular", JOptionPane.QUESTION_MESSAGE, null, opcoes, opcoes[0]);
+        for (int i = 0; i < opcoes.length; i++) {
+            if (opcoes[i].equals(escolhida)) return encontradas.get(i).numero;
+        }
+        return -1;
     }
 
-    private double solicitarValor(String mensagem) {
+    // Valor informado pelo usuário, em centavos
+    private long solicitarValor(String mensagem) {
         String input = JOptionPane.showInputDialog(this, mensagem);
         try {
-            return Double.parseDouble(input);
+            return Dinheiro.interpretar(input);
         } catch (Exception e) {
             return 0;
         }
@@ -0,0 +1,45 @@
+package br.com.agencia;
+
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.Serializable;
+import java.util.Date;
+
+// Classe Transacao
+class Transacao implements Serializable {
+    private static final long serialVersionUID = 1L;
+    private Date data;
+    private String tipo;
+    // Valor em centavos
+    private long valorCentavos;
+    private String descricao;
+
+    public Transacao(String tipo, long valorCentavos, String descricao) {
+        this(tipo, valorCentavos, descricao, new Date());
+    }
+
+    Transacao(String tipo, long valorCentavos, String descricao, Date data) {
+        this.data = data;
+        this.tipo = tipo;
+        this.valorCentavos = valorCentavos;
+        this.descricao = descricao;
+    }
+
+    public Date getData() { return data; }
+    public String getTipo() { return tipo; }
+    public long getValorCentavos() { return valorCentavos; }
+    public String getDescricao() { return descricao; }
+
+    // Arquivos gravados antes da troca para centavos guardam o valor como double em "valor"
+    private void readObject(ObjectInputStream in) throws IOException, ClassNotFoundException {
+        ObjectInputStream.GetField campos = in.readFields();
+        data = (Date) campos.get("data", null);
+        tipo = (String) campos.get("tipo", null);
+        descricao = (String) campos.get("descricao", null);
+        if (campos.defaulted("valorCentavos")) {
+            valorCentavos = Dinheiro.deReais(campos.get("valor", 0.0));
+        } else {
+            valorCentavos = campos.get("valorCentavos", 0L);
+        }
+    }
+}
@@ -0,0 +1,35 @@
+package br.com.agencia;
+
+import java.io.Serializable;
+
+// Classe Usuario
+class Usuario implements Serializable {
+    private static final long serialVersionUID = 1L;
+    private String login;
+    // Hash da senha (Senhas.codificar); texto puro só em dados de antes do hash
+    private String senha;
+    private String nome;
+    // Alterado desde o último checkpoint
+    private transient boolean modificado;
+
+    public Usuario(String login, String senhaCodificada, String nome) {
+        this.login = login;
+        this.senha = senhaCodificada;
+        this.nome = nome;
+    }
+
+    public String getLogin() { return login; }
+    String getSenhaCodificada() { return senha; }
+    public String getNome() { return nome; }
+
+    void setSenhaCodificada(String senhaCodificada) {
+        this.senha = senhaCodificada;
+        this.modificado = true;
+    }
+
+    boolean isModificado() { return modificado; }
+
+    void marcarGravado() {
+        modificado = false;
+    }
+}
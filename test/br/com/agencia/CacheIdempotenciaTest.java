@@ -0,0 +1,65 @@
+package br.com.agencia;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import org.junit.jupiter.api.Test;
+
+class CacheIdempotenciaTest {
+
+    @Test
+    void repeticaoRecebeOPrimeiroResultadoSemExecutarDeNovo() {
+        CacheIdempotencia cache = new CacheIdempotencia(10, 60_000);
+        AtomicInteger execucoes = new AtomicInteger();
+        assertTrue(cache.executar("a", "deposito 1 100", () -> execucoes.incrementAndGet() > 0));
+        assertTrue(cache.executar("a", "deposito 1 100", () -> execucoes.incrementAndGet() < 0));
+        assertEquals(1, execucoes.get());
+        assertThrows(IllegalArgumentException.class, () -> cache.executar("a", "saque 1 100", () -> true));
+    }
+
+    @Test
+    void despejaAsMaisAntigasAlemDaCapacidade() {
+        CacheIdempotencia cache = new CacheIdempotencia(3, 60_000);
+        for (int i = 0; i < 5; i++) cache.executar("k" + i, "op", () -> false);
+        assertEquals(3, cache.tamanho());
+
+        // As duas primeiras saíram e executam de novo; as três últimas continuam guardadas
+        AtomicInteger execucoes = new AtomicInteger();
+        assertFalse(cache.executar("k4", "op", () -> execucoes.incrementAndGet() > 0));
+        assertEquals(0, execucoes.get());
+        assertTrue(cache.executar("k0", "op", () -> execucoes.incrementAndGet() > 0));
+        assertEquals(1, execucoes.get());
+        assertEquals(3, cache.tamanho());
+    }
+
+    @Test
+    void chaveVencidaExecutaDeNovo() throws InterruptedException {
+        CacheIdempotencia cache = new CacheIdempotencia(10, 20);
+        AtomicInteger execucoes = new AtomicInteger();
+        cache.executar("a", "op", () -> execucoes.incrementAndGet() > 0);
+        Thread.sleep(50);
+        cache.executar("a", "op", () -> execucoes.incrementAndGet() > 0);
+        assertEquals(2, execucoes.get());
+        // A vencida também saiu do início da fila ao chegar a nova
+        assertEquals(1, cache.tamanho());
+    }
+
+    @Test
+    void falhaFicaGuardadaParaARepeticao() {
+        CacheIdempotencia cache = new CacheIdempotencia(10, 60_000);
+        AtomicInteger execucoes = new AtomicInteger();
+        assertThrows(IllegalStateException.class, () -> cache.executar("a", "op", () -> {
+            execucoes.incrementAndGet();
+            throw new IllegalStateException("diário falhou");
+        }));
+        assertThrows(IllegalStateException.class, () -> cache.executar("a", "op", () -> {
+            execucoes.incrementAndGet();
+            return true;
+        }));
+        assertEquals(1, execucoes.get());
+        assertFalse(cache.executar("b", "op", () -> false));
+    }
+}
@@ -0,0 +1,70 @@
+package br.com.agencia;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+import org.junit.jupiter.api.Test;
+
+class ConsultaLancamentosTest {
+    private static final int CONTAS = 3000;
+
+    private final int[] numeros = new int[CONTAS];
+    private final Lancamentos[] historicos = new Lancamentos[CONTAS];
+
+    ConsultaLancamentosTest() {
+        Random aleatorio = new Random(7);
+        for (int k = 0; k < CONTAS; k++) {
+            numeros[k] = 1000 + k;
+            // Algumas contas deixaram de existir; outras não têm lançamentos
+            if (k % 97 == 0) continue;
+            Lancamentos lancamentos = new Lancamentos();
+            int quantidade = aleatorio.nextInt(5);
+            long instante = 1_000_000;
+            for (int i = 0; i < quantidade; i++) {
+                instante += aleatorio.nextInt(1000);
+                lancamentos.adicionar(instante, (byte) aleatorio.nextInt(2), 1 + aleatorio.nextInt(10_000),
+                        Lancamentos.SEM_CONTRAPARTE);
+            }
+            historicos[k] = lancamentos;
+        }
+    }
+
+    private ConsultaLancamentos.Resultado buscar(ConsultaLancamentos consulta) {
+        return ForkJoinPool.commonPool().invoke(
+                new ConsultaLancamentos.Busca(consulta, numeros, k -> historicos[k], 0, CONTAS));
+    }
+
+    @Test
+    void buscaLimitadaDevolveOComecoDaCompletaEOMesmoTotal() {
+        int saques = ConsultaLancamentos.tipo(Lancamentos.SAQUE);
+        ConsultaLancamentos.Resultado completo = buscar(
+                new ConsultaLancamentos(Long.MIN_VALUE, Long.MAX_VALUE, saques, 5000));
+        assertEquals(completo.total, completo.ocorrencias.size());
+
+        for (int limite : new int[] {0, 1, 37, 500, (int) completo.total, (int) completo.total + 10}) {
+            ConsultaLancamentos.Resultado limitado = buscar(
+                    new ConsultaLancamentos(Long.MIN_VALUE, Long.MAX_VALUE, saques, 5000, limite));
+            assertEquals(completo.total, limitado.total);
+            assertEquals(Math.min(limite, completo.total), limitado.ocorrencias.size());
+            for (int i = 0; i < limitado.ocorrencias.size(); i++) {
+                ConsultaLancamentos.Ocorrencia esperada = completo.ocorrencias.get(i);
+                ConsultaLancamentos.Ocorrencia obtida = limitado.ocorrencias.get(i);
+                assertEquals(esperada.numero, obtida.numero);
+                assertEquals(esperada.transacao.getData(), obtida.transacao.getData());
+                assertEquals(esperada.transacao.getValorCentavos(), obtida.transacao.getValorCentavos());
+            }
+        }
+    }
+
+    @Test
+    void buscaSomaOQueCadaContaEncontra() {
+        ConsultaLancamentos consulta = new ConsultaLancamentos(1_000_500, 1_002_000,
+                ConsultaLancamentos.TODOS_OS_TIPOS, 0);
+        long esperado = 0;
+        for (Lancamentos lancamentos : historicos) {
+            if (lancamentos != null) esperado += consulta.consultar(0, lancamentos).total;
+        }
+        assertEquals(esperado, buscar(consulta).total);
+    }
+}
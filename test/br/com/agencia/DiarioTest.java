@@ -0,0 +1,127 @@
+package br.com.agencia;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+class DiarioTest {
+    // [tamanho][crc32] + lsn + tipo + conta, centavos e instante
+    private static final int TAMANHO_DEPOSITO = 8 + 8 + 1 + 4 + 8 + 8;
+
+    @TempDir
+    Path pasta;
+
+    private Path base() {
+        return pasta.resolve("dados.wal");
+    }
+
+    // LSN e conta de cada depósito reaplicado
+    private List<long[]> reaplicar(long lsnMinimo) throws IOException {
+        List<long[]> aplicados = new ArrayList<>();
+        try (Diario diario = new Diario(base())) {
+            diario.abrir(lsnMinimo, (lsn, tipo, dados) -> {
+                assertEquals(Diario.DEPOSITO, tipo);
+                aplicados.add(new long[] {lsn, dados.readInt(), dados.readLong()});
+            });
+        }
+        return aplicados;
+    }
+
+    private void depositar(int... contas) throws IOException {
+        try (Diario diario = new Diario(base())) {
+            diario.abrir(0, (lsn, tipo, dados) -> { });
+            long lsn = 0;
+            for (int conta : contas) lsn = diario.registrarDeposito(conta, conta * 100L, 0);
+            diario.aguardar(lsn);
+        }
+    }
+
+    private List<Path> segmentos() throws IOException {
+        try (Stream<Path> arquivos = Files.list(pasta)) {
+            return arquivos.filter(p -> p.getFileName().toString().startsWith("dados.wal."))
+                    .sorted().collect(Collectors.toList());
+        }
+    }
+
+    @Test
+    void reaplicaOsRegistrosEmOrdemAPartirDoCheckpoint() throws IOException {
+        try (Diario diario = new Diario(base())) {
+            diario.abrir(0, (lsn, tipo, dados) -> { });
+            diario.registrarDeposito(10, 1000, 0);
+            diario.registrarDeposito(11, 1100, 0);
+            diario.rotacionar();
+            diario.registrarDeposito(12, 1200, 0);
+            diario.aguardar(diario.registrarDeposito(13, 1300, 0));
+        }
+
+        List<long[]> todos = reaplicar(0);
+        assertEquals(4, todos.size());
+        for (int i = 0; i < 4; i++) {
+            assertEquals(i + 1, todos.get(i)[0]);
+            assertEquals(10 + i, todos.get(i)[1]);
+            assertEquals((10 + i) * 100L, todos.get(i)[2]);
+        }
+
+        List<long[]> depois = reaplicar(2);
+        assertEquals(2, depois.size());
+        assertEquals(3, depois.get(0)[0]);
+        assertEquals(12, depois.get(0)[1]);
+    }
+
+    @Test
+    void cortaORegistroIncompletoNoFimDoUltimoSegmento() throws IOException {
+        depositar(1, 2, 3);
+        Path ultimo = segmentos().get(segmentos().size() - 1);
+        long inteiro = Files.size(ultimo);
+        assertEquals(3L * TAMANHO_DEPOSITO, inteiro);
+        // Gravação interrompida: o cabeçalho e parte do corpo de um quarto registro
+        byte[] pedaco = new byte[TAMANHO_DEPOSITO / 2];
+        pedaco[3] = (byte) (TAMANHO_DEPOSITO - 8);
+        Files.write(ultimo, pedaco, StandardOpenOption.APPEND);
+
+        assertEquals(3, reaplicar(0).size());
+        assertEquals(inteiro, Files.size(ultimo));
+
+        // Os registros seguintes continuam a numeração e são lidos normalmente
+        depositar(4);
+        List<long[]> todos = reaplicar(0);
+        assertEquals(4, todos.size());
+        assertEquals(4, todos.get(3)[0]);
+        assertEquals(4, todos.get(3)[1]);
+    }
+
+    @Test
+    void recusaAbrirQuandoFaltamRegistrosNoMeio() throws IOException {
+        try (Diario diario = new Diario(base())) {
+            diario.abrir(0, (lsn, tipo, dados) -> { });
+            diario.registrarDeposito(1, 100, 0);
+            diario.registrarDeposito(2, 200, 0);
+            diario.registrarDeposito(3, 300, 0);
+            diario.rotacionar();
+            diario.aguardar(diario.registrarDeposito(4, 400, 0));
+        }
+        // Estraga o segundo registro do primeiro segmento: o terceiro também fica ilegível
+        try (RandomAccessFile arquivo = new RandomAccessFile(segmentos().get(0).toFile(), "rw")) {
+            long posicao = TAMANHO_DEPOSITO + 20;
+            arquivo.seek(posicao);
+            int b = arquivo.read();
+            arquivo.seek(posicao);
+            arquivo.write(b ^ 0xFF);
+        }
+
+        IOException erro = assertThrows(IOException.class, () -> reaplicar(0));
+        assertTrue(erro.getMessage().startsWith("Diário corrompido"), erro.getMessage());
+    }
+}
@@ -0,0 +1,52 @@
+package br.com.agencia;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import org.junit.jupiter.api.Test;
+
+class DinheiroTest {
+
+    @Test
+    void interpretaOsFormatosAceitos() {
+        assertEquals(123400, Dinheiro.interpretar("1234"));
+        assertEquals(123450, Dinheiro.interpretar("1234,5"));
+        assertEquals(123456, Dinheiro.interpretar("1234.56"));
+        assertEquals(123456, Dinheiro.interpretar("1.234,56"));
+        assertEquals(123456, Dinheiro.interpretar("1,234.56"));
+        assertEquals(123400000, Dinheiro.interpretar("1.234.000"));
+        assertEquals(-1050, Dinheiro.interpretar(" -10,50 "));
+        assertEquals(5, Dinheiro.interpretar(",05"));
+    }
+
+    @Test
+    void recusaTextoInvalido() {
+        assertThrows(NumberFormatException.class, () -> Dinheiro.interpretar(null));
+        assertThrows(NumberFormatException.class, () -> Dinheiro.interpretar(""));
+        assertThrows(NumberFormatException.class, () -> Dinheiro.interpretar("-"));
+        assertThrows(NumberFormatException.class, () -> Dinheiro.interpretar("12a"));
+        assertThrows(NumberFormatException.class, () -> Dinheiro.interpretar("10,5x"));
+        assertThrows(NumberFormatException.class, () -> Dinheiro.interpretar("."));
+    }
+
+    @Test
+    void recusaValorQueNaoCabeEmLong() {
+        assertThrows(ArithmeticException.class, () -> Dinheiro.interpretar("999999999999999999999"));
+    }
+
+    @Test
+    void formataComDuasCasas() {
+        assertEquals("0,00", Dinheiro.formatar(0));
+        assertEquals("0,05", Dinheiro.formatar(5));
+        assertEquals("1234,50", Dinheiro.formatar(123450));
+        assertEquals("-10,07", Dinheiro.formatar(-1007));
+        assertEquals("-92233720368547758,08", Dinheiro.formatar(Long.MIN_VALUE));
+    }
+
+    @Test
+    void formatarEInterpretarSaoInversos() {
+        for (long centavos : new long[] {0, 1, 99, 100, 123456789, -42, Long.MAX_VALUE}) {
+            assertEquals(centavos, Dinheiro.interpretar(Dinheiro.formatar(centavos)));
+        }
+    }
+}
@@ -0,0 +1,53 @@
+package br.com.agencia;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import org.junit.jupiter.api.Test;
+
+class HistogramaTest {
+
+    @Test
+    void valoresPequenosSaoExatos() {
+        for (long v = 0; v < 64; v++) {
+            assertEquals(v, Histograma.faixa(v));
+            assertEquals(v, Histograma.limite((int) v));
+        }
+    }
+
+    @Test
+    void limiteEhOMaiorValorDaFaixa() {
+        long[] valores = {64, 65, 66, 100, 127, 128, 1000, 123456, 1L << 40, Long.MAX_VALUE};
+        for (long v : valores) {
+            int faixa = Histograma.faixa(v);
+            long limite = Histograma.limite(faixa);
+            assertTrue(limite >= v, "limite " + limite + " abaixo de " + v);
+            assertEquals(faixa, Histograma.faixa(limite));
+            if (limite < Long.MAX_VALUE) assertEquals(faixa + 1, Histograma.faixa(limite + 1));
+        }
+    }
+
+    @Test
+    void erroRelativoDaFaixaFicaAbaixoDeTresPorCento() {
+        for (long v = 64; v < 1_000_000; v += 997) {
+            long limite = Histograma.limite(Histograma.faixa(v));
+            assertTrue((limite - v) <= v / 32, "faixa larga demais para " + v);
+        }
+    }
+
+    @Test
+    void percentisUsamOLimiteDaFaixaSemPassarDoMaximo() {
+        Histograma h = new Histograma();
+        for (long v = 1; v <= 1000; v++) h.registrar(v);
+        assertEquals(1000, h.quantidade());
+        assertEquals(1000, h.maximo());
+        assertEquals(500.5, h.media(), 1e-9);
+        long mediana = h.percentil(0.5);
+        assertTrue(mediana >= 500 && mediana <= 500 + 500 / 32, "mediana " + mediana);
+        assertEquals(1000, h.percentil(1.0));
+
+        h.zerar();
+        assertEquals(0, h.quantidade());
+        assertEquals(0, h.percentil(0.99));
+    }
+}
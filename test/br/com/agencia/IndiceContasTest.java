@@ -0,0 +1,70 @@
+package br.com.agencia;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicReference;
+import org.junit.jupiter.api.Test;
+
+class IndiceContasTest {
+
+    @Test
+    void buscaInclusaoERemocaoBatemComUmMapa() {
+        IndiceContas indice = new IndiceContas(4);
+        Map<Integer, Conta> esperado = new HashMap<>();
+        Random aleatorio = new Random(42);
+        for (int passo = 0; passo < 20_000; passo++) {
+            // Poucas chaves distintas: muitas colisões e remoções no meio das sequências
+            int numero = 1 + aleatorio.nextInt(500);
+            if (aleatorio.nextInt(3) == 0) {
+                assertSame(esperado.remove(numero), indice.remover(numero));
+            } else {
+                Conta conta = new Conta(numero, "Titular " + numero);
+                indice.inserir(conta);
+                esperado.put(numero, conta);
+            }
+        }
+        assertEquals(esperado.size(), indice.tamanho());
+        assertEquals(esperado.size(), indice.listar().length);
+        for (int numero = 0; numero <= 501; numero++) {
+            assertSame(esperado.get(numero), indice.buscar(numero));
+        }
+    }
+
+    @Test
+    void buscaSemTravaNaoPerdeContasDuranteAlteracoes() throws Exception {
+        IndiceContas indice = new IndiceContas();
+        Conta[] fixas = new Conta[64];
+        for (int i = 0; i < fixas.length; i++) {
+            fixas[i] = new Conta(i * 2, "Fixa");
+            indice.inserir(fixas[i]);
+        }
+        AtomicReference<String> erro = new AtomicReference<>();
+        Thread leitor = new Thread(() -> {
+            while (!Thread.currentThread().isInterrupted()) {
+                for (Conta fixa : fixas) {
+                    if (indice.buscarSemTrava(fixa.getNumero()) != fixa) {
+                        erro.compareAndSet(null, "Conta " + fixa.getNumero() + " não encontrada");
+                        return;
+                    }
+                }
+            }
+        });
+        leitor.start();
+        try {
+            // Números ímpares entram e saem, deslocando as fixas e redimensionando a tabela
+            for (int rodada = 0; rodada < 200 && erro.get() == null; rodada++) {
+                for (int n = 1; n < 4000; n += 2) indice.inserir(new Conta(n, "Temporária"));
+                for (int n = 1; n < 4000; n += 2) indice.remover(n);
+            }
+        } finally {
+            leitor.interrupt();
+            leitor.join();
+        }
+        assertNull(erro.get());
+    }
+}